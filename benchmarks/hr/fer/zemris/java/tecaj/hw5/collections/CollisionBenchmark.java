@@ -0,0 +1,121 @@
+package hr.fer.zemris.java.tecaj.hw5.collections;
+
+/**
+ * Measures lookups in a {@linkplain SimpleHashtable} whose keys all have the
+ * same hash code. Such keys end up in a single slot, which is converted to a
+ * tree, so the time of a lookup should grow logarithmically with the number of
+ * keys. For comparison, the same keys are looked up in an
+ * {@linkplain OpenAddressingHashtable}, where all keys form a single cluster
+ * and the time of a lookup grows linearly.
+ * <p>
+ * Keys are strings built of <tt>"Aa"</tt> and <tt>"BB"</tt> blocks, which
+ * have equal hash codes, so each additional block doubles the number of
+ * colliding keys.
+ *
+ * @author Mario Bobic
+ */
+public class CollisionBenchmark {
+
+    /** Number of blocks of the smallest measured set of keys. */
+    private static final int MIN_BLOCKS = 8;
+    /** Number of blocks of the largest measured set of keys. */
+    private static final int MAX_BLOCKS = 16;
+    /**
+     * Number of blocks of the largest set of keys measured in the open
+     * addressing table, since filling it takes quadratic time.
+     */
+    private static final int MAX_OPEN_ADDRESSING_BLOCKS = 13;
+    /** Number of lookups of each measurement. */
+    private static final int LOOKUPS = 1_000_000;
+
+    /** Sink that prevents the JIT compiler from eliminating lookups. */
+    private static long sink;
+
+    /**
+     * Program entry point.
+     *
+     * @param args not used in this program
+     */
+    public static void main(String[] args) {
+        // Warm up the JIT compiler on a small set of keys
+        for (int i = 0; i < 5; i++) {
+            measureChained(collidingStrings(MIN_BLOCKS));
+            measureOpenAddressing(collidingStrings(MIN_BLOCKS));
+        }
+
+        for (int blocks = MIN_BLOCKS; blocks <= MAX_BLOCKS; blocks++) {
+            String[] keys = collidingStrings(blocks);
+            System.out.printf("%7d colliding keys: SimpleHashtable %8.1f ns", keys.length, measureChained(keys));
+            if (blocks <= MAX_OPEN_ADDRESSING_BLOCKS) {
+                System.out.printf(", OpenAddressingHashtable %10.1f ns", measureOpenAddressing(keys));
+            }
+            System.out.println();
+        }
+        System.out.println("Checksum: " + sink);
+    }
+
+    /**
+     * Fills a chained table with the specified keys and returns the average
+     * time of a lookup, in nanoseconds.
+     *
+     * @param keys keys with equal hash codes
+     * @return the average time of a lookup
+     */
+    private static double measureChained(String[] keys) {
+        SimpleHashtable<String, String> table = new SimpleHashtable<>();
+        for (String key : keys) {
+            table.put(key, key);
+        }
+
+        int index = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            index = (index + 7919) % keys.length;
+            sink += table.get(keys[index]).length();
+        }
+        return (double) (System.nanoTime() - start) / LOOKUPS;
+    }
+
+    /**
+     * Fills an open addressing table with the specified keys and returns the
+     * average time of a lookup, in nanoseconds.
+     *
+     * @param keys keys with equal hash codes
+     * @return the average time of a lookup
+     */
+    private static double measureOpenAddressing(String[] keys) {
+        OpenAddressingHashtable<String, String> table = new OpenAddressingHashtable<>();
+        for (String key : keys) {
+            table.put(key, key);
+        }
+
+        int lookups = LOOKUPS / 100;
+        int index = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            index = (index + 7919) % keys.length;
+            sink += table.get(keys[index]).length();
+        }
+        return (double) (System.nanoTime() - start) / lookups;
+    }
+
+    /**
+     * Returns 2^n distinct strings that all have the same hash code.
+     *
+     * @param n number of blocks of each string
+     * @return strings with equal hash codes
+     */
+    private static String[] collidingStrings(int n) {
+        String[] strings = {""};
+        for (int i = 0; i < n; i++) {
+            String[] next = new String[strings.length * 2];
+            for (int j = 0; j < strings.length; j++) {
+                next[2*j] = strings[j] + "Aa";
+                next[2*j + 1] = strings[j] + "BB";
+            }
+            strings = next;
+        }
+        return strings;
+    }
+
+}
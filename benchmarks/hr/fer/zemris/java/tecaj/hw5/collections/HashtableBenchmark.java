@@ -0,0 +1,218 @@
+package hr.fer.zemris.java.tecaj.hw5.collections;
+
+import java.util.Random;
+
+/**
+ * Compares the chained {@linkplain SimpleHashtable} with the
+ * {@linkplain OpenAddressingHashtable} on JMBAG-like keys, and both of them
+ * with the {@linkplain OffHeapLongIntHashtable} on numeric values of the same
+ * keys, mapped to row numbers. All tables are filled with the same keys, after
+ * which successful and unsuccessful lookups are measured. Lookups are done in
+ * a shuffled order, as they would be when serving queries, instead of the
+ * order in which the keys were inserted. Every measurement is repeated a few
+ * times so that the JIT compiler has a chance to warm up; only the last round
+ * should be taken into account.
+ * <p>
+ * The number of keys may be given as the first program argument.
+ *
+ * @author Mario Bobic
+ */
+public class HashtableBenchmark {
+
+    /** Default number of keys. */
+    private static final int DEFAULT_KEYS = 1_000_000;
+    /** Number of measurement rounds. */
+    private static final int ROUNDS = 5;
+    /** Seed of the shuffle, so that all runs look up keys in the same order. */
+    private static final long SEED = 42;
+
+    /** Sink that prevents the JIT compiler from eliminating lookups. */
+    private static long sink;
+
+    /**
+     * Program entry point.
+     *
+     * @param args optional number of keys
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_KEYS;
+
+        String[] keys = new String[n];
+        String[] missing = new String[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = String.format("%010d", i);
+            missing[i] = String.format("%010d", n + i);
+        }
+        String[] lookups = keys.clone();
+        shuffle(lookups);
+        shuffle(missing);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round + ", " + n + " keys:");
+            benchmarkChained(keys, lookups, missing);
+            benchmarkOpenAddressing(keys, lookups, missing);
+            benchmarkLongKeys(keys, lookups, missing);
+        }
+        System.out.println("Checksum: " + sink);
+    }
+
+    /**
+     * Measures the chained hash table.
+     *
+     * @param keys keys that are inserted
+     * @param lookups inserted keys in the order they are looked up
+     * @param missing keys that are looked up, but are not present
+     */
+    private static void benchmarkChained(String[] keys, String[] lookups, String[] missing) {
+        long heap = usedHeap();
+        long start = System.nanoTime();
+        SimpleHashtable<String, String> table = new SimpleHashtable<>();
+        for (String key : keys) {
+            table.put(key, key);
+        }
+        long put = System.nanoTime() - start;
+        heap = usedHeap() - heap;
+
+        start = System.nanoTime();
+        for (String key : lookups) {
+            sink += table.get(key).length();
+        }
+        long hit = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (String key : missing) {
+            sink += table.containsKey(key) ? 1 : 0;
+        }
+        long miss = System.nanoTime() - start;
+
+        report("SimpleHashtable", keys.length, put, hit, miss, heap);
+    }
+
+    /**
+     * Measures the open addressing hash table.
+     *
+     * @param keys keys that are inserted
+     * @param lookups inserted keys in the order they are looked up
+     * @param missing keys that are looked up, but are not present
+     */
+    private static void benchmarkOpenAddressing(String[] keys, String[] lookups, String[] missing) {
+        long heap = usedHeap();
+        long start = System.nanoTime();
+        OpenAddressingHashtable<String, String> table = new OpenAddressingHashtable<>();
+        for (String key : keys) {
+            table.put(key, key);
+        }
+        long put = System.nanoTime() - start;
+        heap = usedHeap() - heap;
+
+        start = System.nanoTime();
+        for (String key : lookups) {
+            sink += table.get(key).length();
+        }
+        long hit = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (String key : missing) {
+            sink += table.containsKey(key) ? 1 : 0;
+        }
+        long miss = System.nanoTime() - start;
+
+        report("OpenAddressingHashtable", keys.length, put, hit, miss, heap);
+    }
+
+    /**
+     * Measures the off-heap hash table with primitive long keys. Keys are
+     * parsed before the measurement, as a database would parse them while
+     * loading, and each key is mapped to its row number. The slots of the
+     * table are outside of the heap, so the reported heap excludes them.
+     *
+     * @param keys keys that are inserted
+     * @param lookups inserted keys in the order they are looked up
+     * @param missing keys that are looked up, but are not present
+     */
+    private static void benchmarkLongKeys(String[] keys, String[] lookups, String[] missing) {
+        long[] keyValues = parse(keys);
+        long[] lookupValues = parse(lookups);
+        long[] missingValues = parse(missing);
+
+        long heap = usedHeap();
+        long start = System.nanoTime();
+        OffHeapLongIntHashtable table = new OffHeapLongIntHashtable();
+        for (int i = 0; i < keys.length; i++) {
+            table.put(keyValues[i], i);
+        }
+        long put = System.nanoTime() - start;
+        heap = usedHeap() - heap;
+
+        start = System.nanoTime();
+        for (long key : lookupValues) {
+            sink += table.get(key);
+        }
+        long hit = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (long key : missingValues) {
+            sink += table.containsKey(key) ? 1 : 0;
+        }
+        long miss = System.nanoTime() - start;
+
+        report("OffHeapLongIntHashtable", keys.length, put, hit, miss, heap);
+    }
+
+    /**
+     * Parses the specified numeric strings as longs.
+     *
+     * @param strings numeric strings
+     * @return numeric values of the strings
+     */
+    private static long[] parse(String[] strings) {
+        long[] values = new long[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            values[i] = Long.parseLong(strings[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Prints the results of one measurement, in nanoseconds per operation.
+     *
+     * @param name name of the measured table
+     * @param n number of operations of each kind
+     * @param put time spent in put operations
+     * @param hit time spent in successful lookups
+     * @param miss time spent in unsuccessful lookups
+     * @param heap heap occupied by the filled table, in bytes
+     */
+    private static void report(String name, int n, long put, long hit, long miss, long heap) {
+        System.out.printf("  %-24s put %6.1f ns, hit %6.1f ns, miss %6.1f ns, heap %,d KiB%n",
+                name, (double) put/n, (double) hit/n, (double) miss/n, heap/1024);
+    }
+
+    /**
+     * Shuffles the specified array using the Fisher-Yates algorithm.
+     *
+     * @param array array to be shuffled
+     */
+    private static void shuffle(String[] array) {
+        Random random = new Random(SEED);
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    /**
+     * Returns an estimate of the used heap memory, in bytes, after requesting
+     * a garbage collection.
+     *
+     * @return the used heap memory
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
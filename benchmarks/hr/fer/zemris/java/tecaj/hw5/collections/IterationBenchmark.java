@@ -0,0 +1,86 @@
+package hr.fer.zemris.java.tecaj.hw5.collections;
+
+/**
+ * Compares full scans of a {@linkplain SimpleHashtable} done with its
+ * iterator against scans done with
+ * {@linkplain SimpleHashtable#forEach(java.util.function.BiConsumer) forEach},
+ * {@linkplain SimpleHashtable#forEachValue(java.util.function.Consumer)
+ * forEachValue} and the {@linkplain SimpleHashtable#values() values} view.
+ * Every measurement is repeated a few times so that the JIT compiler has a
+ * chance to warm up; only the last round should be taken into account.
+ * <p>
+ * The number of keys may be given as the first program argument.
+ *
+ * @author Mario Bobic
+ */
+public class IterationBenchmark {
+
+    /** Default number of keys. */
+    private static final int DEFAULT_KEYS = 1_000_000;
+    /** Number of measurement rounds. */
+    private static final int ROUNDS = 5;
+    /** Number of scans of each measurement. */
+    private static final int SCANS = 10;
+
+    /** Sink that prevents the JIT compiler from eliminating scans. */
+    private static long sink;
+
+    /**
+     * Program entry point.
+     *
+     * @param args optional number of keys
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_KEYS;
+
+        SimpleHashtable<String, Integer> table = new SimpleHashtable<>();
+        for (int i = 0; i < n; i++) {
+            table.put(String.format("%010d", i), i);
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round + ", " + n + " keys:");
+
+            long start = System.nanoTime();
+            for (int scan = 0; scan < SCANS; scan++) {
+                for (SimpleHashtable.TableEntry<String, Integer> entry : table) {
+                    sink += entry.getValue();
+                }
+            }
+            report("iterator", n, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int scan = 0; scan < SCANS; scan++) {
+                table.forEach((key, value) -> sink += value);
+            }
+            report("forEach(BiConsumer)", n, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int scan = 0; scan < SCANS; scan++) {
+                table.forEachValue(value -> sink += value);
+            }
+            report("forEachValue", n, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int scan = 0; scan < SCANS; scan++) {
+                for (Integer value : table.values()) {
+                    sink += value;
+                }
+            }
+            report("values() iterator", n, System.nanoTime() - start);
+        }
+        System.out.println("Checksum: " + sink);
+    }
+
+    /**
+     * Prints the results of one measurement, in nanoseconds per entry.
+     *
+     * @param name name of the measured scan
+     * @param n number of entries
+     * @param time time spent in all scans
+     */
+    private static void report(String name, int n, long time) {
+        System.out.printf("  %-20s %5.2f ns/entry%n", name, (double) time / ((long) n * SCANS));
+    }
+
+}
@@ -0,0 +1,202 @@
+package hr.fer.zemris.java.tecaj.hw5.db.filters;
+
+import java.util.Arrays;
+import java.util.List;
+
+import hr.fer.zemris.java.tecaj.hw5.db.ConditionalExpression;
+import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.IFieldValueGetter;
+import hr.fer.zemris.java.tecaj.hw5.db.parser.QueryParser;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.NameDictionary;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.StudentTable;
+
+/**
+ * Compares the throughput of full scans of a {@linkplain StudentTable} that
+ * are filtered by a {@linkplain QueryFilter}, whose expressions are compiled
+ * by the {@linkplain ExpressionCompiler}, against scans filtered by
+ * interpreting the expressions, which fetches the field getter, the operator
+ * and the literal from each expression for each row, as the filter did
+ * before the expressions were compiled. Every measurement is repeated a few
+ * times so that the JIT compiler has a chance to warm up; only the last round
+ * should be taken into account.
+ * <p>
+ * The number of rows may be given as the first program argument.
+ *
+ * @author Mario Bobic
+ */
+public class QueryFilterBenchmark {
+
+    /** Default number of rows. */
+    private static final int DEFAULT_ROWS = 200_000;
+    /** Number of measurement rounds. */
+    private static final int ROUNDS = 5;
+    /** Number of scans of each measurement. */
+    private static final int SCANS = 10;
+    /** Measured queries. */
+    private static final String[] QUERIES = {
+            "jmbag >= \"0000400000\" AND jmbag < \"0000500000\"",
+            "finalGrade = \"5\" AND firstName != \"Marin\"",
+            "lastName LIKE \"B*ć\" AND finalGrade > \"2\"",
+            "lastName >= \"K\" AND firstName = \"Ivana\" AND finalGrade != \"1\""
+    };
+    /** Last names of the generated rows. */
+    private static final String[] LAST_NAMES = {
+            "Akšamović", "Bakamović", "Bosnić", "Božić", "Brezović", "Cvrlje", "Čima", "Dean",
+            "Dokleja", "Đurđević", "Glavinić", "Gorup", "Hibner", "Jurina", "Katančić", "Kosanović",
+            "Lučić", "Ljubić", "Majić", "Njegovan", "Rajić", "Šimunović", "Vukić", "Žabić"
+    };
+    /** First names of the generated rows. */
+    private static final String[] FIRST_NAMES = {
+            "Marin", "Petra", "Andrea", "Jusufadis", "Ivan", "Ivana", "Luka", "Dorian", "Ana", "Josip"
+    };
+
+    /** Sink that prevents the JIT compiler from eliminating scans. */
+    private static long sink;
+
+    /**
+     * Program entry point.
+     *
+     * @param args optional number of rows
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+
+        StudentTable table = new StudentTable(n);
+        for (int i = 0; i < n; i++) {
+            table.add(String.format("%010d", i), LAST_NAMES[i % LAST_NAMES.length],
+                    FIRST_NAMES[i * 7 % FIRST_NAMES.length], i % 5 + 1);
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round + ", " + n + " rows:");
+            for (String query : QUERIES) {
+                System.out.println("  " + query);
+
+                IFilter interpreted = new InterpretedFilter(new QueryParser(query).getExpressionList());
+                report("interpreted", n, scan(table, interpreted));
+                report("compiled", n, scan(table, new QueryFilter(query)));
+            }
+        }
+        System.out.println("Checksum: " + sink);
+    }
+
+    /**
+     * Scans the table {@value #SCANS} times, counting the rows accepted by the
+     * specified filter, and returns the time spent.
+     *
+     * @param table table to be scanned
+     * @param filter filter of the rows
+     * @return time spent in all scans, in nanoseconds
+     */
+    private static long scan(StudentTable table, IFilter filter) {
+        long start = System.nanoTime();
+        for (int scan = 0; scan < SCANS; scan++) {
+            for (int row = 0, n = table.size(); row < n; row++) {
+                if (filter.accepts(table, row)) {
+                    sink++;
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Prints the results of one measurement, in nanoseconds per row and
+     * millions of rows per second.
+     *
+     * @param name name of the measured filter
+     * @param n number of rows
+     * @param time time spent in all scans
+     */
+    private static void report(String name, int n, long time) {
+        double perRow = (double) time / ((long) n * SCANS);
+        System.out.printf("    %-12s %6.2f ns/row %8.2f Mrows/s%n", name, perRow, 1000 / perRow);
+    }
+
+    /**
+     * A filter that interprets each expression for each row, remembering the
+     * results of name fields by the codes of names.
+     *
+     * @author Mario Bobic
+     */
+    private static class InterpretedFilter implements IFilter {
+
+        /** List of query expressions. */
+        private final List<ConditionalExpression> expressionList;
+        /** Remembered results of each expression, by codes of names. */
+        private final byte[][] results;
+
+        /**
+         * Constructs a new <tt>InterpretedFilter</tt> of the specified
+         * expressions.
+         *
+         * @param expressionList list of query expressions
+         */
+        InterpretedFilter(List<ConditionalExpression> expressionList) {
+            this.expressionList = expressionList;
+            this.results = new byte[expressionList.size()][];
+        }
+
+        @Override
+        public boolean accepts(StudentRecord record) {
+            for (ConditionalExpression expression : expressionList) {
+                if (!satisfies(expression, expression.getFieldGetter().get(record))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean accepts(StudentTable table, int row) {
+            for (int i = 0, n = expressionList.size(); i < n; i++) {
+                ConditionalExpression expression = expressionList.get(i);
+                IFieldValueGetter getter = expression.getFieldGetter();
+
+                int code = getter.getCode(table, row);
+                boolean satisfied = code == -1
+                        ? satisfies(expression, getter.get(table, row))
+                        : satisfies(i, expression, table.getNames(), code);
+                if (!satisfied) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns true if the name with the specified code satisfies the
+         * expression at the specified index.
+         *
+         * @param index index of the expression
+         * @param expression the expression
+         * @param names dictionary of names
+         * @param code code of a name
+         * @return true if the name satisfies the expression
+         */
+        private boolean satisfies(int index, ConditionalExpression expression, NameDictionary names, int code) {
+            byte[] codeResults = results[index];
+            if (codeResults == null || code >= codeResults.length) {
+                int length = names.size();
+                codeResults = codeResults == null ? new byte[length] : Arrays.copyOf(codeResults, length);
+                results[index] = codeResults;
+            }
+            if (codeResults[code] == 0) {
+                codeResults[code] = satisfies(expression, names.decode(code)) ? (byte) 1 : (byte) 2;
+            }
+            return codeResults[code] == 1;
+        }
+
+        /**
+         * Returns true if the specified field value satisfies the expression.
+         *
+         * @param expression the expression
+         * @param fieldValue value of the field of the expression
+         * @return true if the field value satisfies the expression
+         */
+        private static boolean satisfies(ConditionalExpression expression, String fieldValue) {
+            return expression.getComparisonOperator().satisfied(fieldValue, expression.getStringLiteral());
+        }
+    }
+
+}
@@ -0,0 +1,683 @@
+package hr.fer.zemris.java.tecaj.hw5.collections;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The <tt>ConcurrentSimpleHashtable</tt> class is a thread-safe variant of the
+ * {@linkplain SimpleHashtable} that offers the same <tt>put</tt>,
+ * <tt>get</tt>, <tt>remove</tt> and iterator operations, and may be shared by
+ * many threads without external synchronization.
+ * <p>
+ * The table is divided into a number of <i>segments</i>, each of which is a
+ * small hash table guarded by its own lock (<i>lock striping</i>). A key
+ * always belongs to the same segment, selected by the higher bits of its hash
+ * code. Threads that modify keys of different segments therefore never wait
+ * for each other, and the number of segments, called the <i>concurrency
+ * level</i>, determines how many threads may modify the table at once.
+ * <p>
+ * Retrieval operations do not lock at all. Entries are published to readers
+ * only through volatile references, so a reader always sees a fully
+ * constructed entry, and entries that are still reachable by a reader are
+ * never reused in a way that would break its traversal. Retrievals reflect the
+ * results of the most recently <i>completed</i> modifications.
+ * <p>
+ * Iterators are <i>weakly consistent</i>: they never throw a
+ * {@linkplain java.util.ConcurrentModificationException}, return every entry
+ * that existed when the iterator was created and was not removed since at most
+ * once, and may or may not reflect modifications made after the iterator was
+ * created. Likewise, {@linkplain #size()} and {@linkplain #isEmpty()} are only
+ * estimates while the table is being concurrently modified.
+ *
+ * @author Mario Bobic
+ * @param <K> key argument
+ * @param <V> value argument
+ * @version 1.0
+ */
+public class ConcurrentSimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntry<K, V>> {
+
+    /** Default initial capacity. */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** Default number of segments. */
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /** Maximum number of segments. */
+    private static final int MAX_CONCURRENCY_LEVEL = 1 << 16;
+
+    /** Default load factor of a segment. */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** Segments of this table. */
+    private final Segment<K, V>[] segments;
+    /** Right shift of a hash that leaves the bits which select the segment. */
+    private final int segmentShift;
+    /** Mask of the bits which select the segment. */
+    private final int segmentMask;
+
+    /**
+     * Constructs a new <tt>ConcurrentSimpleHashtable</tt> object with
+     * capacity of 16 entries and 16 segments. The table is initially empty.
+     */
+    public ConcurrentSimpleHashtable() {
+        this(DEFAULT_CAPACITY, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Constructs a new <tt>ConcurrentSimpleHashtable</tt> object with the
+     * specified initial capacity and 16 segments. The table is initially
+     * empty.
+     * <p>
+     * If the specified value is less than 1, an
+     * {@linkplain IllegalArgumentException} is thrown.
+     *
+     * @param n initial hash table size
+     * @throws IllegalArgumentException if <tt>n &lt; 1</tt>
+     */
+    public ConcurrentSimpleHashtable(int n) {
+        this(n, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Constructs a new <tt>ConcurrentSimpleHashtable</tt> object with the
+     * specified initial capacity and at least <tt>concurrencyLevel</tt>
+     * segments. The table is initially empty.
+     * <p>
+     * If any of the specified values is less than 1, an
+     * {@linkplain IllegalArgumentException} is thrown.
+     *
+     * @param n initial hash table size
+     * @param concurrencyLevel the estimated number of concurrently updating
+     *        threads
+     * @throws IllegalArgumentException if <tt>n &lt; 1</tt> or
+     *         <tt>concurrencyLevel &lt; 1</tt>
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentSimpleHashtable(int n, int concurrencyLevel) {
+        if (n < 1) {
+            throw new IllegalArgumentException(
+                "Initial size of the table must be greater than 0.");
+        }
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException(
+                "Concurrency level must be greater than 0.");
+        }
+
+        int segmentCount = nextPowerOfTwo(Math.min(concurrencyLevel, MAX_CONCURRENCY_LEVEL));
+        int segmentSize = nextPowerOfTwo((n + segmentCount - 1) / segmentCount);
+
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(segmentSize);
+        }
+        segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        segmentMask = segmentCount - 1;
+    }
+
+    /**
+     * Returns the first power of two that is greater than or equal to the
+     * argument value. If the argument value is less than or equal to zero, the
+     * result is 1.
+     *
+     * @param n a value
+     * @return the first integer power of two that is greater than or equal to
+     *         the argument
+     */
+    private static int nextPowerOfTwo(int n) {
+        if (n <= 1) return 1;
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Calculates hash code of a given key argument and scrambles all of its
+     * bits. The higher bits of the result select the segment and the lower
+     * bits select the slot within the segment, so both must be well
+     * distributed.
+     *
+     * @param key key whose hash is to be calculated
+     * @return the scrambled hash code of the key
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the segment to which a key with the specified hash belongs.
+     *
+     * @param hash scrambled hash code of a key
+     * @return the segment of the key
+     */
+    private Segment<K, V> segmentFor(int hash) {
+        return segments[(hash >>> segmentShift) & segmentMask];
+    }
+
+    /**
+     * Associates the specified value with the specified key in this table. If
+     * the table previously contained a mapping for the key, the old value is
+     * replaced.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     */
+    public void put(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key must not be null.");
+        }
+        int hash = hash(key);
+        segmentFor(hash).put(key, hash, value, false);
+    }
+
+    /**
+     * Associates the specified value with the specified key in this table only
+     * if the table does not already contain a mapping for the key. The check
+     * and the insertion are done atomically.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return true if the value has been associated with the key, false if the
+     *         key was already present
+     */
+    public boolean putIfAbsent(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key must not be null.");
+        }
+        int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, true);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or <tt>null</tt>
+     * if this table contains no mapping for the key. This method does not
+     * lock.
+     * <p>
+     * A return value of <tt>null</tt> does not <i>necessarily</i> indicate that
+     * the table contains no mapping for the key; it's also possible that the
+     * table explicitly maps the key to <tt>null</tt>. The
+     * {@linkplain #containsKey} operation may be used to distinguish these two
+     * cases.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key of the entry
+     * @return value associated with the key if found, <tt>null</tt> otherwise
+     */
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        int hash = hash(key);
+        Node<K, V> node = segmentFor(hash).getNode(key, hash);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Returns the size of this hash table object. Size is determined by the
+     * number of entries in the table. While the table is being concurrently
+     * modified, the returned value is only an estimate.
+     *
+     * @return the size of this hash table
+     */
+    public int size() {
+        long size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.count;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns <tt>true</tt> if this table contains the desired key.
+     * False otherwise. This method does not lock.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key whose presence in this table is to be tested
+     * @return true if this table contains the specified key
+     */
+    public boolean containsKey(Object key) {
+        if (key == null) {
+            return false;
+        }
+        int hash = hash(key);
+        return segmentFor(hash).getNode(key, hash) != null;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this table contains the desired value.
+     * False otherwise. This method does not lock.
+     * <p>
+     * Time complexity: O(n)
+     *
+     * @param value value whose presence in this table is to be tested
+     * @return true if this map contains the specified value
+     */
+    public boolean containsValue(Object value) {
+        for (SimpleHashtable.TableEntry<K, V> entry : this) {
+            if (Objects.equals(entry.getValue(), value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the mapping for the specified key from this table if present.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key whose mapping is to be removed from the table
+     */
+    public void remove(Object key) {
+        if (key == null) {
+            return;
+        }
+        int hash = hash(key);
+        segmentFor(hash).remove(key, hash);
+    }
+
+    /**
+     * Returns true if this table contains no entries.
+     * False otherwise.
+     *
+     * @return true if this table contains no entries
+     */
+    public boolean isEmpty() {
+        for (Segment<K, V> segment : segments) {
+            if (segment.count != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a string representation of this
+     * <tt>ConcurrentSimpleHashtable</tt>.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+
+        // Go through all table entries
+        for (SimpleHashtable.TableEntry<K, V> entry : this) {
+            sb.append(entry).append(", ");
+        }
+        // Erase the last comma and space
+        if (sb.length() > 1) {
+            sb.setLength(sb.length()-2);
+        }
+
+        sb.append(']');
+        return sb.toString();
+    }
+
+    /**
+     * Removes all of the mappings from this map. Segments are cleared one by
+     * one, so entries concurrently added to already cleared segments are kept.
+     */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Copies all of the mappings from the specified hash table to this hash
+     * table. These mappings will replace any mappings that this hash table had
+     * for any of the keys currently in the specified hash table.
+     *
+     * @param hashtable mappings of the table to be stored in this table
+     */
+    public void putAll(ConcurrentSimpleHashtable<? extends K, ? extends V> hashtable) {
+        for (SimpleHashtable.TableEntry<? extends K, ? extends V> entry : hashtable) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Iterator<SimpleHashtable.TableEntry<K, V>> iterator() {
+        return new IteratorImpl();
+    }
+
+    /**
+     * An entry of a segment. The key and its hash never change, while the
+     * value and the reference to the next entry are volatile so that the
+     * changes made under the lock of the segment are visible to the readers
+     * that do not lock.
+     *
+     * @author Mario Bobic
+     * @param <K> key argument
+     * @param <V> value argument
+     */
+    private static final class Node<K, V> {
+
+        /** Key of the entry. */
+        final K key;
+        /** Scrambled hash code of the key. */
+        final int hash;
+        /** Value of the entry. */
+        volatile V value;
+        /** The next element of a singly linked list. */
+        volatile Node<K, V> next;
+
+        /**
+         * Constructs a new entry with the given key, hash, value and next
+         * entry in a singly linked list.
+         *
+         * @param key key of the entry
+         * @param hash scrambled hash code of the key
+         * @param value value of the entry
+         * @param next next entry in a singly linked list
+         */
+        Node(K key, int hash, V value, Node<K, V> next) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * A segment is a small hash table that holds all keys whose hash selects
+     * it. All modifications of a segment are made while holding its lock,
+     * which is the segment itself.
+     *
+     * @author Mario Bobic
+     * @param <K> key argument
+     * @param <V> value argument
+     */
+    private static final class Segment<K, V> extends ReentrantLock {
+        /** Serialization UID. */
+        private static final long serialVersionUID = 1L;
+
+        /** The internal storage of this segment. */
+        private volatile AtomicReferenceArray<Node<K, V>> table;
+        /** Number of currently stored elements in this segment. */
+        private volatile int count;
+        /** Number of elements at which the segment is resized. */
+        private int threshold;
+
+        /**
+         * Constructs a new empty segment with the specified number of slots.
+         *
+         * @param length number of slots, a power of two
+         */
+        Segment(int length) {
+            setTable(new AtomicReferenceArray<>(length));
+        }
+
+        /**
+         * Sets the storage of this segment and recalculates its threshold.
+         *
+         * @param table new storage of the segment
+         */
+        private void setTable(AtomicReferenceArray<Node<K, V>> table) {
+            threshold = (int) (table.length() * LOAD_FACTOR);
+            this.table = table;
+        }
+
+        /**
+         * Returns the entry of the specified key without locking, or
+         * <tt>null</tt> if this segment contains no mapping for the key.
+         *
+         * @param key key of the entry
+         * @param hash scrambled hash code of the key
+         * @return existing entry if found, <tt>null</tt> otherwise
+         */
+        Node<K, V> getNode(Object key, int hash) {
+            AtomicReferenceArray<Node<K, V>> table = this.table;
+            Node<K, V> node = table.get(hash & (table.length() - 1));
+            while (node != null) {
+                Object k;
+                if (node.hash == hash && ((k = node.key) == key || k.equals(key))) {
+                    return node;
+                }
+                node = node.next;
+            }
+            return null;
+        }
+
+        /**
+         * Associates the specified value with the specified key. If
+         * <tt>onlyIfAbsent</tt> is true, an existing value is not replaced.
+         *
+         * @param key key with which the specified value is to be associated
+         * @param hash scrambled hash code of the key
+         * @param value value to be associated with the specified key
+         * @param onlyIfAbsent true if an existing value must not be replaced
+         * @return true if the key was not present before
+         */
+        boolean put(K key, int hash, V value, boolean onlyIfAbsent) {
+            lock();
+            try {
+                AtomicReferenceArray<Node<K, V>> table = this.table;
+                int slot = hash & (table.length() - 1);
+                Node<K, V> first = table.get(slot);
+                for (Node<K, V> node = first; node != null; node = node.next) {
+                    Object k;
+                    if (node.hash == hash && ((k = node.key) == key || k.equals(key))) {
+                        if (!onlyIfAbsent) {
+                            node.value = value;
+                        }
+                        return false;
+                    }
+                }
+
+                // The new entry is fully constructed before it is published
+                table.set(slot, new Node<>(key, hash, value, first));
+                int c = count + 1;
+                count = c;
+                if (c > threshold) {
+                    rehash();
+                }
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Removes the mapping for the specified key if present.
+         *
+         * @param key key whose mapping is to be removed
+         * @param hash scrambled hash code of the key
+         */
+        void remove(Object key, int hash) {
+            lock();
+            try {
+                AtomicReferenceArray<Node<K, V>> table = this.table;
+                int slot = hash & (table.length() - 1);
+                Node<K, V> prev = null;
+                for (Node<K, V> node = table.get(slot); node != null; node = node.next) {
+                    Object k;
+                    if (node.hash == hash && ((k = node.key) == key || k.equals(key))) {
+                        // Readers positioned on the node may still follow its next
+                        if (prev == null) {
+                            table.set(slot, node.next);
+                        } else {
+                            prev.next = node.next;
+                        }
+                        count = count - 1;
+                        return;
+                    }
+                    prev = node;
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Removes all of the mappings from this segment.
+         */
+        void clear() {
+            lock();
+            try {
+                setTable(new AtomicReferenceArray<>(table.length()));
+                count = 0;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Doubles the number of slots of this segment. Readers may still be
+         * traversing the old storage, so its entries must not be relinked.
+         * The trailing run of entries of a slot that all move to the same new
+         * slot is reused as is, and only the entries before it are copied.
+         * Must be called while holding the lock.
+         */
+        private void rehash() {
+            AtomicReferenceArray<Node<K, V>> oldTable = table;
+            int oldLength = oldTable.length();
+            if (oldLength >= 1 << 30) {
+                return;
+            }
+
+            AtomicReferenceArray<Node<K, V>> newTable = new AtomicReferenceArray<>(oldLength * 2);
+            int mask = oldLength * 2 - 1;
+            for (int i = 0; i < oldLength; i++) {
+                Node<K, V> first = oldTable.get(i);
+                if (first == null) {
+                    continue;
+                }
+
+                Node<K, V> lastRun = first;
+                int lastSlot = first.hash & mask;
+                for (Node<K, V> node = first.next; node != null; node = node.next) {
+                    int slot = node.hash & mask;
+                    if (slot != lastSlot) {
+                        lastSlot = slot;
+                        lastRun = node;
+                    }
+                }
+                newTable.set(lastSlot, lastRun);
+
+                for (Node<K, V> node = first; node != lastRun; node = node.next) {
+                    int slot = node.hash & mask;
+                    newTable.set(slot, new Node<>(node.key, node.hash, node.value, newTable.get(slot)));
+                }
+            }
+
+            setTable(newTable);
+        }
+    }
+
+    /**
+     * A table entry returned by the iterator of this table. Setting its value
+     * also puts the value into the table.
+     *
+     * @author Mario Bobic
+     */
+    private class WriteThroughEntry extends SimpleHashtable.TableEntry<K, V> {
+
+        /**
+         * Constructs a new entry with the key and the current value of the
+         * specified node.
+         *
+         * @param node node of a segment
+         */
+        public WriteThroughEntry(Node<K, V> node) {
+            super(node.key, node.value, null);
+        }
+
+        @Override
+        public void setValue(V value) {
+            super.setValue(value);
+            put(getKey(), value);
+        }
+    }
+
+    /**
+     * Iterates through all elements in <tt>ConcurrentSimpleHashtable</tt>,
+     * segment by segment, through the storage each segment had when the
+     * iteration of that segment began. This iterator is weakly consistent and
+     * never throws a {@linkplain java.util.ConcurrentModificationException}.
+     *
+     * @author Mario Bobic
+     */
+    private class IteratorImpl implements Iterator<SimpleHashtable.TableEntry<K, V>> {
+
+        /** Index of the currently iterated segment. */
+        private int segmentIndex = segments.length;
+        /** Storage of the currently iterated segment. */
+        private AtomicReferenceArray<Node<K, V>> currentTable;
+        /** Index of the next slot of the current storage. */
+        private int nextSlot;
+        /** The next node to be returned. */
+        private Node<K, V> next;
+        /** The last returned entry. */
+        private SimpleHashtable.TableEntry<K, V> lastReturned;
+
+        /**
+         * Constructs a new iterator for class
+         * <tt>ConcurrentSimpleHashtable</tt> and finds its first node.
+         */
+        public IteratorImpl() {
+            advance();
+        }
+
+        /**
+         * Finds the next node, moving on to the next slot and the next
+         * segment when needed.
+         */
+        private void advance() {
+            if (next != null && (next = next.next) != null) {
+                return;
+            }
+            while (true) {
+                if (currentTable != null) {
+                    while (nextSlot < currentTable.length()) {
+                        if ((next = currentTable.get(nextSlot++)) != null) {
+                            return;
+                        }
+                    }
+                }
+                if (segmentIndex == 0) {
+                    currentTable = null;
+                    return;
+                }
+                currentTable = segments[--segmentIndex].table;
+                nextSlot = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public SimpleHashtable.TableEntry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException("No more elements are available.");
+            }
+            lastReturned = new WriteThroughEntry(next);
+            advance();
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentSimpleHashtable.this.remove(lastReturned.getKey());
+            lastReturned = null;
+        }
+    }
+
+}
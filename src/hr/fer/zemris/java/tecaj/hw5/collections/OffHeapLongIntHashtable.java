@@ -0,0 +1,526 @@
+package hr.fer.zemris.java.tecaj.hw5.collections;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The <tt>OffHeapLongIntHashtable</tt> class is a hash table that maps
+ * primitive <tt>long</tt> keys to non-negative <tt>int</tt> values and keeps
+ * all of its mappings outside of the Java heap, in a single
+ * {@linkplain ByteBuffer}.
+ * <p>
+ * The buffer starts with a header, which holds the number of slots and the
+ * number of stored entries, followed by the slots themselves. Each slot holds
+ * a key and its value increased by one, so that a zero-filled slot is empty.
+ * Collisions are resolved by linear probing with backward-shift deletion.
+ * <p>
+ * Since the buffer contains no references, it can be written to a file with
+ * {@linkplain #writeTo(WritableByteChannel)} and later memory-mapped back with
+ * {@linkplain #map(FileChannel, long)}. A mapped table is usable immediately:
+ * nothing is read nor rehashed, and pages of the file are loaded by the
+ * operating system only when they are probed. A mapped table is read-only.
+ *
+ * @author Mario Bobic
+ * @version 1.0
+ */
+public class OffHeapLongIntHashtable {
+
+    /** Default initial capacity. */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** Default load factor of a table. */
+    private static final float LOAD_FACTOR = 0.5f;
+
+    /** Number of times the table is expanded when resizing is done. */
+    private static final int MULTIPLICATION_FACTOR = 2;
+
+    /** Magic number that identifies a table in a file. */
+    private static final int MAGIC = 0x4C495448;
+    /** Offset of the number of slots in the header. */
+    private static final int LENGTH_OFFSET = 4;
+    /** Offset of the number of entries in the header. */
+    private static final int SIZE_OFFSET = 8;
+    /** Size of the header, in bytes. */
+    private static final int HEADER_SIZE = 16;
+    /** Offset of the value in a slot. */
+    private static final int VALUE_OFFSET = 8;
+    /** Size of a slot, in bytes. */
+    private static final int SLOT_SIZE = 12;
+    /** Maximum number of slots a buffer can hold. */
+    private static final int MAX_LENGTH = 1 << 27;
+
+    /** Buffer holding the header and the slots. */
+    private ByteBuffer buffer;
+    /** Number of slots, a power of two. */
+    private int length;
+    /** Number of currently stored elements in this table. */
+    private int size;
+
+    /**
+     * Constructs a new <tt>OffHeapLongIntHashtable</tt> object that stores
+     * entries in a table of size 16. The table is initially empty.
+     */
+    public OffHeapLongIntHashtable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new <tt>OffHeapLongIntHashtable</tt> object that is able to
+     * store <tt>n</tt> entries without being resized. The object is initially
+     * empty.
+     * <p>
+     * If the specified value is less than 1, an
+     * {@linkplain IllegalArgumentException} is thrown.
+     *
+     * @param n initial number of entries this table can hold
+     * @throws IllegalArgumentException if <tt>n &lt; 1</tt>
+     */
+    public OffHeapLongIntHashtable(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException(
+                "Initial size of the table must be greater than 0.");
+        }
+        allocate(nextPowerOfTwo((int) Math.ceil(n / LOAD_FACTOR) + 1));
+    }
+
+    /**
+     * Constructs a new <tt>OffHeapLongIntHashtable</tt> object with a copy of
+     * all entries of the specified table. The copy is never read-only, so a
+     * table mapped from a file may be copied in order to be modified.
+     *
+     * @param table table whose entries are copied
+     */
+    public OffHeapLongIntHashtable(OffHeapLongIntHashtable table) {
+        ByteBuffer source = table.buffer.duplicate();
+        source.clear();
+        buffer = ByteBuffer.allocateDirect(source.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(source).clear();
+        length = table.length;
+        size = table.size;
+    }
+
+    /**
+     * Constructs a new <tt>OffHeapLongIntHashtable</tt> object over the
+     * specified buffer, which already holds a valid table.
+     *
+     * @param buffer buffer holding the header and the slots
+     * @param length number of slots
+     * @param size number of entries
+     */
+    private OffHeapLongIntHashtable(ByteBuffer buffer, int length, int size) {
+        this.buffer = buffer;
+        this.length = length;
+        this.size = size;
+    }
+
+    /**
+     * Memory-maps a table that was written to the specified channel at the
+     * specified position. The returned table is read-only and remains valid
+     * even after the channel is closed.
+     *
+     * @param channel channel of a file holding the table
+     * @param position position of the table in the file
+     * @return the mapped table
+     * @throws IOException if the table can not be mapped or the file does not
+     *         hold a valid table at the specified position
+     */
+    public static OffHeapLongIntHashtable map(FileChannel channel, long position) throws IOException {
+        long available = channel.size() - position;
+        if (available < HEADER_SIZE) {
+            throw new IOException("File does not contain a hash table.");
+        }
+
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, position, HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int length = header.getInt(LENGTH_OFFSET);
+        int size = header.getInt(SIZE_OFFSET);
+        if (header.getInt(0) != MAGIC || length < 1 || length > MAX_LENGTH
+                || Integer.bitCount(length) != 1 || size < 0 || size >= length
+                || available < byteSize(length)) {
+            throw new IOException("File does not contain a valid hash table.");
+        }
+
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, byteSize(length))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        return new OffHeapLongIntHashtable(buffer, length, size);
+    }
+
+    /**
+     * Returns the first power of two that is greater than or equal to the
+     * argument value. If the argument value is less than or equal to zero, the
+     * result is 1.
+     *
+     * @param n a value
+     * @return the first integer power of two that is greater than or equal to
+     *         the argument
+     */
+    private static int nextPowerOfTwo(int n) {
+        if (n <= 1) return 1;
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Returns the number of bytes occupied by a table with the specified
+     * number of slots.
+     *
+     * @param length number of slots
+     * @return size of the table, in bytes
+     */
+    private static int byteSize(int length) {
+        return HEADER_SIZE + length*SLOT_SIZE;
+    }
+
+    /**
+     * Allocates a new empty buffer with the specified number of slots.
+     *
+     * @param length number of slots, a power of two
+     */
+    private void allocate(int length) {
+        if (length > MAX_LENGTH) {
+            throw new IllegalStateException("The table can not hold more entries.");
+        }
+        buffer = ByteBuffer.allocateDirect(byteSize(length)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(LENGTH_OFFSET, length);
+        this.length = length;
+        setSize(0);
+    }
+
+    /**
+     * Sets the number of entries, both in this object and in the header.
+     *
+     * @param size number of entries
+     */
+    private void setSize(int size) {
+        buffer.putInt(SIZE_OFFSET, size);
+        this.size = size;
+    }
+
+    /**
+     * Calculates the scrambled hash code of a given key argument. Both halves
+     * of the key are folded together, multiplied by the golden ratio constant
+     * and the higher bits of the product are mixed into the lower ones, so
+     * that consecutive keys do not form clusters.
+     *
+     * @param key key whose hash is to be calculated
+     * @return the scrambled hash code of the key
+     */
+    private static int hash(long key) {
+        int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the position of the specified slot in the buffer.
+     *
+     * @param slot a slot
+     * @return position of the slot
+     */
+    private static int position(int slot) {
+        return HEADER_SIZE + slot*SLOT_SIZE;
+    }
+
+    /**
+     * Returns the slot that holds the specified key, or <tt>-1</tt> if the key
+     * is not contained in this table.
+     *
+     * @param key key whose slot is to be returned
+     * @return slot of the key, or <tt>-1</tt> if the key is not present
+     */
+    private int findSlot(long key) {
+        ByteBuffer buffer = this.buffer;
+        int mask = length - 1;
+        int slot = hash(key) & mask;
+
+        // A damaged mapped table may have no empty slot to stop at
+        int position;
+        for (int probes = length; probes > 0
+                && buffer.getInt((position = position(slot)) + VALUE_OFFSET) != 0; probes--) {
+            if (buffer.getLong(position) == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this table. If
+     * the table previously contained a mapping for the key, the old value is
+     * replaced.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @throws IllegalArgumentException if <tt>value &lt; 0</tt>
+     * @throws java.nio.ReadOnlyBufferException if this table is mapped from a
+     *         file
+     */
+    public void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative.");
+        }
+
+        ByteBuffer buffer = this.buffer;
+        int mask = length - 1;
+        int slot = hash(key) & mask;
+
+        int position;
+        while (buffer.getInt((position = position(slot)) + VALUE_OFFSET) != 0) {
+            if (buffer.getLong(position) == key) {
+                buffer.putInt(position + VALUE_OFFSET, value + 1);    // Entry exists
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        buffer.putLong(position, key);                    // Entry does not exist
+        buffer.putInt(position + VALUE_OFFSET, value + 1);
+        setSize(size + 1);
+        checkCapacity();
+    }
+
+    /**
+     * Check if the number of entries in the hash table exceeds the product of
+     * the load factor and the current capacity. If the test returns true, the
+     * hash table is <i>rehashed</i> so that the hash table has twice the
+     * number of slots.
+     */
+    private void checkCapacity() {
+        if (size > LOAD_FACTOR*length) {
+            resize(MULTIPLICATION_FACTOR*length);
+        }
+    }
+
+    /**
+     * <i>Rehashes</i> the hash table into a new buffer with the specified
+     * number of slots. Entries are moved directly to their new slots since all
+     * keys are known to be distinct.
+     *
+     * @param newLength number of slots of the new buffer, a power of two
+     */
+    private void resize(int newLength) {
+        ByteBuffer oldBuffer = buffer;
+        int oldLength = length;
+        int size = this.size;
+        allocate(newLength);
+
+        int mask = newLength - 1;
+        for (int i = 0; i < oldLength; i++) {
+            int oldPosition = position(i);
+            int value = oldBuffer.getInt(oldPosition + VALUE_OFFSET);
+            if (value == 0) continue;
+
+            long key = oldBuffer.getLong(oldPosition);
+            int slot = hash(key) & mask;
+            while (buffer.getInt(position(slot) + VALUE_OFFSET) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            buffer.putLong(position(slot), key);
+            buffer.putInt(position(slot) + VALUE_OFFSET, value);
+        }
+        setSize(size);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or <tt>-1</tt>
+     * if this table contains no mapping for the key.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key of the entry
+     * @return value associated with the key if found, <tt>-1</tt> otherwise
+     */
+    public int get(long key) {
+        int slot = findSlot(key);
+        return slot == -1 ? -1 : buffer.getInt(position(slot) + VALUE_OFFSET) - 1;
+    }
+
+    /**
+     * Returns the size of this hash table object. Size is determined by the
+     * number of entries in the table.
+     *
+     * @return the size of this hash table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this table contains the desired key.
+     * False otherwise.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key whose presence in this table is to be tested
+     * @return true if this table contains the specified key
+     */
+    public boolean containsKey(long key) {
+        return findSlot(key) != -1;
+    }
+
+    /**
+     * Removes the mapping for the specified key from this table if present.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key whose mapping is to be removed from the table
+     * @throws java.nio.ReadOnlyBufferException if this table is mapped from a
+     *         file
+     */
+    public void remove(long key) {
+        int slot = findSlot(key);
+        if (slot == -1) {
+            return;
+        }
+
+        removeSlot(slot);
+        setSize(size - 1);
+    }
+
+    /**
+     * Empties the specified slot and shifts back all entries of the same
+     * cluster that would otherwise become unreachable from their initial
+     * slot.
+     *
+     * @param slot slot to be emptied
+     */
+    private void removeSlot(int slot) {
+        ByteBuffer buffer = this.buffer;
+        int mask = length - 1;
+
+        int gap = slot;
+        int current = (gap + 1) & mask;
+        int value;
+        while ((value = buffer.getInt(position(current) + VALUE_OFFSET)) != 0) {
+            long key = buffer.getLong(position(current));
+            int initial = hash(key) & mask;
+            // Move the entry if its initial slot is not in range (gap, current]
+            if (((current - initial) & mask) >= ((current - gap) & mask)) {
+                buffer.putLong(position(gap), key);
+                buffer.putInt(position(gap) + VALUE_OFFSET, value);
+                gap = current;
+            }
+            current = (current + 1) & mask;
+        }
+
+        buffer.putLong(position(gap), 0);
+        buffer.putInt(position(gap) + VALUE_OFFSET, 0);
+    }
+
+    /**
+     * Returns true if the number of occupied slots equals the size of this
+     * table and every stored value is less than the specified bound. Used for
+     * verifying a table mapped from a file before it is trusted.
+     * <p>
+     * Time complexity: O(n)
+     *
+     * @param bound exclusive upper bound of the values
+     * @return true if all values are less than <tt>bound</tt>
+     */
+    public boolean hasValuesBelow(int bound) {
+        ByteBuffer buffer = this.buffer;
+        int occupied = 0;
+        for (int slot = 0; slot < length; slot++) {
+            int value = buffer.getInt(position(slot) + VALUE_OFFSET);
+            if (value != 0) {
+                if (value < 0 || value - 1 >= bound) {
+                    return false;
+                }
+                occupied++;
+            }
+        }
+        return occupied == size;
+    }
+
+    /**
+     * Returns true if this table is mapped from a file and can therefore not
+     * be modified.
+     *
+     * @return true if this table is read-only
+     */
+    public boolean isReadOnly() {
+        return buffer.isReadOnly();
+    }
+
+    /**
+     * Returns true if this table contains no entries.
+     * False otherwise.
+     *
+     * @return true if this table contains no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all of the mappings from this map. The map will be empty after
+     * this call returns.
+     *
+     * @throws java.nio.ReadOnlyBufferException if this table is mapped from a
+     *         file
+     */
+    public void clear() {
+        for (int i = 0; i < length; i++) {
+            buffer.putLong(position(i), 0);
+            buffer.putInt(position(i) + VALUE_OFFSET, 0);
+        }
+        setSize(0);
+    }
+
+    /**
+     * Returns the number of bytes this table occupies, both in memory and
+     * when written to a file.
+     *
+     * @return size of this table, in bytes
+     */
+    public long byteSize() {
+        return byteSize(length);
+    }
+
+    /**
+     * Writes this table to the specified channel, from which it can later be
+     * mapped with {@linkplain #map(FileChannel, long)}.
+     *
+     * @param channel channel to which the table is written
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer source = buffer.duplicate();
+        source.clear();
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    /**
+     * Returns a string representation of this
+     * <tt>OffHeapLongIntHashtable</tt>.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+
+        // Go through all table slots
+        for (int i = 0; i < length; i++) {
+            int value = buffer.getInt(position(i) + VALUE_OFFSET);
+            if (value != 0) {
+                sb.append(buffer.getLong(position(i))).append('=').append(value - 1).append(", ");
+            }
+        }
+        // Erase the last comma and space
+        if (size > 0) {
+            sb.setLength(sb.length()-2);
+        }
+
+        sb.append(']');
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,544 @@
+package hr.fer.zemris.java.tecaj.hw5.collections;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * The <tt>OpenAddressingHashtable</tt> class is an alternative to the
+ * {@linkplain SimpleHashtable} that offers the same <tt>put</tt>,
+ * <tt>get</tt>, <tt>remove</tt> and iterator operations, but stores its
+ * mappings without allocating a table entry for each of them.
+ * <p>
+ * Keys, values and scrambled hash codes of keys are kept in three parallel
+ * arrays. A key is placed into the slot determined by its hash code and, if
+ * that slot is already taken, into the first free slot after it (<i>linear
+ * probing</i>). Lookups therefore scan a contiguous region of memory instead of
+ * following references of a singly linked list scattered across the heap.
+ * Since hash codes are compared first, keys of other slots in the probed
+ * region are not even dereferenced.
+ * <p>
+ * Removal does not leave markers of deleted slots behind. Instead, entries
+ * that follow the removed one in the same cluster are shifted back to fill the
+ * gap (<i>backward-shift deletion</i>), so the probe sequences stay as short as
+ * they were before the removal.
+ * <p>
+ * Since linear probing degrades quickly as the table fills up, the table is
+ * kept at most half full.
+ *
+ * @author Mario Bobic
+ * @param <K> key argument
+ * @param <V> value argument
+ * @version 1.0
+ */
+public class OpenAddressingHashtable<K, V> implements Iterable<SimpleHashtable.TableEntry<K, V>> {
+
+    /** Default initial capacity. */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** Default load factor of a table. */
+    private static final float LOAD_FACTOR = 0.5f;
+
+    /** Number of times the table is expanded when resizing is done. */
+    private static final int MULTIPLICATION_FACTOR = 2;
+
+    /** Keys of this table. An empty slot has a <tt>null</tt> key. */
+    private Object[] keys;
+    /** Values of this table, stored in the same slots as their keys. */
+    private Object[] values;
+    /** Scrambled hash codes of keys, stored in the same slots as their keys. */
+    private int[] hashes;
+    /** Number of currently stored elements in this table. */
+    private int size;
+    /**
+     * The number of times this table has been <i>structurally modified</i>.
+     * Structural modifications are those that change the size of the table,
+     * or otherwise perturb it in such a fashion that iterations in progress
+     * may yield incorrect results.
+     */
+    private int modificationCount;
+
+    /**
+     * Constructs a new <tt>OpenAddressingHashtable</tt> object that stores
+     * entries in a table of size 16. The table is initially empty.
+     */
+    public OpenAddressingHashtable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new <tt>OpenAddressingHashtable</tt> object that is able to
+     * store <tt>n</tt> entries without being resized. The object is initially
+     * empty.
+     * <p>
+     * If the specified value is less than 1, an
+     * {@linkplain IllegalArgumentException} is thrown.
+     *
+     * @param n initial number of entries this table can hold
+     * @throws IllegalArgumentException if <tt>n &lt; 1</tt>
+     */
+    public OpenAddressingHashtable(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException(
+                "Initial size of the table must be greater than 0.");
+        }
+        int tableSize = nextPowerOfTwo((int) Math.ceil(n / LOAD_FACTOR) + 1);
+        keys = new Object[tableSize];
+        values = new Object[tableSize];
+        hashes = new int[tableSize];
+        size = 0;
+    }
+
+    /**
+     * Constructs a new <tt>OpenAddressingHashtable</tt> with the same mappings
+     * as the specified <tt>hashtable</tt>. The <tt>OpenAddressingHashtable</tt>
+     * is created with an initial capacity sufficient to hold the mappings in
+     * the specified <tt>hashtable</tt>.
+     *
+     * @param hashtable hash table whose elements are to be copied to this one
+     */
+    public OpenAddressingHashtable(OpenAddressingHashtable<? extends K, ? extends V> hashtable) {
+        keys = new Object[hashtable.keys.length];
+        values = new Object[hashtable.values.length];
+        hashes = new int[hashtable.hashes.length];
+        putAll(hashtable);
+    }
+
+    /**
+     * Returns the first power of two that is greater than or equal to the
+     * argument value. If the argument value is less than or equal to zero, the
+     * result is 1.
+     *
+     * @param n a value
+     * @return the first integer power of two that is greater than or equal to
+     *         the argument
+     */
+    private static int nextPowerOfTwo(int n) {
+        if (n <= 1) return 1;
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Calculates the scrambled hash code of a given key argument. The hash
+     * code is multiplied by the golden ratio constant and its higher bits are
+     * mixed into the lower ones, since linear probing clusters badly on hash
+     * codes that are close to each other, such as the hash codes of
+     * consecutive JMBAGs.
+     *
+     * @param key key whose hash is to be calculated
+     * @return the scrambled hash code of the key
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the slot that holds the specified key, or <tt>-1</tt> if the key
+     * is not contained in this table.
+     *
+     * @param key key whose slot is to be returned
+     * @return slot of the key, or <tt>-1</tt> if the key is not present
+     */
+    private int findSlot(Object key) {
+        if (key == null) {
+            return -1;
+        }
+
+        Object[] keys = this.keys;
+        int[] hashes = this.hashes;
+        int mask = keys.length - 1;
+        int hash = hash(key);
+        int slot = hash & mask;
+
+        Object current;
+        while ((current = keys[slot]) != null) {
+            if (current == key || hashes[slot] == hash && current.equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this table. If
+     * the table previously contained a mapping for the key, the old value is
+     * replaced.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     */
+    public void put(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key must not be null.");
+        }
+
+        Object[] keys = this.keys;
+        int[] hashes = this.hashes;
+        int mask = keys.length - 1;
+        int hash = hash(key);
+        int slot = hash & mask;
+
+        Object current;
+        while ((current = keys[slot]) != null) {
+            if (current == key || hashes[slot] == hash && current.equals(key)) {
+                values[slot] = value;    // Entry exists
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;                // Entry does not exist
+        values[slot] = value;
+        hashes[slot] = hash;
+        size++;
+        modificationCount++;
+        checkCapacity();
+    }
+
+    /**
+     * Check if the number of entries in the hash table exceeds the product of
+     * the load factor and the current capacity. If the test returns true, the
+     * hash table is <i>rehashed</i> so that the hash table has twice the
+     * number of slots.
+     */
+    private void checkCapacity() {
+        if (size > LOAD_FACTOR*keys.length) {
+            resize(MULTIPLICATION_FACTOR*keys.length);
+        }
+    }
+
+    /**
+     * <i>Rehashes</i> the hash table into a table of the specified length.
+     * Entries are moved directly to their new slots since all keys are known
+     * to be distinct, and their hash codes are not recalculated.
+     *
+     * @param length length of the new table, a power of two
+     */
+    private void resize(int length) {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldHashes = hashes;
+        keys = new Object[length];
+        values = new Object[length];
+        hashes = new int[length];
+
+        int mask = length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            Object key = oldKeys[i];
+            if (key == null) continue;
+
+            int slot = oldHashes[i] & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = oldValues[i];
+            hashes[slot] = oldHashes[i];
+        }
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or <tt>null</tt>
+     * if this table contains no mapping for the key.
+     * <p>
+     * A return value of <tt>null</tt> does not <i>necessarily</i> indicate that
+     * the table contains no mapping for the key; it's also possible that the
+     * table explicitly maps the key to <tt>null</tt>. The
+     * {@linkplain #containsKey} operation may be used to distinguish these two
+     * cases.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key of the entry
+     * @return value associated with the key if found, <tt>null</tt> otherwise
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int slot = findSlot(key);
+        return slot == -1 ? null : (V) values[slot];
+    }
+
+    /**
+     * Returns the size of this hash table object. Size is determined by the
+     * number of entries in the table.
+     *
+     * @return the size of this hash table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this table contains the desired key.
+     * False otherwise.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key whose presence in this table is to be tested
+     * @return true if this table contains the specified key
+     */
+    public boolean containsKey(Object key) {
+        return findSlot(key) != -1;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this table contains the desired value.
+     * False otherwise.
+     * <p>
+     * Time complexity: O(n)
+     *
+     * @param value value whose presence in this table is to be tested
+     * @return true if this map contains the specified value
+     */
+    public boolean containsValue(Object value) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && Objects.equals(values[i], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the mapping for the specified key from this table if present.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key whose mapping is to be removed from the table
+     */
+    public void remove(Object key) {
+        int slot = findSlot(key);
+        if (slot == -1) {
+            return;
+        }
+
+        removeSlot(slot);
+        size--;
+        modificationCount++;
+    }
+
+    /**
+     * Empties the specified slot and shifts back all entries of the same
+     * cluster that would otherwise become unreachable from their initial
+     * slot.
+     *
+     * @param slot slot to be emptied
+     */
+    private void removeSlot(int slot) {
+        Object[] keys = this.keys;
+        int[] hashes = this.hashes;
+        int mask = keys.length - 1;
+
+        int gap = slot;
+        int current = (gap + 1) & mask;
+        Object key;
+        while ((key = keys[current]) != null) {
+            int initial = hashes[current] & mask;
+            // Move the entry if its initial slot is not in range (gap, current]
+            if (((current - initial) & mask) >= ((current - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[current];
+                hashes[gap] = hashes[current];
+                gap = current;
+            }
+            current = (current + 1) & mask;
+        }
+
+        keys[gap] = null;
+        values[gap] = null;
+    }
+
+    /**
+     * Returns true if this table contains no entries.
+     * False otherwise.
+     *
+     * @return true if this table contains no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a string representation of this <tt>OpenAddressingHashtable</tt>.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+
+        // Go through all table entries
+        for (SimpleHashtable.TableEntry<K, V> entry : this) {
+            sb.append(entry).append(", ");
+        }
+        // Erase the last comma and space
+        if (size > 0) {
+            sb.setLength(sb.length()-2);
+        }
+
+        sb.append(']');
+        return sb.toString();
+    }
+
+    /**
+     * Removes all of the mappings from this map. The map will be empty after
+     * this call returns.
+     */
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        size = 0;
+        modificationCount++;
+    }
+
+    /**
+     * Copies all of the mappings from the specified hash table to this hash
+     * table. These mappings will replace any mappings that this hash table had
+     * for any of the keys currently in the specified hash table.
+     *
+     * @param hashtable mappings of the table to be stored in this table
+     */
+    @SuppressWarnings("unchecked")
+    public void putAll(OpenAddressingHashtable<? extends K, ? extends V> hashtable) {
+        Object[] keys = hashtable.keys;
+        Object[] values = hashtable.values;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                put((K) keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    @Override
+    public Iterator<SimpleHashtable.TableEntry<K, V>> iterator() {
+        return new IteratorImpl();
+    }
+
+    /**
+     * A table entry returned by the iterator of this table. The entry is a view
+     * of a single slot, so setting its value also sets the value stored in the
+     * table.
+     *
+     * @author Mario Bobic
+     */
+    private class SlotEntry extends SimpleHashtable.TableEntry<K, V> {
+
+        /** Slot of this entry. */
+        private final int slot;
+
+        /**
+         * Constructs a new view of the specified slot.
+         *
+         * @param slot slot of the entry
+         */
+        @SuppressWarnings("unchecked")
+        public SlotEntry(int slot) {
+            super((K) keys[slot], (V) values[slot], null);
+            this.slot = slot;
+        }
+
+        @Override
+        public void setValue(V value) {
+            super.setValue(value);
+            if (keys[slot] == getKey()) {
+                values[slot] = value;
+            }
+        }
+    }
+
+    /**
+     * Iterates through all elements in <tt>OpenAddressingHashtable</tt> by
+     * scanning the slots of the table. The scan starts right after an empty
+     * slot, so that no cluster is split between the end and the beginning of
+     * the scan. Thanks to that, entries shifted back while removing through
+     * this iterator are never skipped nor returned twice.
+     *
+     * @author Mario Bobic
+     */
+    private class IteratorImpl implements Iterator<SimpleHashtable.TableEntry<K, V>> {
+
+        /** The last returned slot, or <tt>-1</tt> if there is none. */
+        private int lastReturned = -1;
+        /** Slot that is scanned next. */
+        private int currentSlot;
+        /** Remaining elements in this iterator. */
+        private int remainingElements;
+        /** The expected number of modifications. */
+        private int expectedModCount = modificationCount;
+
+        /**
+         * Constructs a new iterator for class <tt>OpenAddressingHashtable</tt>.
+         * Sets the total number of remaining elements initially at size of
+         * this <tt>OpenAddressingHashtable</tt>.
+         */
+        public IteratorImpl() {
+            int start = 0;
+            while (keys[start] != null) {
+                start++;
+            }
+            currentSlot = start;
+            remainingElements = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            checkForConcurrentModification();
+            return remainingElements > 0;
+        }
+
+        @Override
+        public SimpleHashtable.TableEntry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more elements are available.");
+            }
+
+            int mask = keys.length - 1;
+            while (keys[currentSlot] == null) {
+                currentSlot = (currentSlot + 1) & mask;
+            }
+
+            lastReturned = currentSlot;
+            currentSlot = (currentSlot + 1) & mask;
+
+            remainingElements--;
+            return new SlotEntry(lastReturned);
+        }
+
+        @Override
+        public void remove() {
+            checkForConcurrentModification();
+            if (lastReturned == -1) {
+                throw new IllegalStateException();
+            }
+
+            removeSlot(lastReturned);
+            size--;
+            modificationCount++;
+            expectedModCount++;
+
+            // An entry may have been shifted into the removed slot
+            if (keys[lastReturned] != null) {
+                currentSlot = lastReturned;
+            }
+            lastReturned = -1;
+        }
+
+        /**
+         * Check if the modification count is as expected. If not, a
+         * {@linkplain ConcurrentModificationException} is thrown.
+         */
+        private void checkForConcurrentModification() {
+            if (modificationCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,419 @@
+package hr.fer.zemris.java.tecaj.hw5.collections;
+
+/**
+ * The <tt>SimpleCache</tt> class is a cache that holds at most a fixed number
+ * of mappings. Mappings are stored in a {@linkplain SimpleHashtable} and are
+ * additionally linked in the order of access, from the least recently used to
+ * the most recently used one. When a new mapping is put into a full cache, the
+ * least recently used mapping is <i>evicted</i> (LRU policy).
+ * <p>
+ * Optionally, the cache may use the <i>TinyLFU admission policy</i>. The cache
+ * then estimates how often each key has recently been requested, using a
+ * compact frequency sketch of fixed size, and a new mapping is only admitted
+ * into a full cache if its key has been requested more often than the key of
+ * the mapping that would be evicted. Keys that are requested only once
+ * therefore never push out frequently requested ones.
+ * <p>
+ * The cache counts hits, misses, evictions and rejected admissions.
+ *
+ * @author Mario Bobic
+ * @param <K> key argument
+ * @param <V> value argument
+ * @version 1.0
+ */
+public class SimpleCache<K, V> {
+
+    /** Mappings of this cache, linked in the order of access. */
+    private final SimpleHashtable<K, CacheEntry<K, V>> entries;
+    /** Sentinel of the access-ordered list of entries. */
+    private final CacheEntry<K, V> head;
+    /** Maximum number of mappings. */
+    private final int capacity;
+    /** Frequency sketch of the admission policy, or <tt>null</tt>. */
+    private final FrequencySketch sketch;
+
+    /** Number of lookups that found a mapping. */
+    private long hitCount;
+    /** Number of lookups that did not find a mapping. */
+    private long missCount;
+    /** Number of mappings evicted to make room for new ones. */
+    private long evictionCount;
+    /** Number of new mappings rejected by the admission policy. */
+    private long rejectionCount;
+
+    /**
+     * Constructs a new LRU <tt>SimpleCache</tt> that holds at most
+     * <tt>capacity</tt> mappings.
+     * <p>
+     * If the specified value is less than 1, an
+     * {@linkplain IllegalArgumentException} is thrown.
+     *
+     * @param capacity maximum number of mappings
+     * @throws IllegalArgumentException if <tt>capacity &lt; 1</tt>
+     */
+    public SimpleCache(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * Constructs a new <tt>SimpleCache</tt> that holds at most
+     * <tt>capacity</tt> mappings. If <tt>admission</tt> is true, the cache uses
+     * the TinyLFU admission policy in addition to the LRU eviction policy.
+     * <p>
+     * If the specified value is less than 1, an
+     * {@linkplain IllegalArgumentException} is thrown.
+     *
+     * @param capacity maximum number of mappings
+     * @param admission true if the TinyLFU admission policy should be used
+     * @throws IllegalArgumentException if <tt>capacity &lt; 1</tt>
+     */
+    public SimpleCache(int capacity, boolean admission) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(
+                "Capacity of the cache must be greater than 0.");
+        }
+        this.capacity = capacity;
+        this.entries = new SimpleHashtable<>(Math.max(2, Integer.highestOneBit(capacity) << 1));
+        this.head = new CacheEntry<>(null, null);
+        this.head.prev = this.head.next = this.head;
+        this.sketch = admission ? new FrequencySketch(capacity) : null;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or <tt>null</tt>
+     * if this cache contains no mapping for the key. A found mapping becomes
+     * the most recently used one.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key of the mapping
+     * @return value associated with the key if found, <tt>null</tt> otherwise
+     */
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+
+        CacheEntry<K, V> entry = entries.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        unlink(entry);
+        linkLast(entry);
+        return entry.value;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this cache and
+     * makes the mapping the most recently used one. If the cache is full, the
+     * least recently used mapping is evicted, unless the admission policy
+     * rejects the new mapping, in which case the cache is left unchanged.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return true if the mapping is stored in the cache, false if it has been
+     *         rejected
+     * @throws IllegalArgumentException if the key is <tt>null</tt>
+     */
+    public boolean put(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key must not be null.");
+        }
+
+        CacheEntry<K, V> entry = entries.get(key);
+        if (entry != null) {
+            entry.value = value;
+            unlink(entry);
+            linkLast(entry);
+            return true;
+        }
+
+        if (entries.size() >= capacity) {
+            CacheEntry<K, V> victim = head.next;
+            if (sketch != null && sketch.frequency(key) <= sketch.frequency(victim.key)) {
+                rejectionCount++;
+                return false;
+            }
+            unlink(victim);
+            entries.remove(victim.key);
+            evictionCount++;
+        }
+
+        entry = new CacheEntry<>(key, value);
+        entries.put(key, entry);
+        linkLast(entry);
+        return true;
+    }
+
+    /**
+     * Removes the mapping for the specified key from this cache if present.
+     *
+     * @param key key whose mapping is to be removed from the cache
+     */
+    public void remove(Object key) {
+        if (key == null) {
+            return;
+        }
+        CacheEntry<K, V> entry = entries.get(key);
+        if (entry != null) {
+            unlink(entry);
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Returns <tt>true</tt> if this cache contains a mapping for the specified
+     * key. Unlike {@linkplain #get(Object)}, this method neither changes the
+     * order of access nor the counters.
+     *
+     * @param key key whose presence in this cache is to be tested
+     * @return true if this cache contains the specified key
+     */
+    public boolean containsKey(Object key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Removes all of the mappings from this cache. The counters and the
+     * recorded frequencies are kept.
+     */
+    public void clear() {
+        entries.clear();
+        head.prev = head.next = head;
+    }
+
+    /**
+     * Returns the number of mappings in this cache.
+     *
+     * @return the number of mappings in this cache
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the maximum number of mappings in this cache.
+     *
+     * @return the maximum number of mappings in this cache
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of lookups that found a mapping.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups that did not find a mapping.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of mappings evicted to make room for new ones.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of new mappings rejected by the admission policy.
+     *
+     * @return the number of rejected mappings
+     */
+    public long getRejectionCount() {
+        return rejectionCount;
+    }
+
+    /**
+     * Returns a string representation of this <tt>SimpleCache</tt>, from the
+     * least recently used to the most recently used mapping.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+
+        for (CacheEntry<K, V> e = head.next; e != head; e = e.next) {
+            sb.append(e.key).append('=').append(e.value).append(", ");
+        }
+        // Erase the last comma and space
+        if (head.next != head) {
+            sb.setLength(sb.length()-2);
+        }
+
+        sb.append(']');
+        return sb.toString();
+    }
+
+    /**
+     * Removes the specified entry from the access-ordered list.
+     *
+     * @param entry entry to be removed
+     */
+    private void unlink(CacheEntry<K, V> entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+    }
+
+    /**
+     * Appends the specified entry to the end of the access-ordered list,
+     * making it the most recently used one.
+     *
+     * @param entry entry to be appended
+     */
+    private void linkLast(CacheEntry<K, V> entry) {
+        entry.prev = head.prev;
+        entry.next = head;
+        head.prev.next = entry;
+        head.prev = entry;
+    }
+
+    /**
+     * A mapping of the cache, linked into a doubly linked list in the order of
+     * access.
+     *
+     * @author Mario Bobic
+     * @param <K> key argument
+     * @param <V> value argument
+     */
+    private static class CacheEntry<K, V> {
+
+        /** Key of the mapping. */
+        final K key;
+        /** Value of the mapping. */
+        V value;
+        /** The previous entry in the order of access. */
+        CacheEntry<K, V> prev;
+        /** The next entry in the order of access. */
+        CacheEntry<K, V> next;
+
+        /**
+         * Constructs a new entry with the given key and value.
+         *
+         * @param key key of the mapping
+         * @param value value of the mapping
+         */
+        CacheEntry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A count-min sketch that estimates how often each key has recently been
+     * requested. Each key is counted in one small counter in each of the four
+     * rows of about four counters per mapping of the cache, and its frequency
+     * is estimated as the minimum of its counters. Counters saturate at 15,
+     * and all of them are halved once the number of counted requests reaches
+     * ten times the capacity of the cache (but at least 16), so that the
+     * sketch reflects recent requests.
+     *
+     * @author Mario Bobic
+     */
+    private static class FrequencySketch {
+
+        /** Number of rows. */
+        private static final int DEPTH = 4;
+        /** Maximum value of a counter. */
+        private static final int MAX_COUNT = 15;
+        /** Multipliers that derive an independent slot for each row. */
+        private static final int[] SEEDS = {
+            0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F
+        };
+
+        /** Counters of all rows, one row after another. */
+        private final byte[] counters;
+        /** Number of counters in a row. */
+        private final int width;
+        /** Shift that selects a slot within a row from the high bits. */
+        private final int shift;
+        /** Number of counted requests after which counters are halved. */
+        private final int sampleSize;
+        /** Number of requests counted since the counters were last halved. */
+        private int additions;
+
+        /**
+         * Constructs a new sketch for a cache of the specified capacity.
+         *
+         * @param capacity capacity of the cache
+         */
+        FrequencySketch(int capacity) {
+            capacity = Math.max(16, Math.min(capacity, 1 << 24));
+            width = Integer.highestOneBit(capacity - 1) << 3;
+            shift = Integer.numberOfLeadingZeros(width - 1);
+            counters = new byte[DEPTH * width];
+            sampleSize = 10 * capacity;
+        }
+
+        /**
+         * Returns the position of the counter of the specified key hash in the
+         * specified row.
+         *
+         * @param hash hash code of a key
+         * @param row a row
+         * @return position of the counter
+         */
+        private int index(int hash, int row) {
+            return row * width + ((hash * SEEDS[row]) >>> shift);
+        }
+
+        /**
+         * Counts a request of the specified key.
+         *
+         * @param key requested key
+         */
+        void increment(Object key) {
+            int hash = SimpleHashtable.hash(key);
+            for (int row = 0; row < DEPTH; row++) {
+                int i = index(hash, row);
+                if (counters[i] < MAX_COUNT) {
+                    counters[i]++;
+                }
+            }
+
+            if (++additions >= sampleSize) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        /**
+         * Returns the estimated number of recent requests of the specified
+         * key.
+         *
+         * @param key a key
+         * @return the estimated frequency of the key
+         */
+        int frequency(Object key) {
+            int hash = SimpleHashtable.hash(key);
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, counters[index(hash, row)]);
+            }
+            return frequency;
+        }
+    }
+
+}
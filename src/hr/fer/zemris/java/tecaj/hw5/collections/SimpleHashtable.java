@@ -1,9 +1,16 @@
 package hr.fer.zemris.java.tecaj.hw5.collections;
 
+import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The <tt>SimpleHashtable</tt> class represents a hash table used to implement
@@ -21,7 +28,42 @@ import java.util.Objects;
  * the hash table exceeds the product of the load factor and the current
  * capacity, the hash table is <i>rehashed</i> (that is, internal data
  * structures are rebuilt) so that the hash table has approximately twice the
- * number of slots.
+ * number of slots. Likewise, when entries are removed and the number of
+ * entries falls below a quarter of that product, the table is shrunk to half
+ * of its slots, but never below its initial capacity.
+ * {@linkplain #trimToSize()} shrinks the table to the smallest capacity that
+ * holds its entries.
+ * <p>
+ * By default, rehashing moves all entries into the new table at once. A table
+ * constructed with <i>incremental resizing</i> instead keeps both the old and
+ * the new table while growing, and moves only a few slots of the old table to
+ * the new one on each insertion or removal. That way the cost of rehashing is
+ * spread across many operations and no single operation has to pay for moving
+ * the whole table.
+ * <p>
+ * A slot normally holds its entries in a singly linked list. When many keys
+ * end up in the same slot, which happens with poorly distributed or
+ * deliberately colliding hash codes, the slot is converted to a balanced
+ * binary search tree ordered by hash codes and, for keys that implement
+ * {@linkplain Comparable}, by their natural ordering. Lookups in such a slot
+ * take O(log n) time instead of O(n). The slot is converted back to a list
+ * once enough of its entries have been removed.
+ * <p>
+ * A table whose contents are known in advance may be <i>bulk-built</i> from a
+ * collection of values or from arrays of keys and values. Such a table is
+ * allocated with a capacity that holds all of the mappings without being
+ * rehashed and, if the keys are known to be distinct, entries are linked into
+ * their slots without comparing them to the keys already present.
+ * <p>
+ * Entries of the table may also be traversed with a {@linkplain Stream},
+ * which may be parallel. The {@linkplain Spliterator} of the table splits the
+ * range of slots in halves, so that each thread scans its own part of the
+ * table.
+ * <p>
+ * For full scans, {@linkplain #forEach(BiConsumer)},
+ * {@linkplain #forEachKey(Consumer)} and {@linkplain #forEachValue(Consumer)}
+ * walk the slots directly and check for concurrent modification only once,
+ * after the whole table has been traversed.
  * <p>
  * This class is an upgrade of a <tt>SimpleHashtable</tt> made in OOP on
  * academic year 2015/16.
@@ -39,11 +81,56 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
     /** Default load factor of a table. */
     private static final float LOAD_FACTOR = 0.75f;
 
+    /** Maximum length of a table. */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Load factor below which the table is shrunk when entries are removed.
+     * A quarter of {@linkplain #LOAD_FACTOR}, so that a shrunk table is still
+     * far from being resized again.
+     */
+    private static final float SHRINK_LOAD_FACTOR = LOAD_FACTOR / 4;
+
+    /**
+     * Number of entries at which {@linkplain #containsValue(Object)} scans the
+     * table in parallel.
+     */
+    private static final int PARALLEL_SCAN_THRESHOLD = 1 << 16;
+
     /** Number of times the table is expanded when resizing is done. */
     private static final int MULTIPLICATION_FACTOR = 2;
 
+    /**
+     * Number of slots of the old table that are moved to the new table on each
+     * insertion or removal while the table is being incrementally resized.
+     * Must be at least 2 so that all slots are moved before the new table
+     * needs to grow itself.
+     */
+    private static final int MIGRATION_STEP = 4;
+
+    /** Number of entries in a slot at which the slot is converted to a tree. */
+    private static final int TREEIFY_THRESHOLD = 8;
+    /**
+     * Number of entries in a slot at which the slot is converted back to a
+     * list. Smaller than {@linkplain #TREEIFY_THRESHOLD} so that a slot does
+     * not keep being converted when entries are added and removed.
+     */
+    private static final int UNTREEIFY_THRESHOLD = 6;
+
     /** The internal storage of this table. */
     private TableEntry<K, V>[] table;
+    /**
+     * The storage this table is being incrementally resized from, or
+     * <tt>null</tt> if no resizing is in progress. A key is stored in this
+     * table if its slot in this table has not yet been migrated.
+     */
+    private TableEntry<K, V>[] oldTable;
+    /** Number of slots of the old table that have already been migrated. */
+    private int migratedSlots;
+    /** Indicates whether this table is resized incrementally. */
+    private final boolean incremental;
+    /** Length below which the table is not automatically shrunk. */
+    private final int minCapacity;
     /** Number of currently stored elements in this table. */
     private int size;
     /**
@@ -73,8 +160,26 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
      * @param n initial hash table size
      * @throws IllegalArgumentException if <tt>n &lt; 1</tt>
      */
-    @SuppressWarnings("unchecked")
     public SimpleHashtable(int n) {
+        this(n, false);
+    }
+
+    /**
+     * Constructs a new <tt>SimpleHashtable</tt> object that stores entries in a
+     * table sized the first power of two that is greater than or equal to the
+     * argument value. The object is initially empty. If <tt>incremental</tt>
+     * is true, the table is resized incrementally, a few slots at a time,
+     * instead of all at once.
+     * <p>
+     * If the specified value is less than 1, an
+     * {@linkplain IllegalArgumentException} is thrown.
+     *
+     * @param n initial hash table size
+     * @param incremental true if the table should be resized incrementally
+     * @throws IllegalArgumentException if <tt>n &lt; 1</tt>
+     */
+    @SuppressWarnings("unchecked")
+    public SimpleHashtable(int n, boolean incremental) {
         if (n < 1) {
             throw new IllegalArgumentException(
                 "Initial size of the table must be greater than 0.");
@@ -82,22 +187,92 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
         int tableSize = nextPowerOfTwo(n);
         table = new TableEntry[tableSize];
         size = 0;
+        this.incremental = incremental;
+        minCapacity = tableSize;
     }
 
     /**
      * Constructs a new <tt>SimpleHashtable</tt> with the same mappings as the
      * specified <tt>hashtable</tt>. The <tt>SimpleHashtable</tt> is created
      * with an initial capacity sufficient to hold the mappings in the specified
-     * <tt>hashtable</tt>.
+     * <tt>hashtable</tt> and is resized the same way as the specified one.
      *
      * @param hashtable hash table whose elements are to be copied to this one
      */
     @SuppressWarnings("unchecked")
     public SimpleHashtable(SimpleHashtable<? extends K, ? extends V> hashtable) {
         table = new TableEntry[hashtable.table.length];
+        incremental = hashtable.incremental;
+        minCapacity = hashtable.minCapacity;
         putAll(hashtable);
     }
 
+    /**
+     * Constructs a new <tt>SimpleHashtable</tt> object that maps each of the
+     * specified values by the key the <tt>keyMapper</tt> function returns for
+     * it. The table is allocated with a capacity that holds all of the values
+     * without being rehashed.
+     * <p>
+     * If <tt>distinctKeys</tt> is true, the caller guarantees that no two
+     * values are mapped by equal keys, so the entries are linked into their
+     * slots without looking for an existing mapping of the key. If this
+     * guarantee does not hold, the table will contain more than one mapping
+     * for the same key. If <tt>distinctKeys</tt> is false, a value replaces any
+     * value previously mapped by the same key, as with
+     * {@linkplain #put(Object, Object) put}.
+     *
+     * @param values values to be stored in this table
+     * @param keyMapper function that returns the key of a value
+     * @param distinctKeys true if the keys of all values are known to be
+     *        distinct
+     * @throws IllegalArgumentException if a key is <tt>null</tt>
+     */
+    @SuppressWarnings("unchecked")
+    public SimpleHashtable(Collection<? extends V> values,
+            Function<? super V, ? extends K> keyMapper, boolean distinctKeys) {
+        table = new TableEntry[tableSizeFor(values.size())];
+        incremental = false;
+        minCapacity = DEFAULT_CAPACITY;
+
+        for (V value : values) {
+            putBulk(keyMapper.apply(value), value, distinctKeys);
+        }
+    }
+
+    /**
+     * Constructs a new <tt>SimpleHashtable</tt> object that maps each key of
+     * the <tt>keys</tt> array to the value at the same index of the
+     * <tt>values</tt> array. The table is allocated with a capacity that holds
+     * all of the mappings without being rehashed.
+     * <p>
+     * If <tt>distinctKeys</tt> is true, the caller guarantees that the keys
+     * are distinct, so the entries are linked into their slots without looking
+     * for an existing mapping of the key. If this guarantee does not hold, the
+     * table will contain more than one mapping for the same key. If
+     * <tt>distinctKeys</tt> is false, a value replaces any value previously
+     * mapped by the same key, as with {@linkplain #put(Object, Object) put}.
+     *
+     * @param keys keys of the mappings
+     * @param values values of the mappings
+     * @param distinctKeys true if the keys are known to be distinct
+     * @throws IllegalArgumentException if the arrays are not of the same
+     *         length or a key is <tt>null</tt>
+     */
+    @SuppressWarnings("unchecked")
+    public SimpleHashtable(K[] keys, V[] values, boolean distinctKeys) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException(
+                "Keys and values must be of the same length.");
+        }
+        table = new TableEntry[tableSizeFor(keys.length)];
+        incremental = false;
+        minCapacity = DEFAULT_CAPACITY;
+
+        for (int i = 0; i < keys.length; i++) {
+            putBulk(keys[i], values[i], distinctKeys);
+        }
+    }
+
     /**
      * Returns the first power of two that is greater than or equal to the
      * argument value. Special cases:
@@ -106,27 +281,74 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
      * the same as the argument.
      * <li>If the argument value is less than or equal to zero, then the result
      * is first positive power of two, which is 1.
+     * <li>If the argument value is greater than the maximum length of a table,
+     * then the result is the maximum length.
      * </ul>
      *
      * @param n a value
      * @return the first integer power of two that is greater than or equal to
      *         the argument
      */
-    private int nextPowerOfTwo(int n) {
-        if (n <= 0) return 1;
-        int exponent = (int) (Math.ceil(Math.log(n) / Math.log(2)));
-        return (int) Math.pow(2, exponent);
+    private static int nextPowerOfTwo(int n) {
+        if (n <= 1) return 1;
+        if (n >= MAX_CAPACITY) return MAX_CAPACITY;
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Returns the length of a table that is able to hold <tt>n</tt> entries
+     * without being resized. A table is resized once the number of its entries
+     * reaches the product of the load factor and its length, so the length
+     * must be strictly greater than <tt>n / LOAD_FACTOR</tt>.
+     *
+     * @param n number of entries
+     * @return length of a table that holds <tt>n</tt> entries
+     */
+    private static int tableSizeFor(int n) {
+        return nextPowerOfTwo((int) Math.min(n / LOAD_FACTOR + 1, MAX_CAPACITY));
+    }
+
+    /**
+     * Calculates hash code of a given key argument and spreads its higher bits
+     * to the lower ones. Since the length of a table is always a power of two,
+     * only the lowest bits of the hash select the slot, and keys whose hash
+     * codes differ only in the higher bits would otherwise always collide.
+     *
+     * @param key key whose hash is to be calculated
+     * @return the spread hash code of the key
+     */
+    static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the slot to which a key with the specified hash belongs in a
+     * table of the specified length. Since the length is a power of two, the
+     * slot is obtained by masking the lowest bits of the hash.
+     *
+     * @param hash spread hash code of a key
+     * @param length length of the table, a power of two
+     * @return slot to which the key belongs
+     */
+    private static int determineSlot(int hash, int length) {
+        return hash & (length - 1);
     }
 
     /**
-     * Calculates hash code of a given key argument and returns the slot to
-     * which it belongs.
+     * Returns the storage that holds, or should hold, a key with the specified
+     * hash. This is the old table if the table is being incrementally resized
+     * and the slot of the key has not yet been migrated, or the current table
+     * otherwise.
      *
-     * @param key key whose slot is to be determined
-     * @return slot to which the object belongs
+     * @param hash spread hash code of a key
+     * @return the storage that holds the key
      */
-    private int determineSlot(Object key) {
-        return Math.abs(key.hashCode()) % table.length;
+    private TableEntry<K, V>[] tableFor(int hash) {
+        if (oldTable != null && determineSlot(hash, oldTable.length) >= migratedSlots) {
+            return oldTable;
+        }
+        return table;
     }
 
     /**
@@ -134,6 +356,9 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
      * the table previously contained a mapping for the key, the old value is
      * replaced.
      * <p>
+     * The list of the slot is traversed only once, both to find an existing
+     * entry and to find the end of the list to which a new entry is appended.
+     * <p>
      * Time complexity: O(1)
      *
      * @param key key with which the specified value is to be associated
@@ -144,24 +369,53 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
             throw new IllegalArgumentException("Key must not be null.");
         }
 
-        TableEntry<K, V> oldEntry = getEntry(key);
+        int hash = hash(key);
+        TableEntry<K, V>[] table = tableFor(hash);
+        int slot = determineSlot(hash, table.length);
+        TableEntry<K, V> first = table[slot];
+
+        if (first instanceof TreeEntry) {
+            TreeEntry<K, V> root = ((TreeEntry<K, V>) first).root();
+            TreeEntry<K, V> oldEntry = TreeEntry.find(root, key, hash);
+            if (oldEntry != null) {        // Entry exists
+                oldEntry.value = value;
+                return;
+            }
 
-        if (oldEntry == null) {            // Entry does not exist
-            TableEntry<K, V> newEntry = new TableEntry<K, V>(key, value, null);
-            int slot = determineSlot(key);
+            // Entry does not exist, the new one becomes the first in slot
+            TreeEntry<K, V> newEntry = new TreeEntry<>(key, value, first, hash);
+            ((TreeEntry<K, V>) first).prev = newEntry;
+            table[slot] = newEntry;
+            TreeEntry.insert(root, newEntry);
+        } else {
+            int count = 0;
+            TableEntry<K, V> last = null;
+            for (TableEntry<K, V> e = first; e != null; e = e.next) {
+                Object k;
+                if (e.hash == hash && ((k = e.key) == key || k.equals(key))) {
+                    e.value = value;    // Entry exists
+                    return;
+                }
+                last = e;
+                count++;
+            }
 
-            if (table[slot] == null) {    // Empty slot
+            TableEntry<K, V> newEntry = new TableEntry<K, V>(key, value, null, hash);
+            if (last == null) {            // Empty slot
                 table[slot] = newEntry;
             } else {                    // Slot not empty
-                getLastInSlot(slot).next = newEntry;
+                last.next = newEntry;
             }
 
-            size++;
-            modificationCount++;
-            checkCapacity();
-        } else {                        // Entry exists
-            oldEntry.value = value;
+            if (count + 1 >= TREEIFY_THRESHOLD) {
+                table[slot] = TreeEntry.treeify(table[slot]);
+            }
         }
+
+        size++;
+        modificationCount++;
+        migrateStep();
+        checkCapacity();
     }
 
     /**
@@ -172,22 +426,250 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
      * slots.
      */
     void checkCapacity() {
-        if (size >= LOAD_FACTOR*table.length) {
+        if (size >= LOAD_FACTOR*table.length && table.length < MAX_CAPACITY) {
             resize();
         }
     }
 
+    /**
+     * Makes sure that the table is able to hold <tt>n</tt> entries without
+     * being resized. A pending incremental resize is finished first, and the
+     * table is then rehashed as many times as needed, all at once. An empty
+     * table simply allocates a new storage of the required length.
+     *
+     * @param n number of entries the table should be able to hold
+     */
+    @SuppressWarnings("unchecked")
+    private void ensureCapacity(int n) {
+        int length = tableSizeFor(n);
+        if (length <= table.length) {
+            return;
+        }
+
+        finishMigration();
+        if (size == 0) {
+            table = new TableEntry[length];
+            return;
+        }
+        while (table.length < length) {
+            rehash();
+        }
+    }
+
     /**
      * <i>Rehashes</i> the hash table (that is, rebuilds the internal data
      * structures) so that the hash table has approximately twice the number of
      * slots.
+     * <p>
+     * If this table is resized incrementally, only a new storage is allocated
+     * and the entries are moved to it by subsequent insertions and removals.
      */
     @SuppressWarnings("unchecked")
     void resize() {
+        if (incremental) {
+            // Should not happen, but a pending resize must be finished first
+            finishMigration();
+            oldTable = table;
+            migratedSlots = 0;
+            table = new TableEntry[MULTIPLICATION_FACTOR*table.length];
+            return;
+        }
+
+        rehash();
+    }
+
+    /**
+     * Moves all entries to a new storage that has twice the number of slots,
+     * at once. Must not be called while an incremental resize is in progress.
+     */
+    @SuppressWarnings("unchecked")
+    private void rehash() {
         TableEntry<K, V>[] oldTable = table;
         table = new TableEntry[MULTIPLICATION_FACTOR*table.length];
-        size = 0;
-        putAllTable(oldTable);
+        for (int i = 0; i < oldTable.length; i++) {
+            splitSlot(oldTable, i, table);
+        }
+    }
+
+    /**
+     * Moves all remaining slots of the old table to the current table if the
+     * table is being incrementally resized.
+     */
+    private void finishMigration() {
+        while (oldTable != null) {
+            migrateStep();
+        }
+    }
+
+    /**
+     * Check if the number of entries in the hash table fell below the product
+     * of the shrink load factor and the current capacity. If the test returns
+     * true and the table is larger than its initial capacity, the table is
+     * shrunk to half of its slots. A table that is being incrementally resized
+     * is not shrunk.
+     */
+    private void checkShrink() {
+        if (oldTable == null && table.length > minCapacity
+                && size < SHRINK_LOAD_FACTOR*table.length) {
+            halve();
+        }
+    }
+
+    /**
+     * Shrinks the table to the smallest capacity that is able to hold all of
+     * its entries without being resized, releasing the memory of the unused
+     * slots. A pending incremental resize is finished first.
+     * <p>
+     * Unlike the automatic shrinking on removal, the table may be shrunk
+     * below its initial capacity.
+     */
+    public void trimToSize() {
+        finishMigration();
+        int length = tableSizeFor(size);
+        if (length >= table.length) {
+            return;
+        }
+
+        while (table.length > length) {
+            halve();
+        }
+        modificationCount++;
+    }
+
+    /**
+     * Moves all entries to a new storage that has half the number of slots,
+     * at once. Must not be called while an incremental resize is in progress.
+     */
+    @SuppressWarnings("unchecked")
+    private void halve() {
+        TableEntry<K, V>[] oldTable = table;
+        table = new TableEntry[oldTable.length / 2];
+        for (int i = 0; i < table.length; i++) {
+            mergeSlots(oldTable, i, table);
+        }
+    }
+
+    /**
+     * Moves the next {@linkplain #MIGRATION_STEP} slots of the old table to
+     * the current table if the table is being incrementally resized. When all
+     * slots have been moved, the old table is discarded.
+     */
+    private void migrateStep() {
+        if (oldTable == null) {
+            return;
+        }
+
+        int end = Math.min(migratedSlots + MIGRATION_STEP, oldTable.length);
+        for (int i = migratedSlots; i < end; i++) {
+            splitSlot(oldTable, i, table);
+        }
+
+        migratedSlots = end;
+        if (migratedSlots == oldTable.length) {
+            oldTable = null;
+        }
+    }
+
+    /**
+     * Moves all entries of the specified <tt>slot</tt> of the <tt>from</tt>
+     * table to the <tt>to</tt> table that is twice as long. Since the length
+     * of a table is always a power of two, an entry of slot <tt>i</tt> may
+     * only end up in slot <tt>i</tt> (the <i>lower</i> half) or in slot
+     * <tt>i + from.length</tt> (the <i>higher</i> half) of the new table,
+     * depending on a single bit of its hash, and no other slot of the old
+     * table moves entries to these two slots.
+     * <p>
+     * The existing entries are therefore split into two lists and relinked
+     * into the new table in the same order. No entries are allocated, no keys
+     * are compared and no lists are traversed more than once. If the slot was
+     * a tree, each of the two lists is either rebuilt as a tree or, if it got
+     * small enough, converted back to a list.
+     *
+     * @param from table whose slot is moved
+     * @param slot slot to be moved
+     * @param to table that is twice as long as the <tt>from</tt> table
+     */
+    private static <K, V> void splitSlot(TableEntry<K, V>[] from, int slot, TableEntry<K, V>[] to) {
+        TableEntry<K, V> loHead = null, loTail = null;
+        TableEntry<K, V> hiHead = null, hiTail = null;
+        int loCount = 0, hiCount = 0;
+
+        TableEntry<K, V> entry = from[slot];
+        boolean tree = entry instanceof TreeEntry;
+        from[slot] = null;
+        while (entry != null) {
+            if ((entry.hash & from.length) == 0) {
+                if (loTail == null) loHead = entry;
+                else loTail.next = entry;
+                loTail = entry;
+                loCount++;
+            } else {
+                if (hiTail == null) hiHead = entry;
+                else hiTail.next = entry;
+                hiTail = entry;
+                hiCount++;
+            }
+            entry = entry.next;
+        }
+
+        if (loTail != null) {
+            loTail.next = null;
+            if (tree) {
+                loHead = loCount > UNTREEIFY_THRESHOLD
+                        ? TreeEntry.treeify(loHead) : TreeEntry.untreeify(loHead);
+            }
+            to[slot] = loHead;
+        }
+        if (hiTail != null) {
+            hiTail.next = null;
+            if (tree) {
+                hiHead = hiCount > UNTREEIFY_THRESHOLD
+                        ? TreeEntry.treeify(hiHead) : TreeEntry.untreeify(hiHead);
+            }
+            to[slot + from.length] = hiHead;
+        }
+    }
+
+    /**
+     * Moves all entries of the specified <tt>slot</tt> and of the slot
+     * <tt>slot + to.length</tt> of the <tt>from</tt> table to the slot
+     * <tt>slot</tt> of the <tt>to</tt> table that is half as long. This is the
+     * reverse of {@linkplain #splitSlot}: the two lists are simply
+     * concatenated, without allocating entries or comparing keys. If the
+     * concatenated list is long enough, it is converted to a tree, otherwise
+     * any tree entries are converted back to a list.
+     *
+     * @param from table whose slots are moved
+     * @param slot the lower of the two slots to be moved
+     * @param to table that is half as long as the <tt>from</tt> table
+     */
+    private static <K, V> void mergeSlots(TableEntry<K, V>[] from, int slot, TableEntry<K, V>[] to) {
+        TableEntry<K, V> head = from[slot];
+        TableEntry<K, V> hiHead = from[slot + to.length];
+        boolean tree = head instanceof TreeEntry || hiHead instanceof TreeEntry;
+        from[slot] = from[slot + to.length] = null;
+
+        int count = 0;
+        TableEntry<K, V> tail = null;
+        for (TableEntry<K, V> e = head; e != null; e = e.next) {
+            tail = e;
+            count++;
+        }
+        if (tail == null) {
+            head = hiHead;
+        } else {
+            tail.next = hiHead;
+        }
+        for (TableEntry<K, V> e = hiHead; e != null; e = e.next) {
+            count++;
+        }
+
+        if (count >= TREEIFY_THRESHOLD) {
+            head = TreeEntry.treeify(head);
+        } else if (tree) {
+            head = TreeEntry.untreeify(head);
+        }
+        to[slot] = head;
     }
 
     /**
@@ -206,32 +688,43 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
      * @return value associated with the key if found, <tt>null</tt> otherwise
      */
     public V get(Object key) {
-        TableEntry<K, V> entry = getEntry(key);
+        if (key == null) {
+            return null;
+        }
+        TableEntry<K, V> entry = getEntry(key, hash(key));
         return entry == null ? null : entry.value;
     }
 
     /**
-     * Returns the table entry to which the specified key belongs, or
+     * Returns the table entry to which the specified non-null key belongs, or
      * <tt>null</tt> if this table contains no mapping for the key.
      * <p>
      * A return value of <tt>null</tt> means that the table entry does not exist
      * in this hash table.
      * <p>
+     * The cached hash of each entry in the slot is compared before its key,
+     * so {@linkplain Object#equals(Object) equals} is called only for keys
+     * that are very likely to be equal.
+     * <p>
      * Time complexity: O(1)
      *
      * @param key key of the entry
+     * @param hash spread hash code of the key
      * @return existing entry if found, <tt>null</tt> otherwise
      */
-    private TableEntry<K, V> getEntry(Object key) {
-        if (key == null) {
-            return null;
-        }
-
-        int slot = determineSlot(key);
+    private TableEntry<K, V> getEntry(Object key, int hash) {
+        TableEntry<K, V>[] table = tableFor(hash);
+        int slot = determineSlot(hash, table.length);
 
         TableEntry<K, V> currentInList = table[slot];
+        if (currentInList instanceof TreeEntry) {
+            return TreeEntry.find(((TreeEntry<K, V>) currentInList).root(), key, hash);
+        }
+
         while (currentInList != null) {
-            if (currentInList.key.equals(key)) {
+            Object k;
+            if (currentInList.hash == hash
+                    && ((k = currentInList.key) == key || k.equals(key))) {
                 return currentInList;
             }
             currentInList = currentInList.next;
@@ -240,24 +733,6 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
         return null;
     }
 
-    /**
-     * Returns the last table entry in the specified <tt>slot</tt>. This method
-     * iterates through all elements of the singly linked list in the specified
-     * slot to find the last one.
-     *
-     * @param slot slot of which the last element is to be returned
-     * @return the last element of the specified slot
-     */
-    private TableEntry<K, V> getLastInSlot(int slot) {
-        TableEntry<K, V> currentInList = table[slot];
-
-        while (currentInList.next != null) {
-            currentInList = currentInList.next;
-        }
-
-        return currentInList;
-    }
-
     /**
      * Returns the size of this hash table object. Size is determined by the
      * number of entries in the table.
@@ -268,6 +743,17 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
         return size;
     }
 
+    /**
+     * Returns the number of slots of the current storage of this table. While
+     * the table is being incrementally resized, this is the number of slots of
+     * the new storage.
+     *
+     * @return the capacity of this table
+     */
+    int capacity() {
+        return table.length;
+    }
+
     /**
      * Returns <tt>true</tt> if this table contains the desired key.
      * False otherwise.
@@ -278,7 +764,10 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
      * @return true if this table contains the specified key
      */
     public boolean containsKey(Object key) {
-        TableEntry<K, V> entry = getEntry(key);
+        if (key == null) {
+            return false;
+        }
+        TableEntry<K, V> entry = getEntry(key, hash(key));
         return entry == null ? false : true;
     }
 
@@ -286,12 +775,18 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
      * Returns <tt>true</tt> if this table contains the desired value.
      * False otherwise.
      * <p>
+     * Large tables are scanned in parallel, using the common fork-join pool.
+     * <p>
      * Time complexity: O(n)
      *
      * @param value value whose presence in this table is to be tested
      * @return true if this map contains the specified value
      */
     public boolean containsValue(Object value) {
+        if (size >= PARALLEL_SCAN_THRESHOLD) {
+            return parallelStream().anyMatch(entry -> Objects.equals(entry.value, value));
+        }
+
         for (TableEntry<K, V> entry : this) {
             if (Objects.equals(entry.value, value)) {
                 return true;
@@ -302,19 +797,61 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
 
     /**
      * Removes the mapping for the specified key from this table if present.
+     * If the table becomes sparse enough, it is shrunk.
      * <p>
      * Time complexity: O(1)
      *
      * @param key key whose mapping is to be removed from the table
      */
     public void remove(Object key) {
-        TableEntry<K, V> entry = getEntry(key);
+        if (removeEntry(key, true)) {
+            migrateStep();
+            checkShrink();
+        }
+    }
+
+    /**
+     * Removes the mapping for the specified key from this table if present,
+     * without moving any slots if the table is being incrementally resized.
+     * <p>
+     * If <tt>movable</tt> is false, the remaining entries are left in place
+     * even if their slot should be converted from a tree back to a list, so
+     * that an iterator positioned on the removed entry may continue.
+     *
+     * @param key key whose mapping is to be removed from the table
+     * @param movable true if other entries of the slot may be replaced
+     * @return true if the mapping was present and has been removed
+     */
+    private boolean removeEntry(Object key, boolean movable) {
+        if (key == null) {
+            return false;
+        }
+        int hash = hash(key);
+        TableEntry<K, V> entry = getEntry(key, hash);
         if (entry == null) {
-            return;
+            return false;
         }
 
-        int slot = determineSlot(key);
-        if (entry == table[slot]) {
+        TableEntry<K, V>[] table = tableFor(hash);
+        int slot = determineSlot(hash, table.length);
+        if (entry instanceof TreeEntry) {
+            TreeEntry<K, V> treeEntry = (TreeEntry<K, V>) entry;
+            TableEntry<K, V> next = treeEntry.next;
+            TreeEntry<K, V> prev = treeEntry.prev;
+            if (prev == null) {
+                table[slot] = next;
+            } else {
+                prev.next = next;
+            }
+            if (next != null) {
+                ((TreeEntry<K, V>) next).prev = prev;
+            }
+            TreeEntry.delete(treeEntry);
+
+            if (movable && TreeEntry.isShorterThan(table[slot], UNTREEIFY_THRESHOLD + 1)) {
+                table[slot] = TreeEntry.untreeify(table[slot]);
+            }
+        } else if (entry == table[slot]) {
             // The wanted element is the first element in slot
             table[slot] = entry.next;
         } else {
@@ -329,6 +866,7 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
 
         size--;
         modificationCount++;
+        return true;
     }
 
     /**
@@ -354,7 +892,9 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
             sb.append(entry).append(", ");
         }
         // Erase the last comma and space
-        sb.setLength(sb.length()-2);
+        if (size > 0) {
+            sb.setLength(sb.length()-2);
+        }
 
         sb.append(']');
         return sb.toString();
@@ -362,14 +902,16 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
 
     /**
      * Removes all of the mappings from this map. The map will be empty after
-     * this call returns.
+     * this call returns. The storage is replaced with a new one of the initial
+     * capacity, so that the memory of a grown table is released.
      */
+    @SuppressWarnings("unchecked")
     public void clear() {
-        // "Detach" all linked lists from table entries
-        for (int i = 0; i < table.length; i++) {
-            table[i] = null;
-        }
+        table = new TableEntry[Math.min(table.length, minCapacity)];
+        oldTable = null;
+        migratedSlots = 0;
         size = 0;
+        modificationCount++;
     }
 
     /**
@@ -380,27 +922,115 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
      * @param hashtable mappings of the table to be stored in this table
      */
     public void putAll(SimpleHashtable<? extends K, ? extends V> hashtable) {
-        putAllTable(hashtable.table);
+        if (hashtable == this || hashtable.isEmpty()) {
+            return;
+        }
+
+        // The table grows at most once, and keys of an empty table can not collide
+        ensureCapacity(size + hashtable.size);
+        finishMigration();
+        boolean distinctKeys = isEmpty();
+
+        putAllTable(hashtable.table, distinctKeys);
+        if (hashtable.oldTable != null) {
+            putAllTable(hashtable.oldTable, distinctKeys);
+        }
     }
 
     /**
      * Copies all of the elements from the specified table to the table of this
      * <tt>SimpleHashtable</tt>. These mappings will replace any mappings that
      * this hash table had for any of the keys currently in the specified table.
+     * <p>
+     * If <tt>distinctKeys</tt> is true, the cached hashes of the entries are
+     * reused and the entries are linked into their slots without looking for
+     * an existing mapping of the key.
      *
      * @param table mappings of the table to be stored into the inner table
+     * @param distinctKeys true if the keys are known not to be present in
+     *        this table
      */
-    private void putAllTable(TableEntry<? extends K, ? extends V>[] table) {
+    private void putAllTable(TableEntry<? extends K, ? extends V>[] table, boolean distinctKeys) {
         for (int i = 0; i < table.length; i++) {
             TableEntry<? extends K, ? extends V> currentInList = table[i];
 
             while (currentInList != null) {
-                put(currentInList.key, currentInList.value);
+                if (distinctKeys) {
+                    linkEntry(currentInList.key, currentInList.hash, currentInList.value);
+                } else {
+                    put(currentInList.key, currentInList.value);
+                }
                 currentInList = currentInList.next;
             }
         }
     }
 
+    /**
+     * Stores the specified mapping while the table is being bulk-built. If
+     * <tt>distinctKeys</tt> is true, the entry is linked into its slot without
+     * looking for an existing mapping of the key. Otherwise, the mapping is
+     * stored with {@linkplain #put(Object, Object) put}.
+     *
+     * @param key key of the mapping
+     * @param value value of the mapping
+     * @param distinctKeys true if the key is known not to be present
+     * @throws IllegalArgumentException if the key is <tt>null</tt>
+     */
+    private void putBulk(K key, V value, boolean distinctKeys) {
+        if (!distinctKeys) {
+            put(key, value);
+            return;
+        }
+        if (key == null) {
+            throw new IllegalArgumentException("Key must not be null.");
+        }
+        linkEntry(key, hash(key), value);
+    }
+
+    /**
+     * Links a new entry with the specified key, which is known not to be
+     * present, into its slot. The list of the slot is only traversed to find
+     * its end, and keys are not compared. The table is neither resized nor
+     * incrementally migrated, so it must already be large enough and no
+     * incremental resize may be in progress.
+     *
+     * @param key key of the new entry
+     * @param hash spread hash code of the key
+     * @param value value of the new entry
+     */
+    private void linkEntry(K key, int hash, V value) {
+        int slot = determineSlot(hash, table.length);
+        TableEntry<K, V> first = table[slot];
+
+        if (first instanceof TreeEntry) {
+            TreeEntry<K, V> root = ((TreeEntry<K, V>) first).root();
+            TreeEntry<K, V> newEntry = new TreeEntry<>(key, value, first, hash);
+            ((TreeEntry<K, V>) first).prev = newEntry;
+            table[slot] = newEntry;
+            TreeEntry.insert(root, newEntry);
+        } else {
+            TableEntry<K, V> newEntry = new TableEntry<K, V>(key, value, null, hash);
+            if (first == null) {
+                table[slot] = newEntry;
+            } else {
+                int count = 1;
+                TableEntry<K, V> last = first;
+                while (last.next != null) {
+                    last = last.next;
+                    count++;
+                }
+                last.next = newEntry;
+
+                if (count + 1 >= TREEIFY_THRESHOLD) {
+                    table[slot] = TreeEntry.treeify(first);
+                }
+            }
+        }
+
+        size++;
+        modificationCount++;
+    }
+
     /**
      * A class that represents a table entry for the <tt>SimpleHashtable</tt>
      * class. Used to store entries by their key and value.
@@ -412,11 +1042,13 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
     public static class TableEntry<K, V> {
 
         /** Key of the table entry. */
-        private K key;
+        K key;
         /** Value of the table entry. */
-        private V value;
+        V value;
         /** The next element of a singly linked list. */
-        private TableEntry<K, V> next;
+        TableEntry<K, V> next;
+        /** Spread hash code of the key, cached to avoid recalculating it. */
+        final int hash;
 
         /**
          * Constructs a new table entry for its superclass
@@ -428,9 +1060,23 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
          * @param next next table entry in a singly linked list
          */
         public TableEntry(K key, V value, TableEntry<K, V> next) {
+            this(key, value, next, key == null ? 0 : hash(key));
+        }
+
+        /**
+         * Constructs a new table entry with given key, value, next table entry
+         * in a singly linked list and an already calculated hash of the key.
+         *
+         * @param key key of the entry
+         * @param value value of the entry
+         * @param next next table entry in a singly linked list
+         * @param hash spread hash code of the key
+         */
+        TableEntry(K key, V value, TableEntry<K, V> next, int hash) {
             this.key = key;
             this.value = value;
             this.next = next;
+            this.hash = hash;
         }
 
         /**
@@ -469,15 +1115,729 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
         }
     }
 
+    /**
+     * A table entry of a slot that has been converted to a tree. Entries of
+     * such a slot still form a list through their <tt>next</tt> references,
+     * which is used for iteration and resizing, and are additionally linked
+     * backwards and into an AVL tree, which is used for lookups.
+     * <p>
+     * The tree is ordered by the hash of the key and, among equal hashes, by
+     * the natural ordering of keys if they are mutually comparable. Entries
+     * that can not be ordered by either are placed by an arbitrary, but
+     * consistent, tie-breaking order, and lookups search both subtrees of such
+     * entries.
+     *
+     * @author Mario Bobic
+     * @param <K> key argument
+     * @param <V> value argument
+     */
+    static final class TreeEntry<K, V> extends TableEntry<K, V> {
+
+        /** The previous element of the list. */
+        TreeEntry<K, V> prev;
+        /** Parent node of the tree, <tt>null</tt> for the root. */
+        TreeEntry<K, V> parent;
+        /** Left child node of the tree. */
+        TreeEntry<K, V> left;
+        /** Right child node of the tree. */
+        TreeEntry<K, V> right;
+        /** Height of the subtree rooted at this node, 1 for a leaf. */
+        int height = 1;
+
+        /**
+         * Constructs a new tree entry with given key, value, next table entry
+         * in the list and an already calculated hash of the key.
+         *
+         * @param key key of the entry
+         * @param value value of the entry
+         * @param next next table entry in the list
+         * @param hash spread hash code of the key
+         */
+        TreeEntry(K key, V value, TableEntry<K, V> next, int hash) {
+            super(key, value, next, hash);
+        }
+
+        /**
+         * Returns the root of the tree this entry belongs to.
+         *
+         * @return the root of the tree
+         */
+        TreeEntry<K, V> root() {
+            TreeEntry<K, V> root = this;
+            while (root.parent != null) {
+                root = root.parent;
+            }
+            return root;
+        }
+
+        /**
+         * Converts the list starting with the specified entry to a tree and
+         * returns the first entry of the list. Plain table entries are replaced
+         * by tree entries, while existing tree entries are reused. The order
+         * of the list is kept.
+         *
+         * @param <K> key argument
+         * @param <V> value argument
+         * @param first the first entry of a list
+         * @return the first entry of the converted list
+         */
+        static <K, V> TreeEntry<K, V> treeify(TableEntry<K, V> first) {
+            TreeEntry<K, V> head = null, tail = null;
+            for (TableEntry<K, V> e = first; e != null; e = e.next) {
+                TreeEntry<K, V> t;
+                if (e instanceof TreeEntry) {
+                    t = (TreeEntry<K, V>) e;
+                    t.parent = t.left = t.right = null;
+                    t.height = 1;
+                } else {
+                    t = new TreeEntry<>(e.key, e.value, null, e.hash);
+                }
+
+                t.prev = tail;
+                if (tail == null) {
+                    head = t;
+                } else {
+                    tail.next = t;
+                    insert(head.root(), t);
+                }
+                tail = t;
+            }
+            tail.next = null;
+            return head;
+        }
+
+        /**
+         * Converts the list starting with the specified entry back to a list
+         * of plain table entries and returns its first entry. The order of the
+         * list is kept.
+         *
+         * @param <K> key argument
+         * @param <V> value argument
+         * @param first the first entry of a list
+         * @return the first entry of the converted list
+         */
+        static <K, V> TableEntry<K, V> untreeify(TableEntry<K, V> first) {
+            TableEntry<K, V> head = null, tail = null;
+            for (TableEntry<K, V> e = first; e != null; e = e.next) {
+                TableEntry<K, V> t = e instanceof TreeEntry
+                        ? new TableEntry<>(e.key, e.value, null, e.hash) : e;
+                if (tail == null) head = t;
+                else tail.next = t;
+                tail = t;
+            }
+            if (tail != null) {
+                tail.next = null;
+            }
+            return head;
+        }
+
+        /**
+         * Returns true if the list starting with the specified entry has less
+         * than <tt>n</tt> entries. At most <tt>n</tt> entries are visited.
+         *
+         * @param first the first entry of a list
+         * @param n number of entries
+         * @return true if the list has less than <tt>n</tt> entries
+         */
+        static boolean isShorterThan(TableEntry<?, ?> first, int n) {
+            for (TableEntry<?, ?> e = first; e != null; e = e.next) {
+                if (--n == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the entry of the tree rooted at <tt>p</tt> to which the
+         * specified key belongs, or <tt>null</tt> if there is no such entry.
+         *
+         * @param <K> key argument
+         * @param <V> value argument
+         * @param p root of the tree
+         * @param key key of the entry
+         * @param hash spread hash code of the key
+         * @return existing entry if found, <tt>null</tt> otherwise
+         */
+        static <K, V> TreeEntry<K, V> find(TreeEntry<K, V> p, Object key, int hash) {
+            while (p != null) {
+                Object k;
+                if (hash < p.hash) {
+                    p = p.left;
+                } else if (hash > p.hash) {
+                    p = p.right;
+                } else if ((k = p.key) == key || k.equals(key)) {
+                    return p;
+                } else if (p.left == null) {
+                    p = p.right;
+                } else if (p.right == null) {
+                    p = p.left;
+                } else {
+                    int dir = compareComparables(key, k);
+                    if (dir != 0) {
+                        p = dir < 0 ? p.left : p.right;
+                    } else {
+                        // Can not be decided, search both subtrees
+                        TreeEntry<K, V> q = find(p.right, key, hash);
+                        if (q != null) {
+                            return q;
+                        }
+                        p = p.left;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Compares the two keys by their natural ordering if they are of the
+         * same class that implements {@linkplain Comparable}. Returns 0 if
+         * the keys can not be compared.
+         *
+         * @param k1 a key
+         * @param k2 a key
+         * @return the comparison result, or 0 if the keys can not be compared
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private static int compareComparables(Object k1, Object k2) {
+            if (k1 instanceof Comparable && k1.getClass() == k2.getClass()) {
+                return ((Comparable) k1).compareTo(k2);
+            }
+            return 0;
+        }
+
+        /**
+         * Compares the two entries for placement in the tree. Unlike the order
+         * used by lookups, this order never considers two distinct entries
+         * equal.
+         *
+         * @param a an entry
+         * @param b an entry
+         * @return a negative number if <tt>a</tt> is placed left of <tt>b</tt>,
+         *         a positive number otherwise
+         */
+        private static int comparePlacement(TableEntry<?, ?> a, TableEntry<?, ?> b) {
+            if (a.hash != b.hash) {
+                return a.hash < b.hash ? -1 : 1;
+            }
+            int dir = compareComparables(a.key, b.key);
+            if (dir != 0) {
+                return dir;
+            }
+            dir = a.key.getClass().getName().compareTo(b.key.getClass().getName());
+            if (dir != 0) {
+                return dir;
+            }
+            return System.identityHashCode(a.key) <= System.identityHashCode(b.key) ? -1 : 1;
+        }
+
+        /**
+         * Inserts the specified detached entry into the tree rooted at
+         * <tt>root</tt> and rebalances the tree.
+         *
+         * @param <K> key argument
+         * @param <V> value argument
+         * @param root root of the tree
+         * @param x entry to be inserted
+         */
+        static <K, V> void insert(TreeEntry<K, V> root, TreeEntry<K, V> x) {
+            TreeEntry<K, V> p = root;
+            while (true) {
+                boolean left = comparePlacement(x, p) < 0;
+                TreeEntry<K, V> child = left ? p.left : p.right;
+                if (child == null) {
+                    x.parent = p;
+                    if (left) p.left = x;
+                    else p.right = x;
+                    break;
+                }
+                p = child;
+            }
+            rebalance(p);
+        }
+
+        /**
+         * Removes the specified entry from its tree and rebalances the tree.
+         * The entry is not removed from its list.
+         *
+         * @param <K> key argument
+         * @param <V> value argument
+         * @param z entry to be removed
+         */
+        static <K, V> void delete(TreeEntry<K, V> z) {
+            TreeEntry<K, V> from;
+            if (z.left != null && z.right != null) {
+                // Replace z with its successor s, which has no left child
+                TreeEntry<K, V> s = z.right;
+                while (s.left != null) {
+                    s = s.left;
+                }
+                if (s.parent != z) {
+                    from = s.parent;
+                    from.left = s.right;
+                    if (s.right != null) s.right.parent = from;
+                    s.right = z.right;
+                    z.right.parent = s;
+                } else {
+                    from = s;
+                }
+                s.left = z.left;
+                z.left.parent = s;
+                s.height = z.height;
+                replaceChild(z, s);
+            } else {
+                TreeEntry<K, V> child = z.left != null ? z.left : z.right;
+                replaceChild(z, child);
+                from = z.parent;
+            }
+
+            z.parent = z.left = z.right = null;
+            z.height = 1;
+            rebalance(from);
+        }
+
+        /**
+         * Puts the <tt>replacement</tt> node in place of node <tt>x</tt> in
+         * the parent of <tt>x</tt>.
+         *
+         * @param <K> key argument
+         * @param <V> value argument
+         * @param x node to be replaced
+         * @param replacement replacement node, may be <tt>null</tt>
+         */
+        private static <K, V> void replaceChild(TreeEntry<K, V> x, TreeEntry<K, V> replacement) {
+            TreeEntry<K, V> parent = x.parent;
+            if (replacement != null) {
+                replacement.parent = parent;
+            }
+            if (parent != null) {
+                if (parent.left == x) parent.left = replacement;
+                else parent.right = replacement;
+            }
+        }
+
+        /**
+         * Updates heights and restores the balance of all nodes on the path
+         * from the specified node to the root of its tree.
+         *
+         * @param <K> key argument
+         * @param <V> value argument
+         * @param p the lowest node whose subtree has changed
+         */
+        private static <K, V> void rebalance(TreeEntry<K, V> p) {
+            while (p != null) {
+                int balance = height(p.left) - height(p.right);
+                if (balance > 1) {
+                    if (height(p.left.left) < height(p.left.right)) {
+                        rotateLeft(p.left);
+                    }
+                    p = rotateRight(p);
+                } else if (balance < -1) {
+                    if (height(p.right.right) < height(p.right.left)) {
+                        rotateRight(p.right);
+                    }
+                    p = rotateLeft(p);
+                } else {
+                    updateHeight(p);
+                }
+                p = p.parent;
+            }
+        }
+
+        /**
+         * Rotates the subtree rooted at <tt>x</tt> to the left and returns
+         * the new root of the subtree.
+         *
+         * @param <K> key argument
+         * @param <V> value argument
+         * @param x root of the subtree
+         * @return the new root of the subtree
+         */
+        private static <K, V> TreeEntry<K, V> rotateLeft(TreeEntry<K, V> x) {
+            TreeEntry<K, V> y = x.right;
+            x.right = y.left;
+            if (y.left != null) y.left.parent = x;
+            replaceChild(x, y);
+            y.left = x;
+            x.parent = y;
+            updateHeight(x);
+            updateHeight(y);
+            return y;
+        }
+
+        /**
+         * Rotates the subtree rooted at <tt>x</tt> to the right and returns
+         * the new root of the subtree.
+         *
+         * @param <K> key argument
+         * @param <V> value argument
+         * @param x root of the subtree
+         * @return the new root of the subtree
+         */
+        private static <K, V> TreeEntry<K, V> rotateRight(TreeEntry<K, V> x) {
+            TreeEntry<K, V> y = x.left;
+            x.left = y.right;
+            if (y.right != null) y.right.parent = x;
+            replaceChild(x, y);
+            y.right = x;
+            x.parent = y;
+            updateHeight(x);
+            updateHeight(y);
+            return y;
+        }
+
+        /**
+         * Returns the height of the specified subtree, 0 if it is empty.
+         *
+         * @param p root of the subtree
+         * @return the height of the subtree
+         */
+        private static int height(TreeEntry<?, ?> p) {
+            return p == null ? 0 : p.height;
+        }
+
+        /**
+         * Recalculates the height of the specified node from its children.
+         *
+         * @param p node whose height is to be updated
+         */
+        private static void updateHeight(TreeEntry<?, ?> p) {
+            p.height = Math.max(height(p.left), height(p.right)) + 1;
+        }
+    }
+
     @Override
     public Iterator<TableEntry<K, V>> iterator() {
         return new IteratorImpl();
     }
 
+    /**
+     * Performs the given action for each entry of this table. The slots are
+     * walked directly, without an iterator, and the table is checked for
+     * concurrent modification once, after all entries have been processed.
+     *
+     * @param action action to be performed for each entry
+     * @throws ConcurrentModificationException if the action structurally
+     *         modifies this table
+     */
+    @Override
+    public void forEach(Consumer<? super TableEntry<K, V>> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modificationCount;
+
+        forEachInTable(table, 0, action);
+        if (oldTable != null) {
+            forEachInTable(oldTable, migratedSlots, action);
+        }
+
+        if (modificationCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Performs the given action for each entry of the specified storage,
+     * starting from the specified slot.
+     *
+     * @param table storage whose entries are processed
+     * @param start the first slot to be processed
+     * @param action action to be performed for each entry
+     */
+    private static <K, V> void forEachInTable(TableEntry<K, V>[] table, int start,
+            Consumer<? super TableEntry<K, V>> action) {
+        for (int i = start; i < table.length; i++) {
+            for (TableEntry<K, V> entry = table[i]; entry != null; entry = entry.next) {
+                action.accept(entry);
+            }
+        }
+    }
+
+    /**
+     * Performs the given action for the key and the value of each entry of
+     * this table.
+     *
+     * @param action action to be performed for each key and value
+     * @throws ConcurrentModificationException if the action structurally
+     *         modifies this table
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        forEach(entry -> action.accept(entry.key, entry.value));
+    }
+
+    /**
+     * Performs the given action for the key of each entry of this table.
+     *
+     * @param action action to be performed for each key
+     * @throws ConcurrentModificationException if the action structurally
+     *         modifies this table
+     */
+    public void forEachKey(Consumer<? super K> action) {
+        Objects.requireNonNull(action);
+        forEach(entry -> action.accept(entry.key));
+    }
+
+    /**
+     * Performs the given action for the value of each entry of this table.
+     *
+     * @param action action to be performed for each value
+     * @throws ConcurrentModificationException if the action structurally
+     *         modifies this table
+     */
+    public void forEachValue(Consumer<? super V> action) {
+        Objects.requireNonNull(action);
+        forEach(entry -> action.accept(entry.value));
+    }
+
+    /**
+     * Returns a view of the keys of this table. The view is backed by the
+     * table, and removing through its iterator removes the entry from the
+     * table.
+     *
+     * @return a view of the keys of this table
+     */
+    public Iterable<K> keys() {
+        return new Iterable<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                IteratorImpl iterator = new IteratorImpl();
+                return new Iterator<K>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public K next() {
+                        return iterator.next().key;
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public void forEach(Consumer<? super K> action) {
+                forEachKey(action);
+            }
+        };
+    }
+
+    /**
+     * Returns a view of the values of this table. The view is backed by the
+     * table, and removing through its iterator removes the entry from the
+     * table.
+     *
+     * @return a view of the values of this table
+     */
+    public Iterable<V> values() {
+        return new Iterable<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                IteratorImpl iterator = new IteratorImpl();
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return iterator.next().value;
+                    }
+
+                    @Override
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+
+            @Override
+            public void forEach(Consumer<? super V> action) {
+                forEachValue(action);
+            }
+        };
+    }
+
+    /**
+     * Creates a {@linkplain Spliterator} over the entries of this table. The
+     * spliterator is <i>fail-fast</i>: it throws a
+     * {@linkplain ConcurrentModificationException} if the table is
+     * structurally modified while it is being traversed.
+     *
+     * @return a spliterator over the entries of this table
+     */
+    @Override
+    public Spliterator<TableEntry<K, V>> spliterator() {
+        int oldSlots = oldTable == null ? 0 : oldTable.length - migratedSlots;
+        return new SlotSpliterator(table, oldTable, migratedSlots,
+                0, table.length + oldSlots, size, modificationCount, true);
+    }
+
+    /**
+     * Returns a sequential {@linkplain Stream} of the entries of this table.
+     *
+     * @return a sequential stream of the entries of this table
+     */
+    public Stream<TableEntry<K, V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a possibly parallel {@linkplain Stream} of the entries of this
+     * table. The table must not be modified while the stream is being
+     * processed.
+     *
+     * @return a possibly parallel stream of the entries of this table
+     */
+    public Stream<TableEntry<K, V>> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * A spliterator over a range of slots of <tt>SimpleHashtable</tt>. While
+     * the table is being incrementally resized, slots of the old table that
+     * have not yet been migrated are numbered after the slots of the current
+     * table, so that both are covered by a single range. A spliterator splits
+     * by handing the lower half of its remaining range to a new spliterator.
+     *
+     * @author Mario Bobic
+     */
+    private class SlotSpliterator implements Spliterator<TableEntry<K, V>> {
+
+        /** The current storage of the table. */
+        private final TableEntry<K, V>[] table;
+        /** The old storage of the table, or <tt>null</tt>. */
+        private final TableEntry<K, V>[] oldTable;
+        /** The first slot of the old storage that has not been migrated. */
+        private final int oldStart;
+        /** The next slot of the range to be traversed. */
+        private int index;
+        /** The slot after the last slot of the range. */
+        private final int fence;
+        /** The next entry of the current slot, or <tt>null</tt>. */
+        private TableEntry<K, V> current;
+        /** Estimated number of remaining entries. */
+        private int estimate;
+        /** The expected number of modifications. */
+        private final int expectedModCount;
+        /** True if the spliterator covers the whole table. */
+        private boolean exact;
+
+        /**
+         * Constructs a new spliterator over the specified range of slots.
+         *
+         * @param table the current storage of the table
+         * @param oldTable the old storage of the table, or <tt>null</tt>
+         * @param oldStart the first slot of the old storage to be covered
+         * @param index the first slot of the range
+         * @param fence the slot after the last slot of the range
+         * @param estimate estimated number of entries in the range
+         * @param expectedModCount the expected number of modifications
+         * @param exact true if the range covers the whole table
+         */
+        public SlotSpliterator(TableEntry<K, V>[] table, TableEntry<K, V>[] oldTable, int oldStart,
+                int index, int fence, int estimate, int expectedModCount, boolean exact) {
+            this.table = table;
+            this.oldTable = oldTable;
+            this.oldStart = oldStart;
+            this.index = index;
+            this.fence = fence;
+            this.estimate = estimate;
+            this.expectedModCount = expectedModCount;
+            this.exact = exact;
+        }
+
+        /**
+         * Returns the first entry of the specified slot of the range.
+         *
+         * @param i slot of the range
+         * @return the first entry of the slot
+         */
+        private TableEntry<K, V> firstInSlot(int i) {
+            return i < table.length ? table[i] : oldTable[oldStart + i - table.length];
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super TableEntry<K, V>> action) {
+            Objects.requireNonNull(action);
+            while (current != null || index < fence) {
+                if (current == null) {
+                    current = firstInSlot(index++);
+                    continue;
+                }
+
+                TableEntry<K, V> entry = current;
+                current = entry.next;
+                action.accept(entry);
+                checkForConcurrentModification();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super TableEntry<K, V>> action) {
+            Objects.requireNonNull(action);
+            for (TableEntry<K, V> entry = current; entry != null; entry = entry.next) {
+                action.accept(entry);
+            }
+            for (int i = index; i < fence; i++) {
+                for (TableEntry<K, V> entry = firstInSlot(i); entry != null; entry = entry.next) {
+                    action.accept(entry);
+                }
+            }
+            current = null;
+            index = fence;
+            checkForConcurrentModification();
+        }
+
+        @Override
+        public Spliterator<TableEntry<K, V>> trySplit() {
+            int low = index;
+            int middle = (low + fence) >>> 1;
+            if (low >= middle || current != null) {
+                return null;
+            }
+
+            index = middle;
+            estimate >>>= 1;
+            exact = false;
+            return new SlotSpliterator(table, oldTable, oldStart,
+                    low, middle, estimate, expectedModCount, false);
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return (exact ? Spliterator.SIZED : 0) | Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+
+        /**
+         * Check if the modification count is as expected. If not, a
+         * {@linkplain ConcurrentModificationException} is thrown.
+         */
+        private void checkForConcurrentModification() {
+            if (modificationCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
     /**
      * Iterates through all elements in <tt>SimpleHashtable</tt> by finding a
      * non-empty slot first, then iterating through elements of a singly linked
-     * list.
+     * list. If the table is being incrementally resized, the slots of the
+     * current table are iterated first, followed by the slots of the old table
+     * that have not yet been migrated.
      *
      * @author Mario Bobic
      */
@@ -487,6 +1847,8 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
         private TableEntry<K, V> lastReturned;
         /** The next element to be returned. */
         private TableEntry<K, V> next;
+        /** Storage whose slots are currently iterated. */
+        private TableEntry<K, V>[] currentTable;
         /** Current slot of the table. */
         private int currentSlot;
         /** Remaining elements in this iterator. */
@@ -501,6 +1863,7 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
          */
         public IteratorImpl() {
             lastReturned = null;
+            currentTable = table;
             currentSlot = 0;
             remainingElements = SimpleHashtable.this.size();
         }
@@ -514,7 +1877,7 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
         @Override
         public TableEntry<K, V> next() {
             checkForConcurrentModification();
-            if (!hasNext()) {
+            if (remainingElements <= 0) {
                 throw new NoSuchElementException("No more elements are available.");
             }
 
@@ -533,13 +1896,18 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
             if (next != null) {
                 next = next.next;
             } else {
-                next = table[currentSlot];
+                next = currentTable[currentSlot];
             }
 
             // Skip all empty slots
             while (next == null) {
                 currentSlot++;
-                next = table[currentSlot];
+                if (currentSlot == currentTable.length) {
+                    // Continue with the slots that are not yet migrated
+                    currentTable = oldTable;
+                    currentSlot = migratedSlots;
+                }
+                next = currentTable[currentSlot];
             }
         }
 
@@ -550,7 +1918,7 @@ public class SimpleHashtable<K, V> implements Iterable<SimpleHashtable.TableEntr
                 throw new IllegalStateException();
             }
 
-            SimpleHashtable.this.remove(lastReturned.key);
+            removeEntry(lastReturned.key, false);
             lastReturned = null;
             expectedModCount++;
         }
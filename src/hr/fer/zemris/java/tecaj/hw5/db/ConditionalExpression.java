@@ -62,4 +62,13 @@ public class ConditionalExpression {
         return comparisonOperator;
     }
 
+    /**
+     * Returns this expression as written in queries, for example
+     * <tt>lastName LIKE "B*"</tt>.
+     */
+    @Override
+    public String toString() {
+        return fieldGetter + " " + comparisonOperator + " \"" + stringLiteral + "\"";
+    }
+
 }
@@ -0,0 +1,171 @@
+package hr.fer.zemris.java.tecaj.hw5.db;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A plan of a query, chosen by the {@linkplain StudentDatabase} before the
+ * query is executed. The plan consists of an {@linkplain AccessPath access
+ * path}, which finds the rows that may satisfy the query, and of residual
+ * expressions, which are tested for each found row. Expressions that are
+ * answered exactly by the access path are not residual.
+ * <p>
+ * Plans are compared by their {@linkplain #getCost() cost}, which is based on
+ * the estimated number of rows that the access path finds.
+ *
+ * @author Mario Bobic
+ */
+public class QueryPlan {
+
+    /**
+     * Cost of a row found in an index, relative to a row of a full scan. Rows
+     * found in an index are visited out of order and are sorted first.
+     */
+    private static final int INDEX_ROW_COST = 2;
+
+    /**
+     * A way of finding the rows that may satisfy a query.
+     *
+     * @author Mario Bobic
+     */
+    public enum AccessPath {
+        /** Lookup of a single JMBAG in the index of JMBAGs. */
+        JMBAG_INDEX("JMBAG index lookup"),
+        /** Lookup of a value in a secondary hash index. */
+        HASH_INDEX("hash index lookup"),
+        /** Range of names in the sorted index of last names. */
+        NAME_RANGE("sorted index range"),
+        /** Prefix of names in the sorted index of last names. */
+        NAME_PREFIX("sorted index prefix"),
+        /** Test of all records. */
+        FULL_SCAN("full scan");
+
+        /** Description of the access path. */
+        private final String description;
+
+        /**
+         * Constructs a new access path with the specified description.
+         *
+         * @param description description of the access path
+         */
+        private AccessPath(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    /** Access path of this plan. */
+    private final AccessPath accessPath;
+    /** Condition answered by the access path, or <tt>null</tt> for a scan. */
+    private final String condition;
+    /** Estimated number of rows found by the access path. */
+    private final int estimatedRows;
+    /** Number of records in the database. */
+    private final int totalRows;
+    /** Expressions tested for each found row. */
+    private final List<ConditionalExpression> residualExpressions;
+    /** Finds the rows, or <tt>null</tt> for a scan. */
+    private final Supplier<int[]> rowFinder;
+
+    /**
+     * Constructs a new <tt>QueryPlan</tt>.
+     *
+     * @param accessPath access path of the plan
+     * @param condition condition answered by the access path, or
+     *        <tt>null</tt> for a scan
+     * @param estimatedRows estimated number of rows found by the access path
+     * @param totalRows number of records in the database
+     * @param residualExpressions expressions tested for each found row
+     * @param rowFinder finds the rows, or <tt>null</tt> for a scan
+     */
+    QueryPlan(AccessPath accessPath, String condition, int estimatedRows, int totalRows,
+            List<ConditionalExpression> residualExpressions, Supplier<int[]> rowFinder) {
+        this.accessPath = accessPath;
+        this.condition = condition;
+        this.estimatedRows = estimatedRows;
+        this.totalRows = totalRows;
+        this.residualExpressions = Collections.unmodifiableList(residualExpressions);
+        this.rowFinder = rowFinder;
+    }
+
+    /**
+     * Returns the access path of this plan.
+     *
+     * @return the access path of this plan
+     */
+    public AccessPath getAccessPath() {
+        return accessPath;
+    }
+
+    /**
+     * Returns the estimated number of rows found by the access path.
+     *
+     * @return the estimated number of found rows
+     */
+    public int getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    /**
+     * Returns an unmodifiable list of expressions that are tested for each row
+     * found by the access path.
+     *
+     * @return the residual expressions
+     */
+    public List<ConditionalExpression> getResidualExpressions() {
+        return residualExpressions;
+    }
+
+    /**
+     * Returns the cost of this plan. The cost of a full scan is the number of
+     * records, while each row found in an index costs
+     * {@value #INDEX_ROW_COST} times as much.
+     *
+     * @return the cost of this plan
+     */
+    public long getCost() {
+        return accessPath == AccessPath.FULL_SCAN ? estimatedRows : (long) estimatedRows * INDEX_ROW_COST;
+    }
+
+    /**
+     * Returns the rows found by the access path, in ascending order. Called
+     * with the read lock of the database held, by the query that made this
+     * plan.
+     *
+     * @return the found rows
+     */
+    int[] findRows() {
+        return rowFinder.get();
+    }
+
+    /**
+     * Returns a description of this plan on three lines: the access path,
+     * the estimated number of found rows and the residual expressions.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Access path: ").append(accessPath);
+        if (condition != null) {
+            sb.append(", ").append(condition);
+        }
+        sb.append("\nEstimated rows: ").append(estimatedRows).append(" of ").append(totalRows);
+        sb.append("\nResidual filter: ");
+        if (residualExpressions.isEmpty()) {
+            sb.append("none");
+        }
+        for (int i = 0, n = residualExpressions.size(); i < n; i++) {
+            if (i != 0) {
+                sb.append(" AND ");
+            }
+            sb.append(residualExpressions.get(i));
+        }
+        return sb.toString();
+    }
+
+}
@@ -3,12 +3,11 @@ package hr.fer.zemris.java.tecaj.hw5.db;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Paths;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import hr.fer.zemris.java.tecaj.hw5.collections.SimpleCache;
 import hr.fer.zemris.java.tecaj.hw5.collections.SimpleHashtable;
 import hr.fer.zemris.java.tecaj.hw5.db.commands.*;
 
@@ -24,6 +23,10 @@ public class StudentDB {
 
     /** Name of the file from which all lines are read. */
     private static final String FILENAME = "./database.txt";
+    /** Maximum number of cached command outputs. */
+    private static final int CACHE_CAPACITY = 256;
+    /** Delay between background compactions of the database, in minutes. */
+    private static final int COMPACTION_DELAY = 5;
 
     /** A map of commands. */
     private static SimpleHashtable<String, AbstractCommand> commands;
@@ -32,7 +35,8 @@ public class StudentDB {
         commands = new SimpleHashtable<>();
         AbstractCommand[] cmdArr = {
                 new QueryCommand(),
-                new IndexQueryCommand()
+                new IndexQueryCommand(),
+                new ExplainCommand()
         };
         for (AbstractCommand cmd : cmdArr) {
             commands.put(cmd.getCommandName(), cmd);
@@ -43,20 +47,23 @@ public class StudentDB {
     private static StudentDatabase database;
     /** Output generated from a command or an error message. */
     private static String output;
+    /** Outputs of cacheable commands, mapped by the command line. */
+    private static SimpleCache<String, String> outputCache;
+    /** Modification count of the database when the cached outputs were made. */
+    private static long cachedModificationCount;
 
     /**
      * Program entry point.
+     * <p>
+     * Each argument is the name of a field that is indexed by a secondary
+     * hash index, for example <tt>firstName</tt> or <tt>finalGrade</tt>.
      *
-     * @param args not used in this program
+     * @param args fields to be indexed, may be <tt>null</tt>
      * @throws IOException if an IO exception occurs while reading the input
      */
     public static void main(String[] args) throws IOException {
         try {
-            List<String> lines = Files.readAllLines(
-                Paths.get(FILENAME),
-                StandardCharsets.UTF_8
-            );
-            database = new StudentDatabase(lines);
+            database = StudentDatabase.open(Paths.get(FILENAME));
         } catch (NoSuchFileException exc) {
             System.err.println("File " + FILENAME + " not found");
             System.exit(1);
@@ -67,6 +74,19 @@ public class StudentDB {
             System.err.println("Error reading " + FILENAME + ": " + exc.getMessage());
             System.exit(3);
         }
+        if (args != null) {
+            for (String field : args) {
+                try {
+                    database.createIndex(field);
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    System.exit(4);
+                }
+            }
+        }
+        database.startCompaction(COMPACTION_DELAY, TimeUnit.MINUTES);
+        outputCache = new SimpleCache<>(CACHE_CAPACITY, true);
+        cachedModificationCount = database.getModificationCount();
 
         BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
 
@@ -94,15 +114,32 @@ public class StudentDB {
                 continue;
             }
 
-            try {
-                command.execute(arg);
-            } catch (Exception e) {
-                output = e.getMessage();
+            // Outputs made before the records changed are no longer valid
+            long modificationCount = database.getModificationCount();
+            if (modificationCount != cachedModificationCount) {
+                outputCache.clear();
+                cachedModificationCount = modificationCount;
+            }
+
+            String key = command.isCacheable() ? cmd + " " + arg : null;
+            String cached = key != null ? outputCache.get(key) : null;
+            if (cached != null) {
+                output = cached;
+            } else {
+                try {
+                    command.execute(arg);
+                    if (key != null) {
+                        outputCache.put(key, output);
+                    }
+                } catch (Exception e) {
+                    output = e.getMessage();
+                }
             }
 
             System.out.println(output);
         }
 
+        database.close();
         System.out.println("Goodbye!");
     }
 
@@ -115,6 +152,15 @@ public class StudentDB {
         return database;
     }
 
+    /**
+     * Returns the cache of outputs of cacheable commands.
+     *
+     * @return the cache of command outputs
+     */
+    public static SimpleCache<String, String> getOutputCache() {
+        return outputCache;
+    }
+
     /**
      * Returns the last output generated from a command or an error message.
      *
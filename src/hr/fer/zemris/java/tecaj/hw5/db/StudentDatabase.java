@@ -1,72 +1,255 @@
 package hr.fer.zemris.java.tecaj.hw5.db;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import hr.fer.zemris.java.tecaj.hw5.collections.OffHeapLongIntHashtable;
 import hr.fer.zemris.java.tecaj.hw5.collections.SimpleHashtable;
+import hr.fer.zemris.java.tecaj.hw5.db.QueryPlan.AccessPath;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.GetterFinalGrade;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.GetterFirstName;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.GetterJmbag;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.GetterLastName;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.IFieldValueGetter;
 import hr.fer.zemris.java.tecaj.hw5.db.filters.IFilter;
+import hr.fer.zemris.java.tecaj.hw5.db.filters.QueryFilter;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.IComparisonOperator;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorEqual;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorGreaterOrEqual;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorGreaterThan;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorLessOrEqual;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorLessThan;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorLike;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.HashIndex;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.ParallelStudentTableLoader;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.SnapshotFile;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.SortedNameIndex;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.StudentTable;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.StudentTableReader;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.StudentTableWriter;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.WriteAheadLog;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.WriteAheadLog.LogEntry;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.WriteAheadLog.Operation;
 
 /**
- * This class represents a table of student records stored in the database. It
- * acts as a list of all {@link StudentRecord StudentRecords} and is organized
- * to get student records in time complexity of O(1).
+ * This class represents a table of student records stored in the database.
+ * Records are stored by columns in a {@linkplain StudentTable} and are indexed
+ * by JMBAG to get student records in time complexity of O(1). A
+ * {@linkplain StudentRecord} is created only for a record that is returned.
+ * <p>
+ * Records may be inserted, updated and deleted while the database is in use.
+ * A database opened from a file records each change in a
+ * {@linkplain WriteAheadLog}, which is replayed on top of the file when the
+ * database is opened again. A change is visible to readers as soon as it is
+ * made, and is durable once the method that made it returns. Changes of a
+ * database constructed from a list of lines are kept only in memory.
+ * <p>
+ * So that the log does not grow without bound, the records are periodically
+ * merged into the database file by {@linkplain #compact()}, which may also be
+ * run in the background by {@linkplain #startCompaction(long, TimeUnit)}.
  *
  * @author Mario Bobic
  */
-public class StudentDatabase {
+public class StudentDatabase implements Closeable {
 
-    /** A splitter used for splitting student record attributes. */
-    private static final String SPLITTER = "\\t";
-
-    /** List of student records. */
-    private List<StudentRecord> recordsList;
-    /** Map of student records. */
-    private SimpleHashtable<String, StudentRecord> recordsMap;
+    /** Table of student records. */
+    private StudentTable table;
+    /** Map of row numbers by JMBAGs, or <tt>null</tt> if JMBAGs are numeric. */
+    private SimpleHashtable<String, Integer> rowsByJmbag;
+    /** Map of row numbers by numeric JMBAGs, or <tt>null</tt>. */
+    private OffHeapLongIntHashtable jmbagIndex;
+    /** Path of the database file, or <tt>null</tt>. */
+    private Path file;
+    /** Sorted index of last names. */
+    private SortedNameIndex lastNameIndex;
+    /** Secondary hash indexes of fields. */
+    private final List<HashIndex> hashIndexes = new ArrayList<>();
+    /** Log of changes, or <tt>null</tt> if changes are kept only in memory. */
+    private WriteAheadLog log;
+    /** Lock that allows only one compaction at a time. */
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    /** Modification count of the records merged by the last compaction. */
+    private long compactedModificationCount;
+    /** True if the database is closed, guarded by the compaction lock. */
+    private boolean closed;
+    /** Executor of background compactions, or <tt>null</tt>. */
+    private ScheduledExecutorService compactionExecutor;
+    /** Lock that separates readers of records from writers. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Number of changes made to the records of this database. */
+    private volatile long modificationCount;
 
     /**
      * Constructs an instance of StudentDatabase object, where the specified
      * list of lines is parsed as students, one student per line and saved.
+     * JMBAGs are indexed as longs if they are all numeric.
      *
      * @param lines list of lines that represent student data
      * @throws MalformedLineError if a malformed line is present
      */
     public StudentDatabase(List<String> lines) {
-        recordsList = getRecords(lines);
+        this(lines, true);
+    }
+
+    /**
+     * Constructs an instance of StudentDatabase object, where the specified
+     * list of lines is parsed as students, one student per line and saved.
+     * <p>
+     * If <tt>numericIndex</tt> is true and all JMBAGs consist of the same
+     * number of decimal digits, records are indexed by the numeric value of
+     * their JMBAG. Otherwise, records are indexed by the JMBAG string.
+     *
+     * @param lines list of lines that represent student data
+     * @param numericIndex true if JMBAGs should be indexed as longs when
+     *        possible
+     * @throws MalformedLineError if a malformed line is present
+     */
+    public StudentDatabase(List<String> lines, boolean numericIndex) {
+        table = getTable(lines);
+        buildIndex(numericIndex);
+        lastNameIndex = new SortedNameIndex(table, new GetterLastName());
+    }
+
+    /**
+     * Constructs an instance of StudentDatabase object with the specified
+     * table and an off-heap index of its numeric JMBAGs. If the index is
+     * <tt>null</tt>, records are indexed by the JMBAG string.
+     *
+     * @param table table of student records
+     * @param jmbagIndex map of row numbers by numeric JMBAGs, or <tt>null</tt>
+     */
+    private StudentDatabase(StudentTable table, OffHeapLongIntHashtable jmbagIndex) {
+        this.table = table;
+        this.jmbagIndex = jmbagIndex;
+        if (jmbagIndex == null) {
+            buildIndex(false);
+        }
+        lastNameIndex = new SortedNameIndex(table, new GetterLastName());
+    }
+
+    /**
+     * Opens the database stored in the specified file, one student per line.
+     * <p>
+     * If the {@linkplain SnapshotFile} of the database file was made of the
+     * current version of the file, the database is reopened from the snapshot
+     * and the file is not parsed. Otherwise, the file is memory-mapped and its
+     * chunks are parsed in parallel by the
+     * {@linkplain ParallelStudentTableLoader}, after which a new snapshot is
+     * written for the following starts. Failing to write the snapshot is not
+     * an error.
+     * <p>
+     * Changes recorded in the {@linkplain WriteAheadLog} of the database file
+     * are then applied to the records, and later changes are appended to the
+     * log. The database should be closed after use.
+     *
+     * @param file path of the database file
+     * @return the opened database
+     * @throws IOException if an I/O error occurs while reading the file
+     * @throws MalformedLineError if a malformed line is present
+     */
+    public static StudentDatabase open(Path file) throws IOException {
+        // Attributes are read first, so that a later change is never missed
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        SnapshotFile snapshotFile = new SnapshotFile(file);
+        SnapshotFile.Contents snapshot = snapshotFile.read(attributes);
+        StudentDatabase database;
+        if (snapshot != null) {
+            database = new StudentDatabase(snapshot.getTable(), snapshot.getJmbagIndex());
+        } else {
+            StudentTable table = ParallelStudentTableLoader.load(file);
+            OffHeapLongIntHashtable jmbagIndex = null;
+            if (table.size() != 0 && table.hasNumericJmbags()) {
+                jmbagIndex = buildNumericIndex(table);
+            }
+            try {
+                snapshotFile.write(table, jmbagIndex, attributes);
+            } catch (IOException e) {
+                // The snapshot is written again on the next start
+            }
+            database = new StudentDatabase(table, jmbagIndex);
+        }
+
+        WriteAheadLog log = new WriteAheadLog(file);
+        log.replay(database::apply);
+        database.file = file;
+        database.log = log;
+        return database;
+    }
+
+    /**
+     * Builds the JMBAG index of the records of this database.
+     *
+     * @param numericIndex true if JMBAGs should be indexed as longs when
+     *        possible
+     */
+    private void buildIndex(boolean numericIndex) {
+        int n = table.size();
+        if (numericIndex && n != 0 && table.hasNumericJmbags()) {
+            jmbagIndex = buildNumericIndex(table);
+        } else {
+            String[] jmbags = new String[n];
+            Integer[] rows = new Integer[n];
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (!table.isDeleted(i)) {
+                    jmbags[count] = table.getJmbag(i);
+                    rows[count++] = i;
+                }
+            }
+            if (count < n) {
+                jmbags = Arrays.copyOf(jmbags, count);
+                rows = Arrays.copyOf(rows, count);
+            }
+            // JMBAGs are not known to be distinct, a later record replaces an earlier one
+            rowsByJmbag = new SimpleHashtable<>(jmbags, rows, false);
+        }
+    }
 
-        recordsMap = new SimpleHashtable<>(recordsList.size());
-        for (StudentRecord record : recordsList) {
-            recordsMap.put(record.getJmbag(), record);
+    /**
+     * Builds a map of row numbers by numeric JMBAGs of the specified table.
+     *
+     * @param table table with numeric JMBAGs
+     * @return a map of row numbers by numeric JMBAGs
+     */
+    private static OffHeapLongIntHashtable buildNumericIndex(StudentTable table) {
+        OffHeapLongIntHashtable index = new OffHeapLongIntHashtable(table.size());
+        for (int i = 0, n = table.size(); i < n; i++) {
+            if (!table.isDeleted(i)) {
+                index.put(table.getNumericJmbag(i), i);
+            }
         }
+        return index;
     }
 
     /**
      * Parses the lines from the list as student data and returns a
-     * {@linkplain List} object filled with student data.
+     * {@linkplain StudentTable} filled with student data.
      *
      * @param lines list of lines that represent student data
-     * @return a List filled with student data
+     * @return a table filled with student data
      * @throws MalformedLineError if a malformed line is present
      */
-    private static List<StudentRecord> getRecords(List<String> lines) {
-        List<StudentRecord> records = new ArrayList<>();
+    private static StudentTable getTable(List<String> lines) {
+        StudentTable table = new StudentTable(lines.size());
 
         int lineCount = 1;
         for (String line : lines) {
-            try {
-                String[] attrs = line.split(SPLITTER);
-                String jmbag = attrs[0];
-                String lastName = attrs[1];
-                String firstName = attrs[2];
-                Integer finalGrade = Integer.parseInt(attrs[3]);
-                records.add(new StudentRecord(jmbag, lastName, firstName, finalGrade));
-            } catch (Exception e) {
-                throw new MalformedLineError(
-                        "Malformed line " + lineCount + ": " + line);
-            }
-            lineCount++;
+            StudentTableReader.addLine(table, line, lineCount++);
         }
 
-        return records;
+        table.trimToSize();
+        return table;
     }
 
     /**
@@ -79,14 +262,37 @@ public class StudentDatabase {
      *         <tt>null</tt> if this JMBAG is not contained in the database
      */
     public StudentRecord forJMBAG(String jmbag) {
-        return recordsMap.get(jmbag);
+        lock.readLock().lock();
+        try {
+            int row = rowOf(jmbag);
+            return row == -1 ? null : table.getRecord(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the row of the record with the specified JMBAG, or <tt>-1</tt>
+     * if this database contains no such record.
+     *
+     * @param jmbag student's JMBAG
+     * @return the row of the record, or <tt>-1</tt>
+     */
+    private int rowOf(String jmbag) {
+        if (rowsByJmbag != null) {
+            Integer row = rowsByJmbag.get(jmbag);
+            return row == null ? -1 : row;
+        }
+
+        long key = jmbag == null ? -1 : StudentTable.parseJmbag(jmbag, table.getJmbagLength());
+        return key == -1 ? -1 : jmbagIndex.get(key);
     }
 
     /**
      * Loops through all student records in this database and calls the
-     * {@link IFilter#accepts accepts} method on given filter for all records.
-     * Each record for which the called method returns true is added to filtered
-     * list and this list is then returned.
+     * {@link IFilter#accepts(StudentTable, int) accepts} method on given
+     * filter for all records. Each record for which the called method returns
+     * true is added to filtered list and this list is then returned.
      *
      * @param filter filter that filters the records
      * @return a filtered list of records
@@ -94,13 +300,697 @@ public class StudentDatabase {
     public List<StudentRecord> filter(IFilter filter) {
         List<StudentRecord> filteredList = new ArrayList<>();
 
-        for (StudentRecord record : recordsList) {
-            if (filter.accepts(record)) {
-                filteredList.add(record);
+        lock.readLock().lock();
+        try {
+            for (int row = 0, n = table.size(); row < n; row++) {
+                if (!table.isDeleted(row) && filter.accepts(table, row)) {
+                    filteredList.add(table.getRecord(row));
+                }
             }
+        } finally {
+            lock.readLock().unlock();
         }
 
         return filteredList;
     }
 
+    /**
+     * Returns a list of records that satisfy all expressions of the specified
+     * query filter, in the order of the records.
+     * <p>
+     * The query is executed by the cheapest {@linkplain QueryPlan plan}, as
+     * chosen by {@linkplain #explain(QueryFilter)}. If the plan looks up rows
+     * in an index, only the found rows are tested by the residual expressions
+     * of the plan instead of all rows tested by the filter.
+     *
+     * @param filter query filter
+     * @return a filtered list of records
+     */
+    public List<StudentRecord> query(QueryFilter filter) {
+        lock.readLock().lock();
+        try {
+            QueryPlan plan = plan(filter.getExpressions());
+            if (plan.getAccessPath() == AccessPath.FULL_SCAN) {
+                return filter(filter);
+            }
+
+            List<ConditionalExpression> residualExpressions = plan.getResidualExpressions();
+            IFilter residual = residualExpressions.isEmpty() ? null : new QueryFilter(residualExpressions);
+            List<StudentRecord> filteredList = new ArrayList<>();
+            for (int row : plan.findRows()) {
+                if (residual == null || residual.accepts(table, row)) {
+                    filteredList.add(table.getRecord(row));
+                }
+            }
+            return filteredList;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the cheapest plan of the specified query, by which the query is
+     * executed by {@linkplain #query(QueryFilter)}. The number of rows that
+     * each applicable access path finds is estimated from the indexes, and the
+     * plan whose access path has the lowest {@linkplain QueryPlan#getCost()
+     * cost} is chosen:
+     * <ul>
+     * <li>a <tt>=</tt> comparison of the JMBAG is answered by the index of
+     * JMBAGs,
+     * <li>a <tt>=</tt> comparison of a field with a {@linkplain HashIndex}, as
+     * created by {@linkplain #createIndex(String)}, by the hash index,
+     * <li>comparisons of the last name by <tt>&lt;</tt>, <tt>&lt;=</tt>,
+     * <tt>&gt;</tt>, <tt>&gt;=</tt> and <tt>=</tt> are combined into a single
+     * range of names in the {@linkplain SortedNameIndex} of last names,
+     * <li>a <tt>LIKE</tt> pattern of the last name that does not start with an
+     * asterisk selects the names with its prefix in the same index,
+     * <li>otherwise all records are scanned.
+     * </ul>
+     * The sorted index of last names is built when the database is
+     * constructed, and all indexes are kept up to date as records change, so
+     * choosing a plan never builds an index.
+     *
+     * @param filter query filter
+     * @return the plan of the query
+     */
+    public QueryPlan explain(QueryFilter filter) {
+        lock.readLock().lock();
+        try {
+            return plan(filter.getExpressions());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the cheapest plan of a query with the specified expressions.
+     * Called with the read lock held.
+     *
+     * @param expressions expressions of a query
+     * @return the plan of the query
+     */
+    private QueryPlan plan(List<ConditionalExpression> expressions) {
+        int total = table.size() - table.getDeletedCount();
+        QueryPlan best = new QueryPlan(AccessPath.FULL_SCAN, null, total, total, expressions, null);
+
+        for (ConditionalExpression expression : expressions) {
+            if (!(expression.getComparisonOperator() instanceof OperatorEqual)) {
+                continue;
+            }
+            String literal = expression.getStringLiteral();
+            List<ConditionalExpression> residual = without(expressions, Arrays.asList(expression));
+
+            QueryPlan plan;
+            if (expression.getFieldGetter() instanceof GetterJmbag) {
+                int row = rowOf(literal);
+                int[] rows = row == -1 ? new int[0] : new int[] {row};
+                plan = new QueryPlan(AccessPath.JMBAG_INDEX, expression.toString(), rows.length, total,
+                        residual, () -> rows);
+            } else {
+                HashIndex index = hashIndexOf(expression.getFieldGetter());
+                if (index == null) {
+                    continue;
+                }
+                plan = new QueryPlan(AccessPath.HASH_INDEX, expression.toString(), index.count(literal), total,
+                        residual, () -> index.get(literal));
+            }
+            if (plan.getCost() < best.getCost()) {
+                best = plan;
+            }
+        }
+
+        QueryPlan plan = lastNamePlan(expressions, total);
+        if (plan != null && plan.getCost() < best.getCost()) {
+            best = plan;
+        }
+        return best;
+    }
+
+    /**
+     * Returns the cheapest plan of a query with the specified expressions
+     * that finds rows in the sorted index of last names, or <tt>null</tt> if
+     * no expression can be answered by the index.
+     *
+     * @param expressions expressions of a query
+     * @param total number of records
+     * @return a plan that uses the sorted index, or <tt>null</tt>
+     */
+    private QueryPlan lastNamePlan(List<ConditionalExpression> expressions, int total) {
+        String from = null;
+        String to = null;
+        boolean fromInclusive = true;
+        boolean toInclusive = true;
+        String prefix = null;
+        List<ConditionalExpression> rangeExpressions = new ArrayList<>();
+        List<ConditionalExpression> likeExpressions = new ArrayList<>();
+
+        for (ConditionalExpression expression : expressions) {
+            if (!(expression.getFieldGetter() instanceof GetterLastName)) {
+                continue;
+            }
+            IComparisonOperator op = expression.getComparisonOperator();
+            String literal = expression.getStringLiteral();
+
+            boolean lower = op instanceof OperatorGreaterThan || op instanceof OperatorGreaterOrEqual
+                    || op instanceof OperatorEqual;
+            boolean upper = op instanceof OperatorLessThan || op instanceof OperatorLessOrEqual
+                    || op instanceof OperatorEqual;
+            if (lower || upper) {
+                rangeExpressions.add(expression);
+            }
+            if (lower) {
+                boolean inclusive = !(op instanceof OperatorGreaterThan);
+                int cmp = from == null ? 1 : IComparisonOperator.HR_COLLATOR.compare(literal, from);
+                if (cmp > 0 || cmp == 0 && !inclusive) {
+                    from = literal;
+                    fromInclusive = inclusive;
+                }
+            }
+            if (upper) {
+                boolean inclusive = !(op instanceof OperatorLessThan);
+                int cmp = to == null ? -1 : IComparisonOperator.HR_COLLATOR.compare(literal, to);
+                if (cmp < 0 || cmp == 0 && !inclusive) {
+                    to = literal;
+                    toInclusive = inclusive;
+                }
+            }
+            if (op instanceof OperatorLike) {
+                // Patterns have at most one asterisk, as checked by the filter
+                int asterisk = literal.indexOf('*');
+                if (asterisk != 0) {
+                    likeExpressions.add(expression);
+                    String likePrefix = asterisk == -1 ? literal : literal.substring(0, asterisk);
+                    if (prefix == null || likePrefix.length() > prefix.length()) {
+                        prefix = likePrefix;
+                    }
+                }
+            }
+        }
+
+        if (rangeExpressions.isEmpty() && prefix == null) {
+            return null;
+        }
+        SortedNameIndex index = lastNameIndex;
+        QueryPlan best = null;
+
+        if (!rangeExpressions.isEmpty()) {
+            String rangeFrom = from;
+            String rangeTo = to;
+            boolean rangeFromInclusive = fromInclusive;
+            boolean rangeToInclusive = toInclusive;
+            best = new QueryPlan(AccessPath.NAME_RANGE, join(rangeExpressions),
+                    index.rangeCount(from, fromInclusive, to, toInclusive), total,
+                    without(expressions, rangeExpressions),
+                    () -> index.range(rangeFrom, rangeFromInclusive, rangeTo, rangeToInclusive));
+        }
+
+        if (prefix != null) {
+            // Patterns that are just a prefix of the found names are answered exactly
+            List<ConditionalExpression> prefixExpressions = new ArrayList<>();
+            for (ConditionalExpression expression : likeExpressions) {
+                String literal = expression.getStringLiteral();
+                if (literal.endsWith("*") && prefix.startsWith(literal.substring(0, literal.length()-1))) {
+                    prefixExpressions.add(expression);
+                }
+            }
+            String namePrefix = prefix;
+            QueryPlan plan = new QueryPlan(AccessPath.NAME_PREFIX, "lastName LIKE \"" + prefix + "*\"",
+                    index.prefixCount(prefix), total, without(expressions, prefixExpressions),
+                    () -> index.prefix(namePrefix));
+            if (best == null || plan.getCost() < best.getCost()) {
+                best = plan;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the expressions of the specified list that are not contained in
+     * the list of removed expressions, in the same order.
+     *
+     * @param expressions expressions of a query
+     * @param removed expressions to be left out
+     * @return the remaining expressions
+     */
+    private static List<ConditionalExpression> without(List<ConditionalExpression> expressions,
+            List<ConditionalExpression> removed) {
+        List<ConditionalExpression> remaining = new ArrayList<>();
+        for (ConditionalExpression expression : expressions) {
+            if (!removed.contains(expression)) {
+                remaining.add(expression);
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Returns the specified expressions as written in queries, composed by
+     * the logical AND operator.
+     *
+     * @param expressions expressions of a query
+     * @return the expressions as written in queries
+     */
+    private static String join(List<ConditionalExpression> expressions) {
+        StringBuilder sb = new StringBuilder();
+        for (ConditionalExpression expression : expressions) {
+            if (sb.length() != 0) {
+                sb.append(" AND ");
+            }
+            sb.append(expression);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the hash index of the field read by the specified getter, or
+     * <tt>null</tt> if the field is not indexed.
+     *
+     * @param getter getter of a field
+     * @return the hash index of the field, or <tt>null</tt>
+     */
+    private HashIndex hashIndexOf(IFieldValueGetter getter) {
+        for (HashIndex index : hashIndexes) {
+            if (index.getGetter().getClass() == getter.getClass()) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates a secondary hash index of the specified field, which is then
+     * used by {@linkplain #query(QueryFilter)} for <tt>=</tt> comparisons of
+     * the field and kept up to date as records change. The field is one of
+     * <tt>lastName</tt>, <tt>firstName</tt> and <tt>finalGrade</tt>. Nothing
+     * is done if the field is already indexed.
+     *
+     * @param field name of the field, as in queries
+     * @throws IllegalArgumentException if the field can not be indexed
+     */
+    public void createIndex(String field) {
+        IFieldValueGetter getter;
+        switch (field == null ? "" : field) {
+        case "lastName":   getter = new GetterLastName();   break;
+        case "firstName":  getter = new GetterFirstName();  break;
+        case "finalGrade": getter = new GetterFinalGrade(); break;
+        default:
+            throw new IllegalArgumentException("Field can not be indexed: " + field);
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (hashIndexOf(getter) == null) {
+                hashIndexes.add(new HashIndex(table, getter));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts the specified record into this database if there is no record
+     * with the same JMBAG.
+     *
+     * @param record record to be inserted
+     * @return true if the record was inserted
+     * @throws IllegalArgumentException if the record is <tt>null</tt> or its
+     *         final grade is out of range of a byte
+     * @throws IllegalStateException if the database is closed
+     * @throws IOException if the change could not be made durable
+     */
+    public boolean insert(StudentRecord record) throws IOException {
+        checkRecord(record);
+        long sequence;
+
+        lock.writeLock().lock();
+        try {
+            if (rowOf(record.getJmbag()) != -1) {
+                return false;
+            }
+            sequence = log(new LogEntry(Operation.INSERT, record));
+            addRow(record);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        sync(sequence);
+        return true;
+    }
+
+    /**
+     * Replaces the names and the final grade of the record with the same
+     * JMBAG as the specified record, if there is such a record.
+     *
+     * @param record record with new names and final grade
+     * @return true if the record was updated
+     * @throws IllegalArgumentException if the record is <tt>null</tt> or its
+     *         final grade is out of range of a byte
+     * @throws IllegalStateException if the database is closed
+     * @throws IOException if the change could not be made durable
+     */
+    public boolean update(StudentRecord record) throws IOException {
+        checkRecord(record);
+        long sequence;
+
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(record.getJmbag());
+            if (row == -1) {
+                return false;
+            }
+            sequence = log(new LogEntry(Operation.UPDATE, record));
+            updateRow(row, record);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        sync(sequence);
+        return true;
+    }
+
+    /**
+     * Deletes the record with the specified JMBAG, if there is such a record.
+     *
+     * @param jmbag student's JMBAG
+     * @return true if the record was deleted
+     * @throws IllegalArgumentException if the JMBAG is <tt>null</tt>
+     * @throws IllegalStateException if the database is closed
+     * @throws IOException if the change could not be made durable
+     */
+    public boolean delete(String jmbag) throws IOException {
+        if (jmbag == null) {
+            throw new IllegalArgumentException("JMBAG must not be null.");
+        }
+        long sequence;
+
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(jmbag);
+            if (row == -1) {
+                return false;
+            }
+            sequence = log(new LogEntry(jmbag));
+            deleteRow(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        sync(sequence);
+        return true;
+    }
+
+    /**
+     * Applies the change of the specified log entry to the records. An
+     * insertion of an existing record updates the record, while changes of
+     * missing records insert or ignore them, so that replaying a change more
+     * than once has the same effect as replaying it once.
+     *
+     * @param entry entry of the log
+     */
+    private void apply(LogEntry entry) {
+        int row = rowOf(entry.getJmbag());
+        if (entry.getOperation() == Operation.DELETE) {
+            if (row != -1) {
+                deleteRow(row);
+                modificationCount++;
+            }
+            return;
+        }
+
+        StudentRecord record = entry.getRecord();
+        if (row == -1) {
+            addRow(record);
+        } else {
+            updateRow(row, record);
+        }
+        modificationCount++;
+    }
+
+    /**
+     * Appends the specified record to the table and indexes it by its JMBAG.
+     * If the JMBAG turns the JMBAG column of the table into strings, the
+     * records are indexed by JMBAG strings from then on.
+     *
+     * @param record record to be appended
+     */
+    private void addRow(StudentRecord record) {
+        int row = table.size();
+        table.add(record.getJmbag(), record.getLastName(), record.getFirstName(), record.getFinalGrade());
+        lastNameIndex.add(row);
+        for (HashIndex index : hashIndexes) {
+            index.add(row);
+        }
+
+        if (rowsByJmbag != null) {
+            rowsByJmbag.put(record.getJmbag(), row);
+        } else if (table.hasNumericJmbags()) {
+            writableJmbagIndex().put(table.getNumericJmbag(row), row);
+        } else {
+            jmbagIndex = null;
+            buildIndex(false);
+        }
+    }
+
+    /**
+     * Replaces the names and the final grade in the specified row by those of
+     * the specified record.
+     *
+     * @param row row of the record to be updated
+     * @param record record with new names and final grade
+     */
+    private void updateRow(int row, StudentRecord record) {
+        lastNameIndex.remove(row);
+        for (HashIndex index : hashIndexes) {
+            index.remove(row);
+        }
+        table.update(row, record.getLastName(), record.getFirstName(), record.getFinalGrade());
+        lastNameIndex.add(row);
+        for (HashIndex index : hashIndexes) {
+            index.add(row);
+        }
+    }
+
+    /**
+     * Marks the specified row as deleted and removes it from the JMBAG index.
+     *
+     * @param row row of the record to be deleted
+     */
+    private void deleteRow(int row) {
+        if (rowsByJmbag != null) {
+            rowsByJmbag.remove(table.getJmbag(row));
+        } else {
+            writableJmbagIndex().remove(table.getNumericJmbag(row));
+        }
+        lastNameIndex.remove(row);
+        for (HashIndex index : hashIndexes) {
+            index.remove(row);
+        }
+        table.delete(row);
+    }
+
+    /**
+     * Returns the off-heap JMBAG index, copying it first if it is mapped from
+     * a snapshot and can therefore not be modified.
+     *
+     * @return a modifiable JMBAG index
+     */
+    private OffHeapLongIntHashtable writableJmbagIndex() {
+        if (jmbagIndex.isReadOnly()) {
+            jmbagIndex = new OffHeapLongIntHashtable(jmbagIndex);
+        }
+        return jmbagIndex;
+    }
+
+    /**
+     * Throws an {@linkplain IllegalArgumentException} if the specified record
+     * is <tt>null</tt> or its final grade can not be stored.
+     *
+     * @param record record to be checked
+     */
+    private static void checkRecord(StudentRecord record) {
+        if (record == null) {
+            throw new IllegalArgumentException("Record must not be null.");
+        }
+        int finalGrade = record.getFinalGrade();
+        if (finalGrade < Byte.MIN_VALUE || finalGrade > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Final grade out of range: " + finalGrade);
+        }
+    }
+
+    /**
+     * Counts a change and appends it to the log, if there is one. The change
+     * is logged before it is made, so that a closed log prevents the change.
+     *
+     * @param entry entry that records the change
+     * @return the sequence number of the entry, or <tt>0</tt>
+     * @throws IllegalStateException if the log is closed
+     */
+    private long log(LogEntry entry) {
+        long sequence = log == null ? 0 : log.append(entry);
+        modificationCount++;
+        return sequence;
+    }
+
+    /**
+     * Waits until the change with the specified sequence number is durable.
+     *
+     * @param sequence sequence number of a log entry
+     * @throws IOException if the change could not be made durable
+     */
+    private void sync(long sequence) throws IOException {
+        if (log != null) {
+            log.sync(sequence);
+        }
+    }
+
+    /**
+     * Merges all changes into the database file and removes them from the
+     * log. Nothing is done if there were no changes since the last
+     * compaction.
+     * <p>
+     * Records that are not deleted are copied while changes are briefly
+     * blocked, after which changes and reads continue during the compaction.
+     * The copy is written to a temporary file, which then replaces the
+     * database file, and a new {@linkplain SnapshotFile} is written for it.
+     * Only then are the merged changes removed from the start of the log, so
+     * that a crash at any point loses no change: changes that are replayed on
+     * top of a database file that already contains them have no effect.
+     *
+     * @return true if changes were merged into the database file
+     * @throws IllegalStateException if the database was not opened from a
+     *         file or is closed
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean compact() throws IOException {
+        if (log == null) {
+            throw new IllegalStateException("Database is not opened from a file.");
+        }
+
+        compactionLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Database is closed.");
+            }
+            StudentTable copy;
+            long sequence;
+            long count;
+            lock.readLock().lock();
+            try {
+                count = modificationCount;
+                if (count == compactedModificationCount) {
+                    return false;
+                }
+                copy = new StudentTable(table);
+                sequence = log.getAppendedSequence();
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            StudentTableWriter.write(copy, file);
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            OffHeapLongIntHashtable index = null;
+            if (copy.size() != 0 && copy.hasNumericJmbags()) {
+                index = buildNumericIndex(copy);
+            }
+            try {
+                new SnapshotFile(file).write(copy, index, attributes);
+            } catch (IOException e) {
+                // The snapshot is written again on the next start
+            }
+
+            log.truncate(sequence);
+            compactedModificationCount = count;
+            return true;
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Starts compacting this database in a background thread, with the
+     * specified delay between the end of a compaction and the start of the
+     * next one. A failed compaction is tried again after the delay. Background
+     * compaction is stopped when the database is closed.
+     *
+     * @param delay delay between compactions
+     * @param unit unit of the delay
+     * @throws IllegalArgumentException if the delay is not positive
+     * @throws IllegalStateException if the database was not opened from a
+     *         file or compaction is already started
+     */
+    public synchronized void startCompaction(long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Delay must be positive. Was: " + delay);
+        }
+        if (log == null) {
+            throw new IllegalStateException("Database is not opened from a file.");
+        }
+        if (compactionExecutor != null) {
+            throw new IllegalStateException("Compaction is already started.");
+        }
+
+        compactionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "StudentDatabase compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactionExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                // Changes stay in the log until the next compaction
+            }
+        }, delay, delay, unit);
+    }
+
+    /**
+     * Returns the number of changes made to the records of this database
+     * since it was opened, including replayed changes. The number may be
+     * compared to an earlier one to find out whether records have changed.
+     *
+     * @return the number of changes made to the records
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Returns the number of records in this database.
+     *
+     * @return the number of records in this database
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return table.size() - table.getDeletedCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stops background compaction, makes all changes durable and closes the
+     * log of this database. Records can still be read, but no longer changed.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (compactionExecutor != null) {
+                compactionExecutor.shutdown();
+            }
+        }
+        if (log != null) {
+            // A running compaction is finished first
+            compactionLock.lock();
+            try {
+                closed = true;
+                log.close();
+            } finally {
+                compactionLock.unlock();
+            }
+        }
+    }
+
 }
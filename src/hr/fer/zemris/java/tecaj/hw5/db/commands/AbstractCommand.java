@@ -39,6 +39,18 @@ public abstract class AbstractCommand {
      */
     public abstract void execute(String s);
 
+    /**
+     * Returns true if the output of this command depends only on its arguments
+     * and the database, so that it may be cached and reused when the command
+     * is executed again with the same arguments. Commands are not cacheable by
+     * default.
+     *
+     * @return true if the output of this command may be cached
+     */
+    public boolean isCacheable() {
+        return false;
+    }
+
     /**
      * Throws a {@linkplain SyntaxException} with the detail message that has
      * what the command expected as arguments.
@@ -0,0 +1,48 @@
+package hr.fer.zemris.java.tecaj.hw5.db.commands;
+
+import hr.fer.zemris.java.tecaj.hw5.db.QueryPlan;
+import hr.fer.zemris.java.tecaj.hw5.db.StudentDB;
+import hr.fer.zemris.java.tecaj.hw5.db.StudentDatabase;
+import hr.fer.zemris.java.tecaj.hw5.db.filters.QueryFilter;
+
+/**
+ * The <tt>explain</tt> command is specified with the same expressions as the
+ * {@linkplain QueryCommand query} command. Instead of filtering the records,
+ * this command prints the {@linkplain QueryPlan plan} by which the
+ * {@link StudentDatabase database} would execute the query: the access path
+ * that finds the rows, the estimated number of found rows and the residual
+ * expressions that are tested for each found row.
+ *
+ * @author Mario Bobic
+ */
+public class ExplainCommand extends AbstractCommand {
+
+    /** Defines the proper syntax for using this command */
+    private static final String SYNTAX = "explain expression1 AND expression2 AND...";
+
+    /**
+     * Constructs a new command object of type {@code ExplainCommand}.
+     */
+    public ExplainCommand() {
+        super("explain");
+    }
+
+    @Override
+    public void execute(String s) {
+        if (s == null) {
+            throwSyntaxException(SYNTAX);
+        }
+
+        QueryFilter filter = new QueryFilter(s);
+        StudentDatabase database = StudentDB.getDatabase();
+
+        QueryPlan plan = database.explain(filter);
+        StudentDB.setOutput(plan.toString());
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
+}
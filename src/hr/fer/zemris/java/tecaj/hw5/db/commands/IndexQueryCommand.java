@@ -68,4 +68,9 @@ public class IndexQueryCommand extends AbstractCommand {
         StudentDB.setOutput(output);
     }
 
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
 }
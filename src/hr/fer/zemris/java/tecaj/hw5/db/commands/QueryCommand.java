@@ -9,12 +9,16 @@ import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
 import hr.fer.zemris.java.tecaj.hw5.db.filters.QueryFilter;
 
 /**
- * The <tt>query</tt> command is the command used for sequential record
- * filtering using complex expressions. Filtering expressions are built using
- * <tt>jmbag</tt>, <tt>lastName</tt> and <tt>firstName</tt> attributes. No other
- * attributes are allowed in query. Filtering expression consists from multiple
- * comparison expressions. If more than one expression is specified, all of them
- * must be composed by logical AND operator.
+ * The <tt>query</tt> command is the command used for record filtering using
+ * complex expressions. Filtering expressions are built using <tt>jmbag</tt>,
+ * <tt>lastName</tt>, <tt>firstName</tt> and <tt>finalGrade</tt> attributes.
+ * No other attributes are allowed in query. Filtering expression consists from
+ * multiple comparison expressions. If more than one expression is specified,
+ * all of them must be composed by logical AND operator.
+ * <p>
+ * Records are not necessarily filtered sequentially, since the database plans
+ * the query to find the records in an index where one applies. The chosen
+ * plan is printed by the {@linkplain ExplainCommand explain} command.
  *
  * @author Mario Bobic
  */
@@ -39,10 +43,15 @@ public class QueryCommand extends AbstractCommand {
         QueryFilter filter = new QueryFilter(s);
         StudentDatabase database = StudentDB.getDatabase();
 
-        List<StudentRecord> filtered = database.filter(filter);
+        List<StudentRecord> filtered = database.query(filter);
         String output = StudentPrinter.print(filtered);
 
         StudentDB.setOutput(output);
     }
 
+    @Override
+    public boolean isCacheable() {
+        return true;
+    }
+
 }
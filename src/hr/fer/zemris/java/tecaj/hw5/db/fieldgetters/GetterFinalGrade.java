@@ -0,0 +1,40 @@
+package hr.fer.zemris.java.tecaj.hw5.db.fieldgetters;
+
+import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.StudentTable;
+
+/**
+ * This class is one of the {@linkplain IFieldValueGetter} implementations.
+ * Calling the method {@linkplain #get(StudentRecord)} returns the final grade
+ * of the student specified by his record, as a decimal string.
+ *
+ * @author Mario Bobic
+ */
+public class GetterFinalGrade implements IFieldValueGetter {
+
+    /**
+     * Returns the final grade of the student specified by the record.
+     */
+    @Override
+    public String get(StudentRecord record) {
+        return record.getFinalGrade().toString();
+    }
+
+    /**
+     * Returns the final grade of the student in the specified row of the
+     * table.
+     */
+    @Override
+    public String get(StudentTable table, int row) {
+        return Integer.toString(table.getFinalGrade(row));
+    }
+
+    /**
+     * Returns the name of the field, as written in queries.
+     */
+    @Override
+    public String toString() {
+        return "finalGrade";
+    }
+
+}
@@ -1,6 +1,7 @@
 package hr.fer.zemris.java.tecaj.hw5.db.fieldgetters;
 
 import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.StudentTable;
 
 /**
  * This class is one of the {@linkplain IFieldValueGetter} implementations.
@@ -19,4 +20,20 @@ public class GetterJmbag implements IFieldValueGetter {
         return record.getJmbag();
     }
 
+    /**
+     * Returns the JMBAG of the student in the specified row of the table.
+     */
+    @Override
+    public String get(StudentTable table, int row) {
+        return table.getJmbag(row);
+    }
+
+    /**
+     * Returns the name of the field, as written in queries.
+     */
+    @Override
+    public String toString() {
+        return "jmbag";
+    }
+
 }
@@ -1,6 +1,7 @@
 package hr.fer.zemris.java.tecaj.hw5.db.fieldgetters;
 
 import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.StudentTable;
 
 /**
  * This class is one of the {@linkplain IFieldValueGetter} implementations.
@@ -19,4 +20,29 @@ public class GetterLastName implements IFieldValueGetter {
         return record.getLastName();
     }
 
+    /**
+     * Returns the last name of the student in the specified row of the table.
+     */
+    @Override
+    public String get(StudentTable table, int row) {
+        return table.getLastName(row);
+    }
+
+    /**
+     * Returns the code of the last name of the student in the specified row of
+     * the table.
+     */
+    @Override
+    public int getCode(StudentTable table, int row) {
+        return table.getLastNameCode(row);
+    }
+
+    /**
+     * Returns the name of the field, as written in queries.
+     */
+    @Override
+    public String toString() {
+        return "lastName";
+    }
+
 }
@@ -1,6 +1,7 @@
 package hr.fer.zemris.java.tecaj.hw5.db.fieldgetters;
 
 import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.StudentTable;
 
 /**
  * An interface representing a getter of a field value from the
@@ -23,4 +24,29 @@ public interface IFieldValueGetter {
      */
     public String get(StudentRecord record);
 
+    /**
+     * Returns a specific field value of the student in the specified row of
+     * the table, without creating a record of the row.
+     *
+     * @param table a table of student records
+     * @param row ordinal number of the row
+     * @return a specific field value
+     */
+    public String get(StudentTable table, int row);
+
+    /**
+     * Returns the {@linkplain hr.fer.zemris.java.tecaj.hw5.db.storage.NameDictionary
+     * NameDictionary} code of the field value of the student in the specified
+     * row of the table, or <tt>-1</tt> if the field is not stored as a code.
+     * <p>
+     * The default implementation returns <tt>-1</tt>.
+     *
+     * @param table a table of student records
+     * @param row ordinal number of the row
+     * @return the code of the field value, or <tt>-1</tt>
+     */
+    public default int getCode(StudentTable table, int row) {
+        return -1;
+    }
+
 }
@@ -0,0 +1,401 @@
+package hr.fer.zemris.java.tecaj.hw5.db.filters;
+
+import java.text.Collator;
+import java.util.Arrays;
+
+import hr.fer.zemris.java.tecaj.hw5.db.ConditionalExpression;
+import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.GetterFinalGrade;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.GetterFirstName;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.GetterJmbag;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.GetterLastName;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.IFieldValueGetter;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.IComparisonOperator;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorEqual;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorGreaterOrEqual;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorGreaterThan;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorLessOrEqual;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorLessThan;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorLike;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorNotEqual;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.NameDictionary;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.StudentTable;
+
+/**
+ * Compiles a {@linkplain ConditionalExpression} into a filter that is
+ * specialized for the field and the operator of the expression, so that the
+ * field getter, the operator and the literal do not have to be fetched from
+ * the expression and dispatched for each tested record:
+ * <ul>
+ * <li>a name is read as its {@linkplain NameDictionary} code, and the
+ * expression is evaluated only once for each distinct name,
+ * <li>a final grade is read as an <tt>int</tt>, and the expression is
+ * evaluated only once for each distinct grade,
+ * <li>a JMBAG stored as a long is compared to the literal as a long if the
+ * literal is a JMBAG of the same number of digits, which compares the same
+ * way as the strings do.
+ * </ul>
+ * The operator is bound as a {@linkplain Comparison} of the result of a
+ * comparison or as a split <tt>LIKE</tt> pattern, with its own copy of the
+ * {@linkplain IComparisonOperator#HR_COLLATOR Croatian collator}, so that
+ * concurrent queries do not contend for the shared collator. A <tt>LIKE</tt>
+ * pattern with more than one asterisk is rejected when it is compiled, so that
+ * the error does not depend on which records are tested. Expressions with an
+ * unknown field or operator are evaluated by the expression itself.
+ *
+ * @author Mario Bobic
+ */
+final class ExpressionCompiler {
+
+    /** Result of a test that has not been done for a value. */
+    private static final byte UNKNOWN = 0;
+    /** Result of a test that is satisfied for a value. */
+    private static final byte SATISFIED = 1;
+    /** Result of a test that is not satisfied for a value. */
+    private static final byte NOT_SATISFIED = 2;
+
+    /**
+     * Disable instantiation.
+     */
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * Compiles the specified expression into a filter that accepts the
+     * records which satisfy the expression.
+     *
+     * @param expression expression to be compiled
+     * @return a filter specialized for the expression
+     * @throws IllegalArgumentException if a <tt>LIKE</tt> pattern has more
+     *         than one asterisk
+     */
+    static IFilter compile(ConditionalExpression expression) {
+        ValueTest test = ValueTest.of(expression.getComparisonOperator(), expression.getStringLiteral());
+        if (test == null) {
+            return new InterpretedFilter(expression);
+        }
+
+        IFieldValueGetter getter = expression.getFieldGetter();
+        if (getter instanceof GetterLastName) {
+            return new NameFilter(true, test);
+        }
+        if (getter instanceof GetterFirstName) {
+            return new NameFilter(false, test);
+        }
+        if (getter instanceof GetterFinalGrade) {
+            return new GradeFilter(test);
+        }
+        if (getter instanceof GetterJmbag) {
+            return new JmbagFilter(test);
+        }
+        return new InterpretedFilter(expression);
+    }
+
+    /**
+     * Result of a comparison that satisfies one of the comparison operators.
+     *
+     * @author Mario Bobic
+     */
+    private enum Comparison {
+        /** The <tt>&lt;</tt> operator. */
+        LESS,
+        /** The <tt>&lt;=</tt> operator. */
+        LESS_OR_EQUAL,
+        /** The <tt>=</tt> operator. */
+        EQUAL,
+        /** The <tt>!=</tt> operator. */
+        NOT_EQUAL,
+        /** The <tt>&gt;=</tt> operator. */
+        GREATER_OR_EQUAL,
+        /** The <tt>&gt;</tt> operator. */
+        GREATER;
+
+        /**
+         * Returns true if the specified result of a comparison satisfies the
+         * operator.
+         *
+         * @param cmp result of a comparison
+         * @return true if the result satisfies the operator
+         */
+        boolean test(int cmp) {
+            switch (this) {
+            case LESS:             return cmp < 0;
+            case LESS_OR_EQUAL:    return cmp <= 0;
+            case EQUAL:            return cmp == 0;
+            case NOT_EQUAL:        return cmp != 0;
+            case GREATER_OR_EQUAL: return cmp >= 0;
+            default:               return cmp > 0;
+            }
+        }
+
+        /**
+         * Returns the comparison of the specified operator, or <tt>null</tt>
+         * if it is not a comparison operator.
+         *
+         * @param op a comparison operator
+         * @return the comparison of the operator, or <tt>null</tt>
+         */
+        static Comparison of(IComparisonOperator op) {
+            if (op instanceof OperatorLessThan)       return LESS;
+            if (op instanceof OperatorLessOrEqual)    return LESS_OR_EQUAL;
+            if (op instanceof OperatorEqual)          return EQUAL;
+            if (op instanceof OperatorNotEqual)       return NOT_EQUAL;
+            if (op instanceof OperatorGreaterOrEqual) return GREATER_OR_EQUAL;
+            if (op instanceof OperatorGreaterThan)    return GREATER;
+            return null;
+        }
+    }
+
+    /**
+     * A test of a field value against the literal of an expression, with the
+     * operator and the literal bound at compile time.
+     *
+     * @author Mario Bobic
+     */
+    private static final class ValueTest {
+
+        /** Comparison of the operator, or <tt>null</tt> for <tt>LIKE</tt>. */
+        final Comparison comparison;
+        /** The literal. */
+        final String literal;
+        /** Collator of the comparison, or <tt>null</tt> for <tt>LIKE</tt>. */
+        private final Collator collator;
+        /** Part of a <tt>LIKE</tt> pattern before the asterisk. */
+        private final String start;
+        /** Part of a <tt>LIKE</tt> pattern after the asterisk. */
+        private final String end;
+        /** True if the <tt>LIKE</tt> pattern has an asterisk. */
+        private final boolean wildcard;
+
+        /**
+         * Constructs a new <tt>ValueTest</tt>.
+         *
+         * @param comparison comparison of the operator, or <tt>null</tt>
+         * @param literal the literal
+         */
+        private ValueTest(Comparison comparison, String literal) {
+            this.comparison = comparison;
+            this.literal = literal;
+            this.collator = comparison == null ? null : (Collator) IComparisonOperator.HR_COLLATOR.clone();
+
+            int asterisk = literal.indexOf('*');
+            this.wildcard = asterisk != -1;
+            this.start = wildcard ? literal.substring(0, asterisk) : literal;
+            this.end = wildcard ? literal.substring(asterisk+1) : "";
+        }
+
+        /**
+         * Returns a test of the specified operator and literal, or
+         * <tt>null</tt> if the operator is unknown.
+         *
+         * @param op a comparison operator
+         * @param literal the literal
+         * @return a test of the operator and literal, or <tt>null</tt>
+         * @throws IllegalArgumentException if a <tt>LIKE</tt> pattern has
+         *         more than one asterisk
+         */
+        static ValueTest of(IComparisonOperator op, String literal) {
+            if (literal == null) {
+                return null;
+            }
+            Comparison comparison = Comparison.of(op);
+            if (comparison != null) {
+                return new ValueTest(comparison, literal);
+            }
+            if (op instanceof OperatorLike) {
+                OperatorLike.checkPattern(literal);
+                return new ValueTest(null, literal);
+            }
+            return null;
+        }
+
+        /**
+         * Returns true if the specified value satisfies the operator with the
+         * literal.
+         *
+         * @param value a field value
+         * @return true if the value satisfies the operator
+         */
+        boolean test(String value) {
+            if (comparison != null) {
+                return comparison.test(collator.compare(value, literal));
+            }
+            if (wildcard) {
+                return value.startsWith(start) && value.endsWith(end);
+            }
+            return value.equals(literal);
+        }
+    }
+
+    /**
+     * A filter of a name field, which remembers the result of the test of
+     * each distinct name by its code.
+     *
+     * @author Mario Bobic
+     */
+    private static final class NameFilter implements IFilter {
+
+        /** True if the last name is tested, false for the first name. */
+        private final boolean lastName;
+        /** Test of the names. */
+        private final ValueTest test;
+        /** Table whose names the remembered results belong to. */
+        private StudentTable resultsTable;
+        /** Remembered results, by codes of names. */
+        private byte[] results = new byte[0];
+
+        /**
+         * Constructs a new <tt>NameFilter</tt>.
+         *
+         * @param lastName true if the last name is tested
+         * @param test test of the names
+         */
+        NameFilter(boolean lastName, ValueTest test) {
+            this.lastName = lastName;
+            this.test = test;
+        }
+
+        @Override
+        public boolean accepts(StudentRecord record) {
+            return test.test(lastName ? record.getLastName() : record.getFirstName());
+        }
+
+        @Override
+        public boolean accepts(StudentTable table, int row) {
+            int code = lastName ? table.getLastNameCode(row) : table.getFirstNameCode(row);
+            if (table != resultsTable || code >= results.length) {
+                NameDictionary names = table.getNames();
+                results = table != resultsTable ? new byte[names.size()] : Arrays.copyOf(results, names.size());
+                resultsTable = table;
+            }
+
+            byte result = results[code];
+            if (result == UNKNOWN) {
+                result = test.test(table.getNames().decode(code)) ? SATISFIED : NOT_SATISFIED;
+                results[code] = result;
+            }
+            return result == SATISFIED;
+        }
+    }
+
+    /**
+     * A filter of the final grade, which remembers the result of the test of
+     * each distinct grade.
+     *
+     * @author Mario Bobic
+     */
+    private static final class GradeFilter implements IFilter {
+
+        /** Test of the grades. */
+        private final ValueTest test;
+        /** Remembered results, by grades offset by the minimum of a byte. */
+        private final byte[] results = new byte[256];
+
+        /**
+         * Constructs a new <tt>GradeFilter</tt>.
+         *
+         * @param test test of the grades
+         */
+        GradeFilter(ValueTest test) {
+            this.test = test;
+        }
+
+        @Override
+        public boolean accepts(StudentRecord record) {
+            return test.test(record.getFinalGrade().toString());
+        }
+
+        @Override
+        public boolean accepts(StudentTable table, int row) {
+            int index = table.getFinalGrade(row) - Byte.MIN_VALUE;
+            byte result = results[index];
+            if (result == UNKNOWN) {
+                result = test.test(Integer.toString(index + Byte.MIN_VALUE)) ? SATISFIED : NOT_SATISFIED;
+                results[index] = result;
+            }
+            return result == SATISFIED;
+        }
+    }
+
+    /**
+     * A filter of the JMBAG, which compares JMBAGs that are stored as longs
+     * without converting them to strings, if the literal is a JMBAG of the
+     * same number of digits.
+     *
+     * @author Mario Bobic
+     */
+    private static final class JmbagFilter implements IFilter {
+
+        /** Test of the JMBAGs. */
+        private final ValueTest test;
+        /** Number of digits for which the literal was parsed. */
+        private int parsedLength;
+        /** Numeric value of the literal, or <tt>-1</tt> if it is not numeric. */
+        private long value = -1;
+
+        /**
+         * Constructs a new <tt>JmbagFilter</tt>.
+         *
+         * @param test test of the JMBAGs
+         */
+        JmbagFilter(ValueTest test) {
+            this.test = test;
+        }
+
+        @Override
+        public boolean accepts(StudentRecord record) {
+            return test.test(record.getJmbag());
+        }
+
+        @Override
+        public boolean accepts(StudentTable table, int row) {
+            if (test.comparison == null || !table.hasNumericJmbags()) {
+                return test.test(table.getJmbag(row));
+            }
+
+            int length = table.getJmbagLength();
+            if (length != parsedLength) {
+                parsedLength = length;
+                value = StudentTable.parseJmbag(test.literal, length);
+            }
+            if (value == -1) {
+                return test.test(table.getJmbag(row));
+            }
+            // Digits of equal length are collated in the order of their values
+            return test.comparison.test(Long.compare(table.getNumericJmbag(row), value));
+        }
+    }
+
+    /**
+     * A filter that evaluates an expression by its field getter and operator.
+     *
+     * @author Mario Bobic
+     */
+    private static final class InterpretedFilter implements IFilter {
+
+        /** The expression. */
+        private final ConditionalExpression expression;
+
+        /**
+         * Constructs a new <tt>InterpretedFilter</tt>.
+         *
+         * @param expression the expression
+         */
+        InterpretedFilter(ConditionalExpression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        public boolean accepts(StudentRecord record) {
+            return expression.getComparisonOperator().satisfied(
+                    expression.getFieldGetter().get(record), expression.getStringLiteral());
+        }
+
+        @Override
+        public boolean accepts(StudentTable table, int row) {
+            return expression.getComparisonOperator().satisfied(
+                    expression.getFieldGetter().get(table, row), expression.getStringLiteral());
+        }
+    }
+
+}
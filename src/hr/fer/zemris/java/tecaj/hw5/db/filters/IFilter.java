@@ -1,6 +1,7 @@
 package hr.fer.zemris.java.tecaj.hw5.db.filters;
 
 import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.StudentTable;
 
 /**
  * An interface whose implementing classes are used for filtering
@@ -19,4 +20,19 @@ public interface IFilter {
      */
     public boolean accepts(StudentRecord record);
 
+    /**
+     * Returns true if the filter accepts the record in the specified
+     * <tt>row</tt> of the <tt>table</tt>. False otherwise.
+     * <p>
+     * The default implementation creates a record of the row. Implementing
+     * classes should read the attributes directly from the table instead.
+     *
+     * @param table a table of student records
+     * @param row ordinal number of the row to be tested
+     * @return true if the filter accepts the record in the specified row
+     */
+    public default boolean accepts(StudentTable table, int row) {
+        return accepts(table.getRecord(row));
+    }
+
 }
@@ -1,31 +1,210 @@
 package hr.fer.zemris.java.tecaj.hw5.db.filters;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.IntToDoubleFunction;
 
 import hr.fer.zemris.java.tecaj.hw5.db.ConditionalExpression;
 import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
 import hr.fer.zemris.java.tecaj.hw5.db.operators.IComparisonOperator;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorEqual;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.OperatorLike;
 import hr.fer.zemris.java.tecaj.hw5.db.parser.QueryParser;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.NameDictionary;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.StudentTable;
 
 /**
  * This class is used for filtering out student records specified in a list of
  * query expressions.
+ * <p>
+ * Each expression is compiled by the {@linkplain ExpressionCompiler} into a
+ * filter that is specialized for its field and operator. When filtering rows
+ * of a {@linkplain StudentTable}, an expression over a field that is stored as
+ * a {@linkplain NameDictionary} code is evaluated only once for each distinct
+ * name. The result is remembered by the code of the name, so that the
+ * remaining rows with the same name are tested by a single array lookup
+ * instead of a locale-sensitive comparison.
+ * <p>
+ * Expressions are not evaluated in the order in which they were written, but
+ * in the order in which a record is rejected with the least work. Initially,
+ * expressions are ordered by the cost of their operators: equality comparisons
+ * first, then other comparisons and <tt>LIKE</tt> patterns last. While records
+ * are filtered, the rate at which each expression is satisfied is observed,
+ * and every {@value #REORDER_INTERVAL} records the expressions are reordered
+ * by their cost divided by the rate at which they reject records, so that a
+ * cheap expression that rejects most records is evaluated first.
  *
  * @author Mario Bobic
  */
 public class QueryFilter implements IFilter {
 
+    /** Number of filtered records after which expressions are reordered. */
+    private static final int REORDER_INTERVAL = 1024;
+
     /** List of query expressions. */
     private List<ConditionalExpression> expressionList;
+    /** Compiled filter of each expression. */
+    private IFilter[] filters;
+    /** Indexes of the expressions, in the order of evaluation. */
+    private int[] order;
+    /** Static cost of each expression, by the cost of its operator. */
+    private int[] costs;
+    /** Number of times each expression was evaluated. */
+    private long[] evaluations;
+    /** Number of times each expression was satisfied. */
+    private long[] passes;
+    /** Number of records filtered since the expressions were reordered. */
+    private int filteredSinceReorder;
 
     /**
      * Constructs an instance of QueryFilter object with the specified query to
      * be parsed into an expression list.
      *
      * @param queryString string to be parsed into a list of expressions
+     * @throws IllegalArgumentException if a <tt>LIKE</tt> pattern has more
+     *         than one asterisk
      */
     public QueryFilter(String queryString) {
         expressionList = new QueryParser(queryString).getExpressionList();
+        compile();
+    }
+
+    /**
+     * Constructs an instance of QueryFilter object that accepts records which
+     * satisfy all of the specified expressions.
+     *
+     * @param expressions list of query expressions
+     * @throws IllegalArgumentException if <tt>expressions</tt> is <tt>null</tt>
+     *         or a <tt>LIKE</tt> pattern has more than one asterisk
+     */
+    public QueryFilter(List<ConditionalExpression> expressions) {
+        if (expressions == null) {
+            throw new IllegalArgumentException("Expressions must not be null.");
+        }
+        expressionList = new ArrayList<>(expressions);
+        compile();
+    }
+
+    /**
+     * Compiles the expressions and orders them by the static cost of their
+     * operators, keeping the written order of expressions of the same cost.
+     */
+    private void compile() {
+        int n = expressionList.size();
+        filters = new IFilter[n];
+        order = new int[n];
+        costs = new int[n];
+        evaluations = new long[n];
+        passes = new long[n];
+        for (int i = 0; i < n; i++) {
+            filters[i] = ExpressionCompiler.compile(expressionList.get(i));
+            order[i] = i;
+            costs[i] = costOf(expressionList.get(i).getComparisonOperator());
+        }
+        sortOrder(i -> costs[i]);
+    }
+
+    /**
+     * Returns the static cost of evaluating the specified operator. Equality
+     * comparisons are the cheapest, <tt>LIKE</tt> patterns the most costly.
+     *
+     * @param op a comparison operator
+     * @return the cost of the operator
+     */
+    private static int costOf(IComparisonOperator op) {
+        if (op instanceof OperatorEqual) {
+            return 1;
+        }
+        if (op instanceof OperatorLike) {
+            return 3;
+        }
+        return 2;
+    }
+
+    /**
+     * Reorders the expressions by their expected cost of rejecting a record,
+     * which is their static cost divided by the observed rate at which they
+     * are not satisfied. The rate is estimated as if each expression had been
+     * satisfied once and not satisfied once more than observed, so that an
+     * expression that was never evaluated is not ranked first or last.
+     */
+    private void reorder() {
+        double[] ranks = new double[order.length];
+        for (int i = 0; i < ranks.length; i++) {
+            double passRate = (passes[i] + 1.0) / (evaluations[i] + 2.0);
+            ranks[i] = costs[i] / (1 - passRate);
+        }
+        sortOrder(i -> ranks[i]);
+    }
+
+    /**
+     * Sorts the evaluation order by ascending ranks of the expressions, by
+     * insertion sort, which is stable and fast for few expressions.
+     *
+     * @param rank rank of an expression by its index
+     */
+    private void sortOrder(IntToDoubleFunction rank) {
+        for (int i = 1; i < order.length; i++) {
+            int index = order[i];
+            double value = rank.applyAsDouble(index);
+            int j = i - 1;
+            while (j >= 0 && rank.applyAsDouble(order[j]) > value) {
+                order[j+1] = order[j];
+                j--;
+            }
+            order[j+1] = index;
+        }
+    }
+
+    /**
+     * Returns the expressions of this filter in the current order of
+     * evaluation.
+     *
+     * @return the expressions in the order of evaluation
+     */
+    List<ConditionalExpression> getEvaluationOrder() {
+        List<ConditionalExpression> list = new ArrayList<>(order.length);
+        for (int index : order) {
+            list.add(expressionList.get(index));
+        }
+        return list;
+    }
+
+    /**
+     * Records that the expression at the specified index was evaluated, and
+     * returns its result.
+     *
+     * @param index index of the expression
+     * @param satisfied true if the expression was satisfied
+     * @return <tt>satisfied</tt>
+     */
+    private boolean evaluated(int index, boolean satisfied) {
+        evaluations[index]++;
+        if (satisfied) {
+            passes[index]++;
+        }
+        return satisfied;
+    }
+
+    /**
+     * Records that a record was filtered, reordering the expressions every
+     * {@value #REORDER_INTERVAL} records.
+     */
+    private void filtered() {
+        if (++filteredSinceReorder == REORDER_INTERVAL) {
+            filteredSinceReorder = 0;
+            reorder();
+        }
+    }
+
+    /**
+     * Returns an unmodifiable list of the query expressions of this filter.
+     *
+     * @return the query expressions of this filter
+     */
+    public List<ConditionalExpression> getExpressions() {
+        return Collections.unmodifiableList(expressionList);
     }
 
     @Override
@@ -41,12 +220,21 @@ public class QueryFilter implements IFilter {
      * @return true if the specified record satisfies all query expressions
      */
     private boolean satisfiesAllExpressions(StudentRecord record) {
-        for (ConditionalExpression expression : expressionList) {
-            IComparisonOperator op = expression.getComparisonOperator();
-            String fieldValue = expression.getFieldGetter().get(record);
-            String stringLiteral = expression.getStringLiteral();
+        filtered();
+        for (int index : order) {
+            if (!evaluated(index, filters[index].accepts(record))) {
+                return false;
+            }
+        }
 
-            if (!op.satisfied(fieldValue, stringLiteral)) {
+        return true;
+    }
+
+    @Override
+    public boolean accepts(StudentTable table, int row) {
+        filtered();
+        for (int index : order) {
+            if (!evaluated(index, filters[index].accepts(table, row))) {
                 return false;
             }
         }
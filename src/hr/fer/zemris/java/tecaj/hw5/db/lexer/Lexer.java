@@ -279,8 +279,7 @@ public class Lexer {
      * @return true if the specified character is an operator or a part of it
      */
     private static boolean isOperator(char c) {
-        for (SimpleHashtable.TableEntry<String, Token> entry : operators) {
-            String operator = entry.getKey();
+        for (String operator : operators.keys()) {
             if (operator.contains(c+"")) {
                 return true;
             }
@@ -17,4 +17,12 @@ public class OperatorEqual implements IComparisonOperator {
         return HR_COLLATOR.compare(value1, value2) == 0;
     }
 
+    /**
+     * Returns the symbol of the operator, as written in queries.
+     */
+    @Override
+    public String toString() {
+        return "=";
+    }
+
 }
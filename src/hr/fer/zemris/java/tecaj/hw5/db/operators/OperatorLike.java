@@ -29,11 +29,7 @@ public class OperatorLike implements IComparisonOperator {
      * @return true if <tt>name</tt> matches the <tt>pattern</tt>. False otherwise
      */
     private static boolean matches(String name, String pattern) {
-        if (countOccurrencesOf(pattern, '*') > 1) {
-            throw new IllegalArgumentException(
-                "Pattern of LIKE operator may contain at most 1 asterisk symbol."
-                + " Your input: " + pattern);
-        }
+        checkPattern(pattern);
 
         if (pattern.contains("*")) {
             int r = pattern.indexOf("*");
@@ -48,6 +44,21 @@ public class OperatorLike implements IComparisonOperator {
         return false;
     }
 
+    /**
+     * Throws an {@linkplain IllegalArgumentException} if the specified
+     * <tt>pattern</tt> contains more than one asterisk character.
+     *
+     * @param pattern a pattern that may contain the asterisk character
+     * @throws IllegalArgumentException if the pattern has more asterisks
+     */
+    public static void checkPattern(String pattern) {
+        if (countOccurrencesOf(pattern, '*') > 1) {
+            throw new IllegalArgumentException(
+                "Pattern of LIKE operator may contain at most 1 asterisk symbol."
+                + " Your input: " + pattern);
+        }
+    }
+
     /**
      * Counts the number of occurrences of the specified char in a string.
      *
@@ -59,4 +70,12 @@ public class OperatorLike implements IComparisonOperator {
         return string.length() - string.replace(c + "", "").length();
     }
 
+    /**
+     * Returns the symbol of the operator, as written in queries.
+     */
+    @Override
+    public String toString() {
+        return "LIKE";
+    }
+
 }
@@ -192,11 +192,12 @@ public class QueryParser {
     /**
      * Returns an instance of a class implementing the
      * {@linkplain IFieldValueGetter} if the specified <tt>field</tt> can be
-     * parsed as one of the three fields:
+     * parsed as one of the four fields:
      * <ul>
      * <li>JMBAG,
-     * <li>last name or
-     * <li>first name.
+     * <li>last name,
+     * <li>first name or
+     * <li>final grade.
      * </ul>
      * If the specified field can not be parsed, a
      * {@linkplain QueryParserException} is thrown.
@@ -207,9 +208,10 @@ public class QueryParser {
      */
     private static IFieldValueGetter getFieldGetter(String field) {
         switch (field) {
-        case "jmbag":     return new GetterJmbag();
-        case "lastName":  return new GetterLastName();
-        case "firstName": return new GetterFirstName();
+        case "jmbag":      return new GetterJmbag();
+        case "lastName":   return new GetterLastName();
+        case "firstName":  return new GetterFirstName();
+        case "finalGrade": return new GetterFinalGrade();
         default:
             throw new QueryParserException("Invalid field on left-hand side: " + field);
         }
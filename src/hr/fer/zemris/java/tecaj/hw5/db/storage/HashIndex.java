@@ -0,0 +1,162 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+
+import hr.fer.zemris.java.tecaj.hw5.collections.SimpleHashtable;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.IFieldValueGetter;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.IComparisonOperator;
+
+/**
+ * A secondary hash index of a field of a {@linkplain StudentTable}, which maps
+ * each value of the field to the rows that have the value. Rows whose field
+ * equals a value are therefore found in time complexity of O(1) instead of by
+ * comparing the field of each row.
+ * <p>
+ * Values are mapped by their {@linkplain CollationKey collation keys} of the
+ * {@linkplain IComparisonOperator#HR_COLLATOR Croatian collator}, so that the
+ * rows found for a value are exactly the rows whose field satisfies the
+ * <tt>=</tt> operator with the value. The collation key of a name field is
+ * computed once for each distinct name.
+ * <p>
+ * The index is kept up to date as the table changes, by
+ * {@linkplain #add(int)} after a row is added or updated and
+ * {@linkplain #remove(int)} before a row is updated or deleted.
+ *
+ * @author Mario Bobic
+ */
+public class HashIndex {
+
+    /** Table whose field is indexed. */
+    private final StudentTable table;
+    /** Getter of the indexed field. */
+    private final IFieldValueGetter getter;
+    /** Collator used for computing collation keys. */
+    private final Collator collator;
+    /** Rows by collation keys of their values. */
+    private final SimpleHashtable<CollationKey, SortedRows> rowsByKey;
+    /** Collation keys by codes of names, or <tt>null</tt> where not known. */
+    private CollationKey[] keysByCode;
+
+    /**
+     * Constructs a new <tt>HashIndex</tt> of the field of the specified table
+     * that is read by the specified getter, indexing all rows that are not
+     * deleted.
+     *
+     * @param table table whose field is indexed
+     * @param getter getter of the indexed field
+     */
+    public HashIndex(StudentTable table, IFieldValueGetter getter) {
+        this.table = table;
+        this.getter = getter;
+        this.collator = (Collator) IComparisonOperator.HR_COLLATOR.clone();
+        this.rowsByKey = new SimpleHashtable<>();
+        this.keysByCode = new CollationKey[0];
+
+        for (int row = 0, n = table.size(); row < n; row++) {
+            if (!table.isDeleted(row)) {
+                add(row);
+            }
+        }
+        rowsByKey.forEachValue(SortedRows::trimToSize);
+    }
+
+    /**
+     * Returns the getter of the indexed field.
+     *
+     * @return the getter of the indexed field
+     */
+    public IFieldValueGetter getGetter() {
+        return getter;
+    }
+
+    /**
+     * Adds the specified row to the rows of its current value.
+     * <p>
+     * Time complexity: O(1) for a row added to the end of the table
+     *
+     * @param row ordinal number of the row
+     */
+    public void add(int row) {
+        CollationKey key = keyOf(row);
+        SortedRows rows = rowsByKey.get(key);
+        if (rows == null) {
+            rows = new SortedRows();
+            rowsByKey.put(key, rows);
+        }
+        rows.add(row);
+    }
+
+    /**
+     * Removes the specified row from the rows of its current value.
+     *
+     * @param row ordinal number of the row
+     */
+    public void remove(int row) {
+        CollationKey key = keyOf(row);
+        SortedRows rows = rowsByKey.get(key);
+        if (rows != null && rows.remove(row) && rows.size() == 0) {
+            rowsByKey.remove(key);
+        }
+    }
+
+    /**
+     * Returns the rows whose field equals the specified value, in ascending
+     * order.
+     * <p>
+     * Time complexity: O(1 + k), where <tt>k</tt> is the number of found rows
+     *
+     * @param value a value of the field
+     * @return the rows whose field equals the value
+     */
+    public int[] get(String value) {
+        SortedRows rows = rowsByKey.get(collator.getCollationKey(value));
+        return rows == null ? new int[0] : rows.toArray();
+    }
+
+    /**
+     * Returns the number of rows whose field equals the specified value,
+     * without finding the rows.
+     *
+     * @param value a value of the field
+     * @return the number of rows whose field equals the value
+     */
+    public int count(String value) {
+        SortedRows rows = rowsByKey.get(collator.getCollationKey(value));
+        return rows == null ? 0 : rows.size();
+    }
+
+    /**
+     * Returns the number of distinct values in this index.
+     *
+     * @return the number of distinct values
+     */
+    public int valueCount() {
+        return rowsByKey.size();
+    }
+
+    /**
+     * Returns the collation key of the value of the specified row.
+     *
+     * @param row ordinal number of the row
+     * @return the collation key of the value
+     */
+    private CollationKey keyOf(int row) {
+        int code = getter.getCode(table, row);
+        if (code == -1) {
+            return collator.getCollationKey(getter.get(table, row));
+        }
+
+        if (code >= keysByCode.length) {
+            keysByCode = Arrays.copyOf(keysByCode, table.getNames().size());
+        }
+        CollationKey key = keysByCode[code];
+        if (key == null) {
+            key = collator.getCollationKey(table.getNames().decode(code));
+            keysByCode[code] = key;
+        }
+        return key;
+    }
+
+}
@@ -0,0 +1,109 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import java.util.Arrays;
+
+import hr.fer.zemris.java.tecaj.hw5.collections.SimpleHashtable;
+
+/**
+ * A dictionary that encodes names as <tt>int</tt> codes. Each distinct name is
+ * stored only once and is assigned the next free code, starting from zero, so
+ * that a column of names may be stored as an array of codes.
+ *
+ * @author Mario Bobic
+ */
+public class NameDictionary {
+
+    /** Default number of names the dictionary can hold before growing. */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** Codes of the names. */
+    private final SimpleHashtable<String, Integer> codes;
+    /** Names, by their codes. */
+    private String[] names;
+    /** Number of names in the dictionary. */
+    private int size;
+
+    /**
+     * Constructs a new empty <tt>NameDictionary</tt>.
+     */
+    public NameDictionary() {
+        codes = new SimpleHashtable<>();
+        names = new String[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Returns the code of the specified name, adding the name to the
+     * dictionary if it is not already present.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param name name to be encoded
+     * @return the code of the name
+     * @throws IllegalArgumentException if the name is <tt>null</tt>
+     */
+    public int encode(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name must not be null.");
+        }
+
+        Integer code = codes.get(name);
+        if (code != null) {
+            return code;
+        }
+
+        if (size == names.length) {
+            names = Arrays.copyOf(names, Math.max(DEFAULT_CAPACITY, size + (size >> 1)));
+        }
+        names[size] = name;
+        codes.put(name, size);
+        return size++;
+    }
+
+    /**
+     * Returns the code of the specified name, or <tt>-1</tt> if the name is
+     * not in the dictionary.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param name a name
+     * @return the code of the name, or <tt>-1</tt>
+     */
+    public int codeOf(String name) {
+        Integer code = codes.get(name);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Returns the name with the specified code.
+     * <p>
+     * Time complexity: O(1)
+     *
+     * @param code code of a name
+     * @return the name with the specified code
+     * @throws IndexOutOfBoundsException if there is no name with the code
+     */
+    public String decode(int code) {
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("Invalid code: " + code);
+        }
+        return names[code];
+    }
+
+    /**
+     * Returns the number of names in this dictionary.
+     *
+     * @return the number of names in this dictionary
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Trims the capacity of this dictionary to its current number of names.
+     */
+    public void trimToSize() {
+        names = Arrays.copyOf(names, size);
+        codes.trimToSize();
+    }
+
+}
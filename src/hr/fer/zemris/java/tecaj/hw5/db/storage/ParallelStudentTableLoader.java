@@ -0,0 +1,215 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import hr.fer.zemris.java.tecaj.hw5.db.MalformedLineError;
+
+/**
+ * Loads a UTF-8 encoded file of student data into a {@linkplain StudentTable}
+ * using all available processors. The file is memory-mapped and divided into
+ * chunks that end with a line feed, so that no line spans two chunks.
+ * <p>
+ * Loading is done in two parallel passes over the chunks. The first pass
+ * counts the lines of each chunk, which gives the number of the first line of
+ * each chunk within the file. The second pass decodes and parses each chunk
+ * by a {@linkplain StudentTableReader} into a table of its own. The tables of
+ * the chunks are then appended in the order of the file. A
+ * {@linkplain MalformedLineError} therefore reports the number of the line
+ * within the whole file, and the first malformed line of the file is reported
+ * if there are more of them.
+ *
+ * @author Mario Bobic
+ */
+public class ParallelStudentTableLoader {
+
+    /** Minimum desired size of a chunk, in bytes. */
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    /** Maximum desired size of a chunk, in bytes. */
+    private static final int MAX_CHUNK_SIZE = 1 << 28;
+    /** Number of chunks per available processor, for balancing the load. */
+    private static final int CHUNKS_PER_PROCESSOR = 4;
+    /** Size of the buffer used for finding the end of a chunk, in bytes. */
+    private static final int BOUNDARY_BUFFER_SIZE = 4096;
+
+    /**
+     * Disable instantiation.
+     */
+    private ParallelStudentTableLoader() {
+    }
+
+    /**
+     * Loads the students of the specified file, one student per line.
+     *
+     * @param file path of the file
+     * @return a table filled with student data
+     * @throws IOException if an I/O error occurs or the file is not valid
+     *         UTF-8
+     * @throws MalformedLineError if a malformed line is present
+     */
+    public static StudentTable load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int processors = Runtime.getRuntime().availableProcessors();
+            long chunkSize = size / ((long) processors * CHUNKS_PER_PROCESSOR);
+            return load(channel, (int) Math.max(MIN_CHUNK_SIZE, Math.min(chunkSize, MAX_CHUNK_SIZE)));
+        }
+    }
+
+    /**
+     * Loads the students of the file of the specified channel, one student per
+     * line, by chunks of about the specified size.
+     *
+     * @param channel channel of the file
+     * @param chunkSize desired size of a chunk, in bytes
+     * @return a table filled with student data
+     * @throws IOException if an I/O error occurs or the file is not valid
+     *         UTF-8
+     * @throws MalformedLineError if a malformed line is present
+     */
+    static StudentTable load(FileChannel channel, int chunkSize) throws IOException {
+        List<MappedByteBuffer> chunks = map(channel, chunkSize);
+        int n = chunks.size();
+
+        int[] firstLineNumbers = new int[n+1];
+        int[] lineCounts = IntStream.range(0, n).parallel()
+                .map(i -> countLines(chunks.get(i)))
+                .toArray();
+        firstLineNumbers[0] = 1;
+        for (int i = 0; i < n; i++) {
+            firstLineNumbers[i+1] = firstLineNumbers[i] + lineCounts[i];
+        }
+
+        // Failures are returned instead of thrown, so that they reach this thread unchanged
+        Object[] results = IntStream.range(0, n).parallel()
+                .mapToObj(i -> parse(chunks.get(i), firstLineNumbers[i]))
+                .toArray();
+
+        StudentTable table = new StudentTable(0);
+        for (Object result : results) {
+            if (result instanceof MalformedLineError) {
+                throw (MalformedLineError) result;
+            }
+            if (result instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) result).getCause();
+            }
+            table.append((StudentTable) result);
+        }
+
+        table.trimToSize();
+        return table;
+    }
+
+    /**
+     * Maps the file of the specified channel by chunks of about the specified
+     * size. Each chunk except the last one is extended to the first line feed
+     * at or after its desired end.
+     *
+     * @param channel channel of the file
+     * @param chunkSize desired size of a chunk, in bytes
+     * @return list of mapped chunks, in the order of the file
+     * @throws IOException if an I/O error occurs or a line is too long to be
+     *         mapped
+     */
+    private static List<MappedByteBuffer> map(FileChannel channel, int chunkSize) throws IOException {
+        List<MappedByteBuffer> chunks = new ArrayList<>();
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_BUFFER_SIZE);
+
+        long start = 0;
+        while (start < size) {
+            long end = lineEnd(channel, Math.min(start + chunkSize, size), buffer);
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line at byte " + start + " is too long.");
+            }
+            chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+            start = end;
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Returns the position after the first line feed at or after the position
+     * before the specified one, or the size of the file if there is no such
+     * line feed.
+     *
+     * @param channel channel of the file
+     * @param position desired end of a chunk
+     * @param buffer buffer for reading the file
+     * @return the position after a line feed, or the size of the file
+     * @throws IOException if an I/O error occurs
+     */
+    private static long lineEnd(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        long searched = position - 1;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, searched);
+            if (read == -1) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return searched + i + 1;
+                }
+            }
+            searched += read;
+        }
+    }
+
+    /**
+     * Returns the number of lines that are terminated within the specified
+     * chunk, counting line terminators the same way as
+     * {@linkplain StudentTableReader} does.
+     *
+     * @param chunk a chunk of the file
+     * @return the number of terminated lines
+     */
+    private static int countLines(MappedByteBuffer chunk) {
+        int count = 0;
+        boolean carriageReturn = false;
+        for (int i = 0, n = chunk.limit(); i < n; i++) {
+            byte b = chunk.get(i);
+            if (b == '\n') {
+                if (!carriageReturn) {
+                    count++;
+                }
+                carriageReturn = false;
+            } else if (b == '\r') {
+                count++;
+                carriageReturn = true;
+            } else {
+                carriageReturn = false;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Parses the specified chunk into a table, or returns the failure that
+     * prevented it.
+     *
+     * @param chunk a chunk of the file
+     * @param firstLineNumber number of the first line of the chunk
+     * @return the table of the chunk, a {@linkplain MalformedLineError} or an
+     *         {@linkplain UncheckedIOException}
+     */
+    private static Object parse(MappedByteBuffer chunk, int firstLineNumber) {
+        try {
+            return StudentTableReader.read(chunk.duplicate(), firstLineNumber);
+        } catch (MalformedLineError e) {
+            return e;
+        } catch (IOException e) {
+            return new UncheckedIOException(e);
+        }
+    }
+
+}
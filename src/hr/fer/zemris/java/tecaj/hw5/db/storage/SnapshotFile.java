@@ -0,0 +1,452 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32;
+
+import hr.fer.zemris.java.tecaj.hw5.collections.OffHeapLongIntHashtable;
+
+/**
+ * A binary snapshot of a database file, from which the database is reopened
+ * without parsing the database file again. The snapshot is stored next to the
+ * database file, under the same name with a <tt>.snap</tt> extension
+ * appended.
+ * <p>
+ * All numbers are stored in little-endian byte order. The snapshot consists
+ * of:
+ * <ul>
+ * <li>a header of 64 bytes, which records the number of rows, the number of
+ * digits of each JMBAG (or <tt>0</tt> if JMBAGs are not numeric), the number
+ * of names, the position of the JMBAG index, the size and last modification
+ * time of the database file the snapshot was made of, and a CRC32 checksum of
+ * everything that follows the header,
+ * <li>the JMBAG column, as <tt>long</tt> values if JMBAGs are numeric, or as
+ * length-prefixed UTF-8 strings otherwise,
+ * <li>the string table of the {@linkplain NameDictionary}, as length-prefixed
+ * UTF-8 strings in the order of their codes,
+ * <li>the columns of last name codes and first name codes, as <tt>int</tt>
+ * values, and the column of final grades, as <tt>byte</tt> values, and
+ * <li>if JMBAGs are numeric, the prebuilt {@linkplain OffHeapLongIntHashtable}
+ * of row numbers by JMBAGs, aligned to 8 bytes.
+ * </ul>
+ * The snapshot is memory-mapped when it is read. Columns are copied from the
+ * mapping in bulk and only distinct names are decoded, while the JMBAG index
+ * is used directly from the mapping. A snapshot whose header does not match
+ * the current database file is stale and is ignored, as is a snapshot whose
+ * checksum does not match its contents.
+ *
+ * @author Mario Bobic
+ */
+public class SnapshotFile {
+
+    /** Extension appended to the name of the database file. */
+    private static final String EXTENSION = ".snap";
+
+    /** Magic number that identifies a snapshot. */
+    private static final int MAGIC = 0x53444253;
+    /** Version of the snapshot format. */
+    private static final int VERSION = 2;
+    /** Size of the header, in bytes. */
+    private static final int HEADER_SIZE = 64;
+    /** Alignment of the JMBAG index, in bytes. */
+    private static final int INDEX_ALIGNMENT = 8;
+    /** Size of the buffer used for writing, in bytes. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Path of the snapshot. */
+    private final Path snapshotFile;
+
+    /**
+     * Constructs a new <tt>SnapshotFile</tt> for the specified database file.
+     *
+     * @param databaseFile path of the database file
+     */
+    public SnapshotFile(Path databaseFile) {
+        this.snapshotFile = databaseFile.resolveSibling(databaseFile.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Returns the path of the snapshot.
+     *
+     * @return the path of the snapshot
+     */
+    public Path getPath() {
+        return snapshotFile;
+    }
+
+    /**
+     * Reads the snapshot of the database file, or returns <tt>null</tt> if the
+     * snapshot does not exist, is not valid or was made of a different version
+     * of the database file.
+     *
+     * @param attributes attributes of the database file
+     * @return contents of the snapshot, or <tt>null</tt> if it is not available
+     */
+    public Contents read(BasicFileAttributes attributes) {
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                return null;
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            int rowCount = header.getInt(8);
+            int jmbagLength = header.getInt(12);
+            int nameCount = header.getInt(16);
+            long indexPosition = header.getLong(40);
+            int checksum = header.getInt(48);
+            if (header.getInt(0) != MAGIC
+                    || header.getInt(4) != VERSION
+                    || header.getLong(24) != attributes.size()
+                    || header.getLong(32) != attributes.lastModifiedTime().toMillis()
+                    || rowCount < 0 || jmbagLength < 0 || nameCount < 0
+                    || indexPosition < 0 || indexPosition > fileSize) {
+                return null;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, fileSize - HEADER_SIZE));
+            if ((int) crc.getValue() != checksum) {
+                return null;
+            }
+
+            long columnsEnd = indexPosition == 0 ? fileSize : indexPosition;
+            MappedByteBuffer columns = channel.map(FileChannel.MapMode.READ_ONLY, 0, columnsEnd);
+            columns.order(ByteOrder.LITTLE_ENDIAN).position(HEADER_SIZE);
+            StudentTable table = readTable(columns, rowCount, jmbagLength, nameCount);
+            if (table == null) {
+                return null;
+            }
+
+            OffHeapLongIntHashtable jmbagIndex = null;
+            if (indexPosition != 0) {
+                jmbagIndex = OffHeapLongIntHashtable.map(channel, indexPosition);
+                if (!jmbagIndex.hasValuesBelow(rowCount)) {
+                    return null;
+                }
+            }
+            return new Contents(table, jmbagIndex);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            // A missing or damaged snapshot is made again
+            return null;
+        }
+    }
+
+    /**
+     * Reads the columns of a table from the specified buffer.
+     *
+     * @param buffer buffer positioned at the JMBAG column
+     * @param rowCount number of rows
+     * @param jmbagLength number of digits of each JMBAG, or <tt>0</tt>
+     * @param nameCount number of names in the string table
+     * @return the table, or <tt>null</tt> if the columns are not valid
+     */
+    private static StudentTable readTable(ByteBuffer buffer, int rowCount, int jmbagLength, int nameCount) {
+        long[] numericJmbags = null;
+        String[] jmbags = null;
+        if (jmbagLength != 0) {
+            require(buffer, (long) rowCount*Long.BYTES);
+            numericJmbags = new long[rowCount];
+            buffer.asLongBuffer().get(numericJmbags);
+            buffer.position(buffer.position() + rowCount*Long.BYTES);
+        } else {
+            require(buffer, (long) rowCount*Integer.BYTES);
+            jmbags = new String[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                jmbags[i] = readString(buffer);
+            }
+        }
+
+        NameDictionary names = new NameDictionary();
+        for (int code = 0; code < nameCount; code++) {
+            if (names.encode(readString(buffer)) != code) {
+                return null;
+            }
+        }
+
+        int[] lastNames = readCodes(buffer, rowCount, nameCount);
+        int[] firstNames = readCodes(buffer, rowCount, nameCount);
+        if (lastNames == null || firstNames == null) {
+            return null;
+        }
+        require(buffer, rowCount);
+        byte[] grades = new byte[rowCount];
+        buffer.get(grades);
+
+        return new StudentTable(numericJmbags, jmbags, jmbagLength, lastNames, firstNames, grades, names);
+    }
+
+    /**
+     * Reads a column of name codes from the specified buffer.
+     *
+     * @param buffer buffer positioned at the column
+     * @param rowCount number of rows
+     * @param nameCount number of names in the string table
+     * @return the codes, or <tt>null</tt> if a code is not valid
+     */
+    private static int[] readCodes(ByteBuffer buffer, int rowCount, int nameCount) {
+        require(buffer, (long) rowCount*Integer.BYTES);
+        int[] codes = new int[rowCount];
+        buffer.asIntBuffer().get(codes);
+        buffer.position(buffer.position() + rowCount*Integer.BYTES);
+
+        for (int code : codes) {
+            if (code < 0 || code >= nameCount) {
+                return null;
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string from the specified buffer.
+     *
+     * @param buffer buffer positioned at the string
+     * @return the string
+     */
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            throw new BufferUnderflowException();
+        }
+        require(buffer, length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Throws a {@linkplain BufferUnderflowException} if the specified buffer
+     * has less than the specified number of bytes remaining, before an array
+     * for the bytes is allocated.
+     *
+     * @param buffer a buffer
+     * @param bytes number of bytes that are about to be read
+     */
+    private static void require(ByteBuffer buffer, long bytes) {
+        if (buffer.remaining() < bytes) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the specified table and its JMBAG index. The
+     * snapshot is first written to a temporary file, which then replaces the
+     * snapshot, so that a partially written snapshot is never read.
+     *
+     * @param table table of the database file
+     * @param jmbagIndex map of row numbers by numeric JMBAGs, or <tt>null</tt>
+     * @param attributes attributes of the database file, read before its rows
+     * @throws IllegalArgumentException if the table has deleted rows
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(StudentTable table, OffHeapLongIntHashtable jmbagIndex,
+            BasicFileAttributes attributes) throws IOException {
+        if (table.getDeletedCount() != 0) {
+            throw new IllegalArgumentException("Table must not have deleted rows.");
+        }
+        Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        int rowCount = table.size();
+        NameDictionary names = table.getNames();
+
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(HEADER_SIZE);
+
+            for (int i = 0; i < rowCount; i++) {
+                if (table.hasNumericJmbags()) {
+                    ensureRemaining(channel, buffer, Long.BYTES);
+                    buffer.putLong(table.getNumericJmbag(i));
+                } else {
+                    writeString(channel, buffer, table.getJmbag(i));
+                }
+            }
+            for (int code = 0, n = names.size(); code < n; code++) {
+                writeString(channel, buffer, names.decode(code));
+            }
+            for (int i = 0; i < rowCount; i++) {
+                ensureRemaining(channel, buffer, Integer.BYTES);
+                buffer.putInt(table.getLastNameCode(i));
+            }
+            for (int i = 0; i < rowCount; i++) {
+                ensureRemaining(channel, buffer, Integer.BYTES);
+                buffer.putInt(table.getFirstNameCode(i));
+            }
+            for (int i = 0; i < rowCount; i++) {
+                ensureRemaining(channel, buffer, 1);
+                buffer.put((byte) table.getFinalGrade(i));
+            }
+
+            long indexPosition = 0;
+            if (jmbagIndex != null) {
+                flush(channel, buffer);
+                long position = channel.position();
+                buffer.put(new byte[(int) (-position & (INDEX_ALIGNMENT-1))]);
+                flush(channel, buffer);
+                indexPosition = channel.position();
+                jmbagIndex.writeTo(channel);
+            } else {
+                flush(channel, buffer);
+            }
+            int checksum = checksum(channel, buffer);
+
+            buffer.putInt(MAGIC)
+                  .putInt(VERSION)
+                  .putInt(rowCount)
+                  .putInt(table.hasNumericJmbags() ? table.getJmbagLength() : 0)
+                  .putInt(names.size())
+                  .putInt(0)
+                  .putLong(attributes.size())
+                  .putLong(attributes.lastModifiedTime().toMillis())
+                  .putLong(indexPosition)
+                  .putInt(checksum)
+                  .put(new byte[HEADER_SIZE - 52]);
+            buffer.flip();
+            for (long position = 0; buffer.hasRemaining(); ) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(true);
+        }
+
+        try {
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads back everything written to the specified channel after the header
+     * and returns its CRC32 checksum.
+     *
+     * @param channel channel to which the snapshot is written
+     * @param buffer empty buffer used for reading
+     * @return checksum of everything after the header
+     * @throws IOException if an I/O error occurs
+     */
+    private static int checksum(FileChannel channel, ByteBuffer buffer) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long position = HEADER_SIZE, end = channel.size(); position < end; ) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+            buffer.flip();
+            crc.update(buffer);
+            buffer.clear();
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string through the specified buffer.
+     *
+     * @param channel channel to which the buffer is flushed
+     * @param buffer buffer of bytes to be written
+     * @param s string to be written
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeString(FileChannel channel, ByteBuffer buffer, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensureRemaining(channel, buffer, Integer.BYTES);
+        buffer.putInt(bytes.length);
+
+        for (int offset = 0; offset < bytes.length; ) {
+            ensureRemaining(channel, buffer, 1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Flushes the specified buffer if it has less than the specified number of
+     * bytes remaining.
+     *
+     * @param channel channel to which the buffer is flushed
+     * @param buffer buffer of bytes to be written
+     * @param bytes number of bytes that are about to be put
+     * @throws IOException if an I/O error occurs
+     */
+    private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Writes all bytes of the specified buffer to the channel and clears the
+     * buffer.
+     *
+     * @param channel channel to which the buffer is written
+     * @param buffer buffer of bytes to be written
+     * @throws IOException if an I/O error occurs
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Contents of a snapshot: the table of a database file and the JMBAG
+     * index of its rows.
+     *
+     * @author Mario Bobic
+     */
+    public static class Contents {
+
+        /** Table of the database file. */
+        private final StudentTable table;
+        /** Map of row numbers by numeric JMBAGs, or <tt>null</tt>. */
+        private final OffHeapLongIntHashtable jmbagIndex;
+
+        /**
+         * Constructs new contents of a snapshot.
+         *
+         * @param table table of the database file
+         * @param jmbagIndex map of row numbers by numeric JMBAGs, or
+         *        <tt>null</tt>
+         */
+        private Contents(StudentTable table, OffHeapLongIntHashtable jmbagIndex) {
+            this.table = table;
+            this.jmbagIndex = jmbagIndex;
+        }
+
+        /**
+         * Returns the table of the database file.
+         *
+         * @return the table of the database file
+         */
+        public StudentTable getTable() {
+            return table;
+        }
+
+        /**
+         * Returns the map of row numbers by numeric JMBAGs, or <tt>null</tt>
+         * if JMBAGs are not numeric.
+         *
+         * @return the JMBAG index, or <tt>null</tt>
+         */
+        public OffHeapLongIntHashtable getJmbagIndex() {
+            return jmbagIndex;
+        }
+    }
+
+}
@@ -0,0 +1,411 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.IFieldValueGetter;
+import hr.fer.zemris.java.tecaj.hw5.db.operators.IComparisonOperator;
+
+/**
+ * A sorted index of a name field of a {@linkplain StudentTable}, such as the
+ * last name. Each distinct name of the rows that are not deleted is stored
+ * once, together with the rows that have the name, so that rows whose name
+ * lies in a range are found by binary search over the names instead of by
+ * comparing the name of each row.
+ * <p>
+ * The names are kept in two orders:
+ * <ul>
+ * <li>by their {@linkplain CollationKey collation keys} of the
+ * {@linkplain IComparisonOperator#HR_COLLATOR Croatian collator}, which is
+ * the order of the comparison operators, for finding the rows of a range of
+ * names by {@linkplain #range(String, boolean, String, boolean)}, and
+ * <li>by {@linkplain String#compareTo(String)}, in which all names that start
+ * with the same characters are adjacent, for finding the rows of names with a
+ * prefix by {@linkplain #prefix(String)}. Croatian collation does not keep
+ * such names together, since it orders digraphs such as <i>lj</i> after all
+ * other names starting with <i>l</i>.
+ * </ul>
+ * Both searches take O(log d + m + k log k) time, where <tt>d</tt> is the
+ * number of distinct names, <tt>m</tt> the number of names found and
+ * <tt>k</tt> the number of found rows, which are returned in ascending order.
+ * <p>
+ * The index is kept up to date as the table changes, by {@linkplain #add(int)}
+ * after a row is added or updated and {@linkplain #remove(int)} before a row
+ * is updated or deleted. A name whose rows are all removed keeps its place in
+ * both orders, with no rows.
+ *
+ * @author Mario Bobic
+ */
+public class SortedNameIndex {
+
+    /** Table whose field is indexed. */
+    private final StudentTable table;
+    /** Getter of the indexed field. */
+    private final IFieldValueGetter getter;
+    /** Collator used for ordering the names. */
+    private final Collator collator;
+    /** Number of names in the index, including names with no rows. */
+    private int length;
+    /** Collation keys of the names, in collation order. */
+    private CollationKey[] keys;
+    /** Codes of the names in {@link #keys}. */
+    private int[] codes;
+    /** Names in the order of {@linkplain String#compareTo(String)}. */
+    private String[] sortedNames;
+    /** Codes of the names in {@link #sortedNames}. */
+    private int[] sortedCodes;
+    /** Rows of each name by its code, or <tt>null</tt> if not indexed. */
+    private SortedRows[] rowsByCode;
+    /** Number of names that have rows. */
+    private int nameCount;
+    /** Number of rows in the index. */
+    private int size;
+
+    /**
+     * Constructs a new <tt>SortedNameIndex</tt> of the field of the specified
+     * table that is read by the specified getter, indexing all rows that are
+     * not deleted. The field must be stored as {@linkplain NameDictionary}
+     * codes.
+     *
+     * @param table table whose field is indexed
+     * @param getter getter of the indexed field
+     * @throws IllegalArgumentException if the field is not stored as codes
+     */
+    public SortedNameIndex(StudentTable table, IFieldValueGetter getter) {
+        this.table = table;
+        this.getter = getter;
+        this.collator = (Collator) IComparisonOperator.HR_COLLATOR.clone();
+
+        NameDictionary names = table.getNames();
+        rowsByCode = new SortedRows[names.size()];
+        for (int row = 0, n = table.size(); row < n; row++) {
+            if (table.isDeleted(row)) {
+                continue;
+            }
+            int code = codeOf(row);
+            if (rowsByCode[code] == null) {
+                rowsByCode[code] = new SortedRows();
+                nameCount++;
+            }
+            rowsByCode[code].add(row);
+            size++;
+        }
+
+        CollationKey[] unsortedKeys = new CollationKey[nameCount];
+        for (int code = 0, i = 0; code < rowsByCode.length; code++) {
+            if (rowsByCode[code] != null) {
+                rowsByCode[code].trimToSize();
+                unsortedKeys[i++] = collator.getCollationKey(names.decode(code));
+            }
+        }
+        Arrays.sort(unsortedKeys);
+        length = nameCount;
+        keys = unsortedKeys;
+        codes = new int[length];
+        for (int i = 0; i < length; i++) {
+            codes[i] = names.codeOf(keys[i].getSourceString());
+        }
+
+        Integer[] order = new Integer[length];
+        for (int i = 0; i < length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(i -> keys[i].getSourceString()));
+        sortedNames = new String[length];
+        sortedCodes = new int[length];
+        for (int i = 0; i < length; i++) {
+            sortedNames[i] = keys[order[i]].getSourceString();
+            sortedCodes[i] = codes[order[i]];
+        }
+    }
+
+    /**
+     * Returns the code of the name in the specified row.
+     *
+     * @param row ordinal number of the row
+     * @return the code of the name
+     * @throws IllegalArgumentException if the field is not stored as codes
+     */
+    private int codeOf(int row) {
+        int code = getter.getCode(table, row);
+        if (code == -1) {
+            throw new IllegalArgumentException("Field must be stored as name codes.");
+        }
+        return code;
+    }
+
+    /**
+     * Adds the specified row to the rows of its current name. A name that is
+     * not in the index yet is inserted into both orders.
+     * <p>
+     * Time complexity: O(1) for a row added to the end of the table with a
+     * name that is already indexed, O(d) for a new name
+     *
+     * @param row ordinal number of the row
+     */
+    public void add(int row) {
+        int code = codeOf(row);
+        if (code >= rowsByCode.length) {
+            rowsByCode = Arrays.copyOf(rowsByCode, table.getNames().size());
+        }
+
+        SortedRows rows = rowsByCode[code];
+        if (rows == null) {
+            rows = new SortedRows();
+            rowsByCode[code] = rows;
+            insertName(code);
+        }
+        if (rows.add(row)) {
+            if (rows.size() == 1) {
+                nameCount++;
+            }
+            size++;
+        }
+    }
+
+    /**
+     * Removes the specified row from the rows of its current name.
+     *
+     * @param row ordinal number of the row
+     */
+    public void remove(int row) {
+        int code = codeOf(row);
+        SortedRows rows = code < rowsByCode.length ? rowsByCode[code] : null;
+        if (rows != null && rows.remove(row)) {
+            if (rows.size() == 0) {
+                nameCount--;
+            }
+            size--;
+        }
+    }
+
+    /**
+     * Inserts the name with the specified code at its position in both orders.
+     *
+     * @param code code of the name
+     */
+    private void insertName(int code) {
+        if (length == keys.length) {
+            int capacity = length + (length >> 1) + 1;
+            keys = Arrays.copyOf(keys, capacity);
+            codes = Arrays.copyOf(codes, capacity);
+            sortedNames = Arrays.copyOf(sortedNames, capacity);
+            sortedCodes = Arrays.copyOf(sortedCodes, capacity);
+        }
+
+        String name = table.getNames().decode(code);
+        CollationKey key = collator.getCollationKey(name);
+        int position = search(key, false);
+        System.arraycopy(keys, position, keys, position+1, length-position);
+        System.arraycopy(codes, position, codes, position+1, length-position);
+        keys[position] = key;
+        codes[position] = code;
+
+        position = prefixStart(name);
+        System.arraycopy(sortedNames, position, sortedNames, position+1, length-position);
+        System.arraycopy(sortedCodes, position, sortedCodes, position+1, length-position);
+        sortedNames[position] = name;
+        sortedCodes[position] = code;
+        length++;
+    }
+
+    /**
+     * Returns the rows whose names lie between the specified bounds, in
+     * ascending order. Names are compared the same way as by the comparison
+     * operators.
+     *
+     * @param from lower bound of the names, or <tt>null</tt> if unbounded
+     * @param fromInclusive true if names equal to the lower bound are included
+     * @param to upper bound of the names, or <tt>null</tt> if unbounded
+     * @param toInclusive true if names equal to the upper bound are included
+     * @return the rows whose names lie between the bounds
+     */
+    public int[] range(String from, boolean fromInclusive, String to, boolean toInclusive) {
+        int start = rangeStart(from, fromInclusive);
+        int end = rangeEnd(to, toInclusive);
+        return rowsOf(codes, start, end);
+    }
+
+    /**
+     * Returns the number of rows whose names lie between the specified
+     * bounds, without finding the rows.
+     *
+     * @param from lower bound of the names, or <tt>null</tt> if unbounded
+     * @param fromInclusive true if names equal to the lower bound are included
+     * @param to upper bound of the names, or <tt>null</tt> if unbounded
+     * @param toInclusive true if names equal to the upper bound are included
+     * @return the number of rows whose names lie between the bounds
+     */
+    public int rangeCount(String from, boolean fromInclusive, String to, boolean toInclusive) {
+        int start = rangeStart(from, fromInclusive);
+        int end = rangeEnd(to, toInclusive);
+        return countOf(codes, start, end);
+    }
+
+    /**
+     * Returns the collation position of the first name that is greater than
+     * (or equal to, if inclusive) the specified lower bound.
+     *
+     * @param from lower bound of the names, or <tt>null</tt>
+     * @param inclusive true if a name equal to the bound is included
+     * @return collation position of the first name in the range
+     */
+    private int rangeStart(String from, boolean inclusive) {
+        if (from == null) {
+            return 0;
+        }
+        return search(collator.getCollationKey(from), !inclusive);
+    }
+
+    /**
+     * Returns the collation position after the last name that is less than
+     * (or equal to, if inclusive) the specified upper bound.
+     *
+     * @param to upper bound of the names, or <tt>null</tt>
+     * @param inclusive true if a name equal to the bound is included
+     * @return collation position after the last name in the range
+     */
+    private int rangeEnd(String to, boolean inclusive) {
+        if (to == null) {
+            return length;
+        }
+        return search(collator.getCollationKey(to), inclusive);
+    }
+
+    /**
+     * Returns the position of the first collation key that is greater than
+     * the specified key, or greater than or equal to it if <tt>after</tt> is
+     * false.
+     *
+     * @param key a collation key
+     * @param after true if keys equal to the specified key are skipped
+     * @return position of the first key that follows the specified key
+     */
+    private int search(CollationKey key, boolean after) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = keys[mid].compareTo(key);
+            if (cmp < 0 || cmp == 0 && after) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the rows whose names start with the specified prefix, in
+     * ascending order. Characters are compared exactly, the same way as by
+     * the <tt>LIKE</tt> operator.
+     *
+     * @param prefix prefix of the names
+     * @return the rows whose names start with the prefix
+     */
+    public int[] prefix(String prefix) {
+        int start = prefixStart(prefix);
+        return rowsOf(sortedCodes, start, prefixEnd(start, prefix));
+    }
+
+    /**
+     * Returns the number of rows whose names start with the specified prefix,
+     * without finding the rows.
+     *
+     * @param prefix prefix of the names
+     * @return the number of rows whose names start with the prefix
+     */
+    public int prefixCount(String prefix) {
+        int start = prefixStart(prefix);
+        return countOf(sortedCodes, start, prefixEnd(start, prefix));
+    }
+
+    /**
+     * Returns the position of the first name in the order of
+     * {@linkplain String#compareTo(String)} that is not less than the prefix.
+     *
+     * @param prefix prefix of the names
+     * @return position of the first name that may start with the prefix
+     */
+    private int prefixStart(String prefix) {
+        int index = Arrays.binarySearch(sortedNames, 0, length, prefix);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /**
+     * Returns the position after the last name that starts with the prefix,
+     * given the position of the first such name.
+     *
+     * @param start position of the first name that may start with the prefix
+     * @param prefix prefix of the names
+     * @return position after the last name that starts with the prefix
+     */
+    private int prefixEnd(int start, String prefix) {
+        int end = start;
+        while (end < length && sortedNames[end].startsWith(prefix)) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Returns the rows of the names with the codes from <tt>start</tt>
+     * (inclusive) to <tt>end</tt> (exclusive) in the specified array, in
+     * ascending order.
+     *
+     * @param nameCodes codes of names in one of the orders
+     * @param start position of the first name
+     * @param end position after the last name
+     * @return the rows of the names
+     */
+    private int[] rowsOf(int[] nameCodes, int start, int end) {
+        int[] result = new int[countOf(nameCodes, start, end)];
+        for (int i = start, offset = 0; i < end; i++) {
+            SortedRows rows = rowsByCode[nameCodes[i]];
+            rows.copyTo(result, offset);
+            offset += rows.size();
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the number of rows of the names with the codes from
+     * <tt>start</tt> (inclusive) to <tt>end</tt> (exclusive) in the specified
+     * array.
+     *
+     * @param nameCodes codes of names in one of the orders
+     * @param start position of the first name
+     * @param end position after the last name
+     * @return the number of rows of the names
+     */
+    private int countOf(int[] nameCodes, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            count += rowsByCode[nameCodes[i]].size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of distinct names of the rows in this index.
+     *
+     * @return the number of distinct names
+     */
+    public int nameCount() {
+        return nameCount;
+    }
+
+    /**
+     * Returns the number of rows in this index.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+}
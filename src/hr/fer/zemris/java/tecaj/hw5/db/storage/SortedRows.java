@@ -0,0 +1,96 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of rows of a {@linkplain StudentTable} in ascending order,
+ * used by indexes as the rows of a single value.
+ *
+ * @author Mario Bobic
+ */
+class SortedRows {
+
+    /** Initial capacity of the array. */
+    private static final int DEFAULT_CAPACITY = 4;
+
+    /** The rows, in ascending order. */
+    private int[] rows = new int[DEFAULT_CAPACITY];
+    /** Number of rows. */
+    private int size;
+
+    /**
+     * Inserts the specified row at its position in the ascending order.
+     * <p>
+     * Time complexity: O(1) for a row greater than all rows
+     *
+     * @param row ordinal number of the row
+     * @return true if the row was not already present
+     */
+    boolean add(int row) {
+        int index = size == 0 || rows[size-1] < row ? size : -Arrays.binarySearch(rows, 0, size, row) - 1;
+        if (index < 0) {
+            // The row is already present
+            return false;
+        }
+        if (size == rows.length) {
+            rows = Arrays.copyOf(rows, size + (size >> 1) + 1);
+        }
+        System.arraycopy(rows, index, rows, index+1, size-index);
+        rows[index] = row;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the specified row.
+     *
+     * @param row ordinal number of the row
+     * @return true if the row was present
+     */
+    boolean remove(int row) {
+        int index = Arrays.binarySearch(rows, 0, size, row);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(rows, index+1, rows, index, size-index-1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return the number of rows
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copies the rows into the specified array, starting at the specified
+     * position.
+     *
+     * @param dest destination array
+     * @param offset position of the first copied row
+     */
+    void copyTo(int[] dest, int offset) {
+        System.arraycopy(rows, 0, dest, offset, size);
+    }
+
+    /**
+     * Returns a new array of the rows, in ascending order.
+     *
+     * @return an array of the rows
+     */
+    int[] toArray() {
+        return Arrays.copyOf(rows, size);
+    }
+
+    /**
+     * Trims the capacity of the array to the number of rows.
+     */
+    void trimToSize() {
+        rows = Arrays.copyOf(rows, size);
+    }
+
+}
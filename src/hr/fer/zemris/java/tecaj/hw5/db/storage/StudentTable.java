@@ -0,0 +1,535 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
+
+/**
+ * A table of students stored by columns instead of by records. Each attribute
+ * of the students is kept in an array of primitive values, indexed by the
+ * ordinal number of the row:
+ * <ul>
+ * <li>JMBAGs are stored as <tt>long</tt> values if all of them consist of
+ * the same number of decimal digits, otherwise as strings,
+ * <li>last names and first names are stored as <tt>int</tt> codes of a
+ * shared {@linkplain NameDictionary} and
+ * <li>final grades are stored as <tt>byte</tt> values.
+ * </ul>
+ * A {@linkplain StudentRecord} is created only when a row is requested by
+ * {@linkplain #getRecord(int)}, while filters read single attributes of rows
+ * directly from the columns.
+ * <p>
+ * Rows are never removed from the columns. A deleted row keeps its ordinal
+ * number and is marked as deleted, so that the ordinal numbers of other rows
+ * stay valid.
+ *
+ * @author Mario Bobic
+ */
+public class StudentTable {
+
+    /** Default number of rows the table can hold before growing. */
+    private static final int DEFAULT_CAPACITY = 16;
+    /** Maximum number of digits of a JMBAG that may be stored as a long. */
+    private static final int MAX_NUMERIC_JMBAG_LENGTH = 18;
+
+    /** JMBAGs as longs, or <tt>null</tt> if they are stored as strings. */
+    private long[] numericJmbags;
+    /** JMBAGs as strings, or <tt>null</tt> if they are stored as longs. */
+    private String[] jmbags;
+    /** Number of digits of each JMBAG if they are stored as longs. */
+    private int jmbagLength;
+    /** Codes of last names. */
+    private int[] lastNames;
+    /** Codes of first names. */
+    private int[] firstNames;
+    /** Final grades. */
+    private byte[] grades;
+    /** Dictionary of last names and first names. */
+    private final NameDictionary names;
+    /** Deleted rows, or <tt>null</tt> if no row was ever deleted. */
+    private BitSet deleted;
+    /** Number of deleted rows. */
+    private int deletedCount;
+    /** Number of rows in the table. */
+    private int size;
+
+    /**
+     * Constructs a new empty <tt>StudentTable</tt>.
+     */
+    public StudentTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new empty <tt>StudentTable</tt> that can hold the specified
+     * number of rows before growing.
+     *
+     * @param capacity initial number of rows
+     * @throws IllegalArgumentException if <tt>capacity</tt> is negative
+     */
+    public StudentTable(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                "Capacity must not be negative. Was: " + capacity);
+        }
+        numericJmbags = new long[capacity];
+        lastNames = new int[capacity];
+        firstNames = new int[capacity];
+        grades = new byte[capacity];
+        names = new NameDictionary();
+    }
+
+    /**
+     * Constructs a new <tt>StudentTable</tt> with copies of all rows of the
+     * specified table that are not deleted, in their order.
+     *
+     * @param other table whose rows are to be copied
+     * @throws IllegalArgumentException if the table is <tt>null</tt>
+     */
+    public StudentTable(StudentTable other) {
+        this(other == null ? 0 : other.size - other.deletedCount);
+        if (other == null) {
+            throw new IllegalArgumentException("Table must not be null.");
+        }
+
+        for (int i = 0; i < other.size; i++) {
+            if (!other.isDeleted(i)) {
+                add(other.getJmbag(i), other.getLastName(i), other.getFirstName(i), other.grades[i]);
+            }
+        }
+        names.trimToSize();
+    }
+
+    /**
+     * Constructs a new <tt>StudentTable</tt> with the specified columns of
+     * equal length. Exactly one of the JMBAG columns must not be
+     * <tt>null</tt>.
+     *
+     * @param numericJmbags JMBAGs as longs, or <tt>null</tt>
+     * @param jmbags JMBAGs as strings, or <tt>null</tt>
+     * @param jmbagLength number of digits of each JMBAG if they are longs
+     * @param lastNames codes of last names
+     * @param firstNames codes of first names
+     * @param grades final grades
+     * @param names dictionary of last names and first names
+     */
+    StudentTable(long[] numericJmbags, String[] jmbags, int jmbagLength,
+            int[] lastNames, int[] firstNames, byte[] grades, NameDictionary names) {
+        this.numericJmbags = numericJmbags;
+        this.jmbags = jmbags;
+        this.jmbagLength = numericJmbags == null ? 0 : jmbagLength;
+        this.lastNames = lastNames;
+        this.firstNames = firstNames;
+        this.grades = grades;
+        this.names = names;
+        this.size = grades.length;
+    }
+
+    /**
+     * Appends a row with the specified attributes to this table. The first
+     * JMBAG that can not be stored as a long turns the JMBAG column into a
+     * column of strings.
+     *
+     * @param jmbag student's JMBAG
+     * @param lastName student's last name
+     * @param firstName student's first name
+     * @param finalGrade student's final grade
+     * @throws IllegalArgumentException if an argument is <tt>null</tt> or the
+     *         final grade is out of range of a byte
+     */
+    public void add(String jmbag, String lastName, String firstName, int finalGrade) {
+        if (jmbag == null) {
+            throw new IllegalArgumentException("JMBAG must not be null.");
+        }
+        if (finalGrade < Byte.MIN_VALUE || finalGrade > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Final grade out of range: " + finalGrade);
+        }
+        int lastNameCode = names.encode(lastName);
+        int firstNameCode = names.encode(firstName);
+
+        if (size == lastNames.length) {
+            grow();
+        }
+
+        if (numericJmbags != null) {
+            if (size == 0) {
+                jmbagLength = jmbag.length();
+            }
+            long value = jmbagLength > MAX_NUMERIC_JMBAG_LENGTH ? -1 : parseJmbag(jmbag, jmbagLength);
+            if (value == -1) {
+                toStringJmbags();
+            } else {
+                numericJmbags[size] = value;
+            }
+        }
+        if (jmbags != null) {
+            jmbags[size] = jmbag;
+        }
+
+        lastNames[size] = lastNameCode;
+        firstNames[size] = firstNameCode;
+        grades[size] = (byte) finalGrade;
+        size++;
+    }
+
+    /**
+     * Replaces the names and the final grade in the specified row. The JMBAG
+     * of the row is not changed.
+     *
+     * @param row ordinal number of the row
+     * @param lastName student's new last name
+     * @param firstName student's new first name
+     * @param finalGrade student's new final grade
+     * @throws IllegalArgumentException if a name is <tt>null</tt> or the
+     *         final grade is out of range of a byte
+     * @throws IndexOutOfBoundsException if the row does not exist
+     */
+    public void update(int row, String lastName, String firstName, int finalGrade) {
+        checkRow(row);
+        if (finalGrade < Byte.MIN_VALUE || finalGrade > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Final grade out of range: " + finalGrade);
+        }
+        int lastNameCode = names.encode(lastName);
+        int firstNameCode = names.encode(firstName);
+
+        lastNames[row] = lastNameCode;
+        firstNames[row] = firstNameCode;
+        grades[row] = (byte) finalGrade;
+    }
+
+    /**
+     * Marks the specified row as deleted. Attributes of a deleted row can
+     * still be read.
+     *
+     * @param row ordinal number of the row
+     * @return true if the row was not already deleted
+     * @throws IndexOutOfBoundsException if the row does not exist
+     */
+    public boolean delete(int row) {
+        checkRow(row);
+        if (deleted == null) {
+            deleted = new BitSet();
+        } else if (deleted.get(row)) {
+            return false;
+        }
+        deleted.set(row);
+        deletedCount++;
+        return true;
+    }
+
+    /**
+     * Returns true if the specified row is marked as deleted.
+     *
+     * @param row ordinal number of the row
+     * @return true if the row is deleted
+     */
+    public boolean isDeleted(int row) {
+        return deleted != null && deleted.get(row);
+    }
+
+    /**
+     * Returns the number of rows that are marked as deleted.
+     *
+     * @return the number of deleted rows
+     */
+    public int getDeletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * Appends all rows of the specified table to the end of this table, in
+     * their order. Names of the other table are encoded by the dictionary of
+     * this table.
+     *
+     * @param other table whose rows are to be appended
+     * @throws IllegalArgumentException if the table is <tt>null</tt> or this
+     *         table
+     */
+    public void append(StudentTable other) {
+        if (other == null || other == this) {
+            throw new IllegalArgumentException("Table must not be null or this table.");
+        }
+        if (other.size == 0) {
+            return;
+        }
+        if (other.deleted != null) {
+            if (deleted == null) {
+                deleted = new BitSet();
+            }
+            for (int i = other.deleted.nextSetBit(0); i >= 0; i = other.deleted.nextSetBit(i+1)) {
+                deleted.set(size + i);
+            }
+            deletedCount += other.deletedCount;
+        }
+
+        NameDictionary otherNames = other.names;
+        int[] codes = new int[otherNames.size()];
+        for (int code = 0; code < codes.length; code++) {
+            codes[code] = names.encode(otherNames.decode(code));
+        }
+
+        if (numericJmbags != null && size == 0) {
+            jmbagLength = other.jmbagLength;
+        }
+        if (numericJmbags != null && (other.numericJmbags == null || other.jmbagLength != jmbagLength)) {
+            toStringJmbags();
+        }
+        ensureCapacity(size + other.size);
+
+        for (int i = 0; i < other.size; i++) {
+            lastNames[size+i] = codes[other.lastNames[i]];
+            firstNames[size+i] = codes[other.firstNames[i]];
+        }
+        System.arraycopy(other.grades, 0, grades, size, other.size);
+        if (numericJmbags != null) {
+            System.arraycopy(other.numericJmbags, 0, numericJmbags, size, other.size);
+        } else {
+            for (int i = 0; i < other.size; i++) {
+                jmbags[size+i] = other.getJmbag(i);
+            }
+        }
+        size += other.size;
+    }
+
+    /**
+     * Grows all columns by half of their length.
+     */
+    private void grow() {
+        resize(Math.max(DEFAULT_CAPACITY, size + (size >> 1)));
+    }
+
+    /**
+     * Grows all columns so that they can hold at least the specified number
+     * of rows.
+     *
+     * @param capacity the desired minimum number of rows
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > lastNames.length) {
+            resize(Math.max(capacity, lastNames.length + (lastNames.length >> 1)));
+        }
+    }
+
+    /**
+     * Copies all columns to arrays of the specified length.
+     *
+     * @param capacity new length of the columns
+     */
+    private void resize(int capacity) {
+        if (numericJmbags != null) {
+            numericJmbags = Arrays.copyOf(numericJmbags, capacity);
+        } else {
+            jmbags = Arrays.copyOf(jmbags, capacity);
+        }
+        lastNames = Arrays.copyOf(lastNames, capacity);
+        firstNames = Arrays.copyOf(firstNames, capacity);
+        grades = Arrays.copyOf(grades, capacity);
+    }
+
+    /**
+     * Converts the column of numeric JMBAGs to a column of strings.
+     */
+    private void toStringJmbags() {
+        String[] strings = new String[lastNames.length];
+        for (int i = 0; i < size; i++) {
+            strings[i] = getJmbag(i);
+        }
+        jmbags = strings;
+        numericJmbags = null;
+        jmbagLength = 0;
+    }
+
+    /**
+     * Trims the capacity of all columns to the current number of rows.
+     */
+    public void trimToSize() {
+        if (numericJmbags != null) {
+            numericJmbags = Arrays.copyOf(numericJmbags, size);
+        } else {
+            jmbags = Arrays.copyOf(jmbags, size);
+        }
+        lastNames = Arrays.copyOf(lastNames, size);
+        firstNames = Arrays.copyOf(firstNames, size);
+        grades = Arrays.copyOf(grades, size);
+        names.trimToSize();
+    }
+
+    /**
+     * Returns the number of rows in this table, including deleted rows.
+     *
+     * @return the number of rows in this table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if JMBAGs are stored as longs, which is when all of them
+     * consist of the same number of decimal digits.
+     *
+     * @return true if JMBAGs are stored as longs
+     */
+    public boolean hasNumericJmbags() {
+        return numericJmbags != null;
+    }
+
+    /**
+     * Returns the number of digits of each JMBAG if JMBAGs are stored as
+     * longs, or <tt>0</tt> otherwise.
+     *
+     * @return the number of digits of each JMBAG
+     */
+    public int getJmbagLength() {
+        return jmbagLength;
+    }
+
+    /**
+     * Returns the numeric value of the JMBAG in the specified row.
+     *
+     * @param row ordinal number of the row
+     * @return the numeric value of the JMBAG
+     * @throws IllegalStateException if JMBAGs are not stored as longs
+     */
+    public long getNumericJmbag(int row) {
+        checkRow(row);
+        if (numericJmbags == null) {
+            throw new IllegalStateException("JMBAGs are not numeric.");
+        }
+        return numericJmbags[row];
+    }
+
+    /**
+     * Returns the JMBAG in the specified row.
+     *
+     * @param row ordinal number of the row
+     * @return the JMBAG
+     */
+    public String getJmbag(int row) {
+        checkRow(row);
+        if (jmbags != null) {
+            return jmbags[row];
+        }
+
+        char[] digits = new char[jmbagLength];
+        long value = numericJmbags[row];
+        for (int i = jmbagLength-1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Returns the last name in the specified row.
+     *
+     * @param row ordinal number of the row
+     * @return the last name
+     */
+    public String getLastName(int row) {
+        checkRow(row);
+        return names.decode(lastNames[row]);
+    }
+
+    /**
+     * Returns the first name in the specified row.
+     *
+     * @param row ordinal number of the row
+     * @return the first name
+     */
+    public String getFirstName(int row) {
+        checkRow(row);
+        return names.decode(firstNames[row]);
+    }
+
+    /**
+     * Returns the {@linkplain NameDictionary} code of the last name in the
+     * specified row.
+     *
+     * @param row ordinal number of the row
+     * @return the code of the last name
+     */
+    public int getLastNameCode(int row) {
+        checkRow(row);
+        return lastNames[row];
+    }
+
+    /**
+     * Returns the {@linkplain NameDictionary} code of the first name in the
+     * specified row.
+     *
+     * @param row ordinal number of the row
+     * @return the code of the first name
+     */
+    public int getFirstNameCode(int row) {
+        checkRow(row);
+        return firstNames[row];
+    }
+
+    /**
+     * Returns the final grade in the specified row.
+     *
+     * @param row ordinal number of the row
+     * @return the final grade
+     */
+    public int getFinalGrade(int row) {
+        checkRow(row);
+        return grades[row];
+    }
+
+    /**
+     * Returns the dictionary of last names and first names of this table.
+     *
+     * @return the dictionary of names
+     */
+    public NameDictionary getNames() {
+        return names;
+    }
+
+    /**
+     * Creates a {@linkplain StudentRecord} of the specified row.
+     *
+     * @param row ordinal number of the row
+     * @return a record of the row
+     */
+    public StudentRecord getRecord(int row) {
+        return new StudentRecord(getJmbag(row), getLastName(row), getFirstName(row), getFinalGrade(row));
+    }
+
+    /**
+     * Throws an {@linkplain IndexOutOfBoundsException} if the specified row
+     * does not exist.
+     *
+     * @param row ordinal number of the row
+     */
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Invalid row: " + row);
+        }
+    }
+
+    /**
+     * Returns the numeric value of the specified JMBAG, or <tt>-1</tt> if the
+     * JMBAG does not consist of exactly <tt>length</tt> decimal digits.
+     *
+     * @param jmbag student's JMBAG
+     * @param length expected number of digits
+     * @return the numeric value of the JMBAG, or <tt>-1</tt>
+     */
+    public static long parseJmbag(String jmbag, int length) {
+        if (length == 0 || jmbag.length() != length) {
+            return -1;
+        }
+
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = jmbag.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value*10 + (c - '0');
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,280 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+import hr.fer.zemris.java.tecaj.hw5.db.MalformedLineError;
+
+/**
+ * Reads student data from a character stream directly into a
+ * {@linkplain StudentTable}, one student per line. Lines are assembled in a
+ * single reusable buffer and their tab-separated attributes are found by
+ * scanning the characters, so that neither a list of all lines nor an array
+ * of attributes of each line is ever created.
+ * <p>
+ * A line is terminated by a line feed, a carriage return or a carriage return
+ * followed by a line feed. Each line must consist of a JMBAG, a last name, a
+ * first name and a final grade, separated by tab characters. Any further
+ * attributes are ignored. A line that is not well-formed causes a
+ * {@linkplain MalformedLineError} with the number of the line.
+ *
+ * @author Mario Bobic
+ */
+public class StudentTableReader {
+
+    /** Size of the buffer of read characters. */
+    private static final int BUFFER_SIZE = 8192;
+    /** Separator of student record attributes. */
+    private static final char SEPARATOR = '\t';
+
+    /** Stream from which characters are read, or <tt>null</tt>. */
+    private final Reader reader;
+    /** Buffer of read characters. */
+    private final char[] buffer;
+    /** Characters of the current line. */
+    private final StringBuilder line;
+    /** Table to which students are appended. */
+    private final StudentTable table;
+    /** Number of the current line. */
+    private int lineCount;
+    /** True if the previous character was a carriage return. */
+    private boolean skipLineFeed;
+
+    /**
+     * Constructs a new <tt>StudentTableReader</tt> that reads from the
+     * specified character stream. The stream is not closed by this reader.
+     *
+     * @param reader stream from which student data is read
+     */
+    public StudentTableReader(Reader reader) {
+        this(reader, 1);
+    }
+
+    /**
+     * Constructs a new <tt>StudentTableReader</tt> that reads from the
+     * specified character stream, whose first line has the specified number.
+     *
+     * @param reader stream from which student data is read, or <tt>null</tt>
+     *        if characters are passed to {@linkplain #consume(char[], int)}
+     * @param firstLineNumber number of the first line
+     */
+    private StudentTableReader(Reader reader, int firstLineNumber) {
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+        this.line = new StringBuilder();
+        this.table = new StudentTable();
+        this.lineCount = firstLineNumber;
+    }
+
+    /**
+     * Reads all remaining lines of the stream and returns a table with one
+     * student of each line.
+     *
+     * @return a table filled with student data
+     * @throws IOException if an I/O error occurs
+     * @throws MalformedLineError if a malformed line is present
+     */
+    public StudentTable read() throws IOException {
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            consume(buffer, read);
+        }
+        return finish();
+    }
+
+    /**
+     * Decodes the specified UTF-8 encoded bytes and returns a table with one
+     * student of each line. The bytes must not end in the middle of a line
+     * unless they are the last bytes of the file.
+     *
+     * @param bytes UTF-8 encoded student data
+     * @param firstLineNumber number of the first line within the file
+     * @return a table filled with student data
+     * @throws CharacterCodingException if the bytes are not valid UTF-8
+     * @throws MalformedLineError if a malformed line is present
+     */
+    static StudentTable read(ByteBuffer bytes, int firstLineNumber) throws CharacterCodingException {
+        StudentTableReader tableReader = new StudentTableReader(null, firstLineNumber);
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        CharBuffer chars = CharBuffer.wrap(tableReader.buffer);
+
+        while (true) {
+            CoderResult result = decoder.decode(bytes, chars, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            tableReader.consume(tableReader.buffer, chars.position());
+            chars.clear();
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+        while (decoder.flush(chars).isOverflow()) {
+            tableReader.consume(tableReader.buffer, chars.position());
+            chars.clear();
+        }
+        tableReader.consume(tableReader.buffer, chars.position());
+
+        return tableReader.finish();
+    }
+
+    /**
+     * Appends a student for each line that is terminated within the specified
+     * characters. Characters of an unterminated line are kept until the line
+     * is terminated.
+     *
+     * @param chars characters of student data
+     * @param length number of characters
+     * @throws MalformedLineError if a malformed line is present
+     */
+    private void consume(char[] chars, int length) {
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c != '\n' && c != '\r') {
+                skipLineFeed = false;
+                continue;
+            }
+
+            if (c == '\n' && skipLineFeed) {
+                // The second character of a \r\n terminator
+                skipLineFeed = false;
+                start = i+1;
+                continue;
+            }
+            line.append(chars, start, i-start);
+            addLine(table, line, lineCount++);
+            line.setLength(0);
+            skipLineFeed = c == '\r';
+            start = i+1;
+        }
+        line.append(chars, start, length-start);
+    }
+
+    /**
+     * Appends a student for the last line if it is not terminated and returns
+     * the filled table.
+     *
+     * @return a table filled with student data
+     * @throws MalformedLineError if the last line is malformed
+     */
+    private StudentTable finish() {
+        if (line.length() != 0) {
+            addLine(table, line, lineCount);
+            line.setLength(0);
+        }
+
+        table.trimToSize();
+        return table;
+    }
+
+    /**
+     * Parses the specified line as student data and appends the student to
+     * the table.
+     *
+     * @param table table to which the student is appended
+     * @param line line that represents student data
+     * @param lineNumber number of the line, used for reporting errors
+     * @throws MalformedLineError if the line is malformed
+     */
+    public static void addLine(StudentTable table, CharSequence line, int lineNumber) {
+        int lastNameStart = indexOf(line, SEPARATOR, 0) + 1;
+        int firstNameStart = lastNameStart == 0 ? 0 : indexOf(line, SEPARATOR, lastNameStart) + 1;
+        int gradeStart = firstNameStart == 0 ? 0 : indexOf(line, SEPARATOR, firstNameStart) + 1;
+        if (gradeStart == 0) {
+            throw malformedLine(line, lineNumber);
+        }
+        int gradeEnd = indexOf(line, SEPARATOR, gradeStart);
+        if (gradeEnd == -1) {
+            gradeEnd = line.length();
+        }
+
+        try {
+            String jmbag = line.subSequence(0, lastNameStart-1).toString();
+            String lastName = line.subSequence(lastNameStart, firstNameStart-1).toString();
+            String firstName = line.subSequence(firstNameStart, gradeStart-1).toString();
+            int finalGrade = parseGrade(line, gradeStart, gradeEnd);
+            table.add(jmbag, lastName, firstName, finalGrade);
+        } catch (IllegalArgumentException e) {
+            throw malformedLine(line, lineNumber);
+        }
+    }
+
+    /**
+     * Returns the index of the first occurrence of the specified character in
+     * the sequence, starting at the specified index, or <tt>-1</tt> if there
+     * is no such occurrence.
+     *
+     * @param s a character sequence
+     * @param c character to be searched for
+     * @param from index from which the search starts
+     * @return the index of the first occurrence, or <tt>-1</tt>
+     */
+    private static int indexOf(CharSequence s, char c, int from) {
+        for (int i = from, n = s.length(); i < n; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the characters of the sequence from <tt>start</tt> (inclusive)
+     * to <tt>end</tt> (exclusive) as a signed decimal integer, the same way
+     * as {@linkplain Integer#parseInt(String)} does.
+     *
+     * @param s a character sequence
+     * @param start index of the first character of the integer
+     * @param end index after the last character of the integer
+     * @return the parsed integer
+     * @throws NumberFormatException if the characters do not form an integer
+     */
+    private static int parseGrade(CharSequence s, int start, int end) {
+        boolean negative = false;
+        int i = start;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        if (i == end) {
+            throw new NumberFormatException("Not a number: " + s.subSequence(start, end));
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = Character.digit(s.charAt(i), 10);
+            if (digit == -1) {
+                throw new NumberFormatException("Not a number: " + s.subSequence(start, end));
+            }
+            value = value*10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("Out of range: " + s.subSequence(start, end));
+            }
+        }
+
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Out of range: " + s.subSequence(start, end));
+        }
+        return (int) value;
+    }
+
+    /**
+     * Returns a {@linkplain MalformedLineError} for the specified line.
+     *
+     * @param line the malformed line
+     * @param lineNumber number of the line
+     * @return an error that reports the malformed line
+     */
+    private static MalformedLineError malformedLine(CharSequence line, int lineNumber) {
+        return new MalformedLineError("Malformed line " + lineNumber + ": " + line);
+    }
+
+}
@@ -0,0 +1,79 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the students of a {@linkplain StudentTable} to a UTF-8 encoded
+ * database file, one student per line, in the format read by
+ * {@linkplain StudentTableReader}. Deleted rows are not written.
+ * <p>
+ * The file is first written to a temporary file, which then replaces the
+ * database file, so that a partially written database file is never read.
+ *
+ * @author Mario Bobic
+ */
+public class StudentTableWriter {
+
+    /** Separator of student record attributes. */
+    private static final char SEPARATOR = '\t';
+    /** Terminator of each line. */
+    private static final char LINE_TERMINATOR = '\n';
+    /** Size of the buffer of written characters. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Disable instantiation.
+     */
+    private StudentTableWriter() {
+    }
+
+    /**
+     * Writes all rows of the specified table that are not deleted to the
+     * specified database file, replacing its contents.
+     *
+     * @param table table of students
+     * @param file path of the database file
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(StudentTable table, Path file) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer writer = new BufferedWriter(
+                    Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1), BUFFER_SIZE);
+            for (int i = 0, n = table.size(); i < n; i++) {
+                if (table.isDeleted(i)) {
+                    continue;
+                }
+                writer.write(table.getJmbag(i));
+                writer.write(SEPARATOR);
+                writer.write(table.getLastName(i));
+                writer.write(SEPARATOR);
+                writer.write(table.getFirstName(i));
+                writer.write(SEPARATOR);
+                writer.write(Integer.toString(table.getFinalGrade(i)));
+                writer.write(LINE_TERMINATOR);
+            }
+            writer.flush();
+            channel.force(true);
+        }
+
+        try {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+}
@@ -0,0 +1,695 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
+
+/**
+ * An append-only log of changes made to the students of a database file,
+ * written before the changes are considered durable. The log is stored next
+ * to the database file, under the same name with a <tt>.wal</tt> extension
+ * appended, and is created by the first change that is synchronized.
+ * <p>
+ * All numbers are stored in little-endian byte order. The log consists of a
+ * header of 8 bytes, which records a magic number and the version of the
+ * format, followed by entries. Each entry consists of the length of its
+ * payload, the CRC-32 checksum of its payload and the payload itself: the
+ * {@linkplain Operation} as a <tt>byte</tt> value, the JMBAG as a
+ * length-prefixed UTF-8 string and, unless the operation is a deletion, the
+ * last name and the first name as length-prefixed UTF-8 strings and the final
+ * grade as an <tt>int</tt> value.
+ * <p>
+ * Entries are first appended to a buffer in memory by
+ * {@linkplain #append(LogEntry)}, which returns the sequence number of the
+ * entry. An entry is durable once {@linkplain #sync(long)} with its sequence
+ * number returns. Synchronization is done by group commit: the first thread
+ * that requests it writes all buffered entries, including entries of other
+ * threads, and forces them to the storage device, while threads that request
+ * it in the meantime wait for the next write instead of forcing the device
+ * each. A failed write makes all following synchronizations fail, since the
+ * log may end with a partially written entry.
+ * <p>
+ * When the log is replayed, its entries are read in order up to the first
+ * entry that was not completely written or whose checksum does not match,
+ * and the log is truncated to the entries that were read. Entries whose
+ * changes were merged into the database file are removed from the start of
+ * the log by {@linkplain #truncate(long)}.
+ *
+ * @author Mario Bobic
+ */
+public class WriteAheadLog implements Closeable {
+
+    /** Extension appended to the name of the database file. */
+    private static final String EXTENSION = ".wal";
+
+    /** Magic number that identifies a log. */
+    private static final int MAGIC = 0x5344424C;
+    /** Version of the log format. */
+    private static final int VERSION = 1;
+    /** Size of the header, in bytes. */
+    private static final int HEADER_SIZE = 8;
+    /** Size of the length and the checksum of an entry, in bytes. */
+    private static final int ENTRY_HEADER_SIZE = 8;
+    /** Initial size of the buffers of appended entries, in bytes. */
+    private static final int BUFFER_SIZE = 1 << 12;
+
+    /** Path of the log. */
+    private final Path logFile;
+    /** Lock that guards the state of this log. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Condition signalled when a synchronization is finished. */
+    private final Condition synced = lock.newCondition();
+
+    /** Channel of the log, or <tt>null</tt> if it is not opened yet. */
+    private FileChannel channel;
+    /** Size of the valid part of the log file when it is opened, in bytes. */
+    private long validSize;
+    /** True if the log was replayed. */
+    private boolean replayed;
+    /** True if the log was closed. */
+    private boolean closed;
+    /** Entries that are appended, but not yet written. */
+    private ByteBuffer pending;
+    /** Buffer that is written by the synchronizing thread. */
+    private ByteBuffer writing;
+    /** Sequence number of the last appended entry. */
+    private long appendedSequence;
+    /** Sequence number of the last durable entry. */
+    private long syncedSequence;
+    /** Sequence number of the last entry removed from the log. */
+    private long truncatedSequence;
+    /** True if a thread is writing entries. */
+    private boolean syncing;
+    /** Failure of a write, or <tt>null</tt>. */
+    private IOException failure;
+
+    /**
+     * Constructs a new <tt>WriteAheadLog</tt> for the specified database file.
+     * The log must be replayed before entries are appended.
+     *
+     * @param databaseFile path of the database file
+     */
+    public WriteAheadLog(Path databaseFile) {
+        this.logFile = databaseFile.resolveSibling(databaseFile.getFileName() + EXTENSION);
+        this.pending = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.writing = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the sequence number of the last appended entry. Entries that
+     * were replayed are numbered from <tt>1</tt>, in the order of the log.
+     *
+     * @return the sequence number of the last appended entry
+     */
+    public long getAppendedSequence() {
+        lock.lock();
+        try {
+            return appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the path of the log.
+     *
+     * @return the path of the log
+     */
+    public Path getPath() {
+        return logFile;
+    }
+
+    /**
+     * Passes all entries of the log to the specified consumer, in the order
+     * in which they were appended. The log is truncated after the last entry
+     * that was completely written.
+     *
+     * @param consumer consumer of the entries
+     * @return the number of replayed entries
+     * @throws IllegalStateException if the log was already replayed
+     * @throws IOException if an I/O error occurs or the file is not a log
+     */
+    public int replay(Consumer<LogEntry> consumer) throws IOException {
+        lock.lock();
+        try {
+            if (replayed) {
+                throw new IllegalStateException("Log is already replayed.");
+            }
+            if (!Files.exists(logFile)) {
+                replayed = true;
+                return 0;
+            }
+
+            try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Log is too large: " + logFile);
+                }
+                ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) == -1) {
+                        throw new IOException("Log was truncated while it was read: " + logFile);
+                    }
+                }
+                buffer.flip();
+
+                int count = 0;
+                if (buffer.remaining() >= HEADER_SIZE) {
+                    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                        throw new IOException("Not a log: " + logFile);
+                    }
+                    CRC32 crc = new CRC32();
+                    LogEntry entry;
+                    while ((entry = readEntry(buffer, crc)) != null) {
+                        consumer.accept(entry);
+                        count++;
+                    }
+                }
+
+                // A log with an incomplete header is written again from the start
+                validSize = buffer.position();
+                if (validSize < size) {
+                    channel.truncate(validSize);
+                    channel.force(true);
+                }
+                appendedSequence = syncedSequence = count;
+                replayed = true;
+                return count;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the next entry from the specified buffer, or returns
+     * <tt>null</tt> if the buffer has no complete entry with a matching
+     * checksum. The buffer is positioned after the read entry.
+     *
+     * @param buffer buffer positioned at an entry
+     * @param crc checksum used for verifying the entry
+     * @return the read entry, or <tt>null</tt>
+     * @throws IOException if a complete entry can not be decoded
+     */
+    private LogEntry readEntry(ByteBuffer buffer, CRC32 crc) throws IOException {
+        int start = buffer.position();
+        if (buffer.remaining() < ENTRY_HEADER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            buffer.position(start);
+            return null;
+        }
+
+        ByteBuffer payload = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        payload.limit(length);
+        crc.reset();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            buffer.position(start);
+            return null;
+        }
+        buffer.position(buffer.position() + length);
+
+        try {
+            Operation operation = Operation.valueOf(payload.get());
+            String jmbag = readString(payload);
+            if (operation == Operation.DELETE) {
+                return new LogEntry(jmbag);
+            }
+            String lastName = readString(payload);
+            String firstName = readString(payload);
+            return new LogEntry(operation, new StudentRecord(jmbag, lastName, firstName, payload.getInt()));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Invalid entry at byte " + start + " of " + logFile, e);
+        }
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string from the specified buffer.
+     *
+     * @param buffer buffer positioned at the string
+     * @return the string
+     */
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends the specified entry to the buffer of entries that are not yet
+     * written and returns the sequence number of the entry. The entry is not
+     * durable until {@linkplain #sync(long)} is called with the sequence
+     * number.
+     *
+     * @param entry entry to be appended
+     * @return the sequence number of the entry
+     * @throws IllegalArgumentException if the entry is <tt>null</tt>
+     * @throws IllegalStateException if the log is not replayed or is closed
+     */
+    public long append(LogEntry entry) {
+        if (entry == null) {
+            throw new IllegalArgumentException("Entry must not be null.");
+        }
+        byte[] bytes = encode(entry);
+
+        lock.lock();
+        try {
+            if (!replayed || closed) {
+                throw new IllegalStateException("Log is not replayed or is closed.");
+            }
+            if (pending.remaining() < bytes.length) {
+                int capacity = Math.max(pending.capacity() << 1, pending.position() + bytes.length);
+                ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+                pending.flip();
+                pending = grown.put(pending);
+            }
+            pending.put(bytes);
+            return ++appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Encodes the specified entry, together with its length and checksum.
+     *
+     * @param entry entry to be encoded
+     * @return bytes of the entry
+     */
+    private static byte[] encode(LogEntry entry) {
+        byte[] jmbag = entry.getJmbag().getBytes(StandardCharsets.UTF_8);
+        byte[] lastName = null;
+        byte[] firstName = null;
+        int length = 1 + Integer.BYTES + jmbag.length;
+        if (entry.getOperation() != Operation.DELETE) {
+            lastName = entry.getRecord().getLastName().getBytes(StandardCharsets.UTF_8);
+            firstName = entry.getRecord().getFirstName().getBytes(StandardCharsets.UTF_8);
+            length += 3*Integer.BYTES + lastName.length + firstName.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_HEADER_SIZE + length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(length).putInt(0);
+        buffer.put((byte) entry.getOperation().ordinal());
+        buffer.putInt(jmbag.length).put(jmbag);
+        if (entry.getOperation() != Operation.DELETE) {
+            buffer.putInt(lastName.length).put(lastName);
+            buffer.putInt(firstName.length).put(firstName);
+            buffer.putInt(entry.getRecord().getFinalGrade());
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), ENTRY_HEADER_SIZE, length);
+        buffer.putInt(Integer.BYTES, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Makes all entries up to the entry with the specified sequence number
+     * durable. If no other thread is writing entries, the calling thread
+     * writes all appended entries and forces them to the storage device.
+     * Otherwise, the calling thread waits for the writing thread and writes
+     * the entries appended in the meantime if they are still not durable.
+     *
+     * @param sequence sequence number of an appended entry
+     * @throws IllegalArgumentException if no entry with the sequence number
+     *         was appended
+     * @throws InterruptedIOException if the thread is interrupted while
+     *         waiting
+     * @throws IOException if an I/O error occurs now or occurred before
+     */
+    public void sync(long sequence) throws IOException {
+        lock.lock();
+        try {
+            if (sequence > appendedSequence) {
+                throw new IllegalArgumentException("Invalid sequence number: " + sequence);
+            }
+            while (syncedSequence < sequence) {
+                if (failure != null) {
+                    throw new IOException("Log failed: " + logFile, failure);
+                }
+                if (syncing) {
+                    try {
+                        synced.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for the log.");
+                    }
+                    continue;
+                }
+
+                ByteBuffer batch = pending;
+                pending = writing;
+                writing = batch;
+                long batchSequence = appendedSequence;
+                syncing = true;
+
+                IOException error = null;
+                lock.unlock();
+                try {
+                    batch.flip();
+                    write(batch);
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                    batch.clear();
+                    syncing = false;
+                    if (error != null) {
+                        failure = error;
+                    } else {
+                        syncedSequence = batchSequence;
+                    }
+                    synced.signalAll();
+                }
+
+                if (error != null) {
+                    throw error;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the specified buffer to the end of the log and forces it to the
+     * storage device, creating the log if it does not exist. Called only by
+     * the synchronizing thread.
+     *
+     * @param buffer buffer of entries
+     * @throws IOException if an I/O error occurs
+     */
+    private void write(ByteBuffer buffer) throws IOException {
+        boolean created = false;
+        if (channel == null) {
+            channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.truncate(validSize);
+            channel.position(validSize);
+            if (validSize == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                created = true;
+            }
+        }
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(created);
+    }
+
+    /**
+     * Removes all entries up to the entry with the specified sequence number
+     * from the start of the log, after their changes were merged into the
+     * database file. The remaining entries are copied to a temporary file,
+     * which then replaces the log. Entries may be appended meanwhile, but are
+     * not written until the log is replaced.
+     *
+     * @param sequence sequence number of the last entry to be removed
+     * @throws IllegalArgumentException if no entry with the sequence number
+     *         was appended
+     * @throws IllegalStateException if the log is closed
+     * @throws InterruptedIOException if the thread is interrupted while
+     *         waiting
+     * @throws IOException if an I/O error occurs now or occurred before
+     */
+    public void truncate(long sequence) throws IOException {
+        lock.lock();
+        try {
+            if (sequence > appendedSequence) {
+                throw new IllegalArgumentException("Invalid sequence number: " + sequence);
+            }
+        } finally {
+            lock.unlock();
+        }
+        sync(sequence);
+
+        long skipped;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Log is closed.");
+            }
+            while (syncing) {
+                try {
+                    synced.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the log.");
+                }
+            }
+            if (failure != null) {
+                throw new IOException("Log failed: " + logFile, failure);
+            }
+            if (sequence <= truncatedSequence) {
+                return;
+            }
+            // Synchronizing threads wait until the log is replaced
+            skipped = sequence - truncatedSequence;
+            syncing = true;
+        } finally {
+            lock.unlock();
+        }
+
+        boolean replaced = false;
+        try {
+            rewrite(skipped);
+            replaced = true;
+        } finally {
+            lock.lock();
+            syncing = false;
+            if (replaced) {
+                truncatedSequence = sequence;
+            }
+            synced.signalAll();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies all entries except the specified number of first entries to a
+     * temporary file, which then replaces the log. Called only by the thread
+     * that owns the log file.
+     *
+     * @param skipped number of entries that are not copied
+     * @throws IOException if an I/O error occurs
+     */
+    private void rewrite(long skipped) throws IOException {
+        Path tempFile = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+        long size;
+        try (FileChannel source = FileChannel.open(logFile, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            long position = HEADER_SIZE;
+            for (long i = 0; i < skipped; i++) {
+                buffer.clear().limit(ENTRY_HEADER_SIZE);
+                while (buffer.hasRemaining()) {
+                    if (source.read(buffer, position + buffer.position()) == -1) {
+                        throw new IOException("Log is shorter than expected: " + logFile);
+                    }
+                }
+                position += ENTRY_HEADER_SIZE + buffer.getInt(0);
+            }
+
+            buffer.clear();
+            buffer.putInt(MAGIC).putInt(VERSION).flip();
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            long end = source.size();
+            for (long p = position; p < end; ) {
+                p += source.transferTo(p, end - p, target);
+            }
+            target.force(true);
+            size = HEADER_SIZE + end - position;
+        }
+
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        try {
+            Files.move(tempFile, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, logFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // The log is opened again by the next write
+        validSize = size;
+    }
+
+    /**
+     * Makes all appended entries durable and closes the log. Entries can not
+     * be appended to a closed log.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        long sequence;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            sequence = appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            sync(sequence);
+        } finally {
+            lock.lock();
+            try {
+                while (syncing) {
+                    synced.awaitUninterruptibly();
+                }
+                if (channel != null) {
+                    channel.close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Operation recorded by an entry of the log.
+     *
+     * @author Mario Bobic
+     */
+    public enum Operation {
+        /** Insertion of a new student. */
+        INSERT,
+        /** Update of an existing student. */
+        UPDATE,
+        /** Deletion of an existing student. */
+        DELETE;
+
+        /**
+         * Returns the operation with the specified ordinal number.
+         *
+         * @param ordinal ordinal number of an operation
+         * @return the operation with the ordinal number
+         * @throws IllegalArgumentException if there is no such operation
+         */
+        private static Operation valueOf(byte ordinal) {
+            Operation[] operations = values();
+            if (ordinal < 0 || ordinal >= operations.length) {
+                throw new IllegalArgumentException("Invalid operation: " + ordinal);
+            }
+            return operations[ordinal];
+        }
+    }
+
+    /**
+     * An entry of the log: an operation and the student it was made on.
+     *
+     * @author Mario Bobic
+     */
+    public static class LogEntry {
+
+        /** Operation recorded by this entry. */
+        private final Operation operation;
+        /** Student's JMBAG. */
+        private final String jmbag;
+        /** Inserted or updated student, or <tt>null</tt> for a deletion. */
+        private final StudentRecord record;
+
+        /**
+         * Constructs a new entry that records an insertion or an update of
+         * the specified student.
+         *
+         * @param operation {@linkplain Operation#INSERT} or
+         *        {@linkplain Operation#UPDATE}
+         * @param record inserted or updated student
+         * @throws IllegalArgumentException if the operation is not an
+         *         insertion or an update or the record is <tt>null</tt>
+         */
+        public LogEntry(Operation operation, StudentRecord record) {
+            if (operation != Operation.INSERT && operation != Operation.UPDATE) {
+                throw new IllegalArgumentException("Operation must be an insertion or an update.");
+            }
+            if (record == null) {
+                throw new IllegalArgumentException("Record must not be null.");
+            }
+            this.operation = operation;
+            this.jmbag = record.getJmbag();
+            this.record = record;
+        }
+
+        /**
+         * Constructs a new entry that records a deletion of the student with
+         * the specified JMBAG.
+         *
+         * @param jmbag JMBAG of the deleted student
+         * @throws IllegalArgumentException if the JMBAG is <tt>null</tt>
+         */
+        public LogEntry(String jmbag) {
+            if (jmbag == null) {
+                throw new IllegalArgumentException("JMBAG must not be null.");
+            }
+            this.operation = Operation.DELETE;
+            this.jmbag = jmbag;
+            this.record = null;
+        }
+
+        /**
+         * Returns the operation recorded by this entry.
+         *
+         * @return the operation recorded by this entry
+         */
+        public Operation getOperation() {
+            return operation;
+        }
+
+        /**
+         * Returns the JMBAG of the student of this entry.
+         *
+         * @return the JMBAG of the student
+         */
+        public String getJmbag() {
+            return jmbag;
+        }
+
+        /**
+         * Returns the inserted or updated student, or <tt>null</tt> if this
+         * entry records a deletion.
+         *
+         * @return the inserted or updated student, or <tt>null</tt>
+         */
+        public StudentRecord getRecord() {
+            return record;
+        }
+    }
+
+}
@@ -7,11 +7,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
 
+import hr.fer.zemris.java.tecaj.hw5.db.QueryPlan.AccessPath;
+import hr.fer.zemris.java.tecaj.hw5.db.filters.QueryFilter;
+
 @SuppressWarnings("javadoc")
 public class DatabaseTests {
 
@@ -234,6 +242,341 @@ public class DatabaseTests {
         assertEquals(expected, actual);
     }
 
+    /* ------------------------------ JMBAG index tests ------------------------------ */
+
+    @Test
+    public void testNumericJmbagIndex() {
+        List<String> lines = new ArrayList<>();
+        lines.add("0000000001\tAkšamović\tMarin\t2");
+        lines.add("0000000002\tBakamović\tPetra\t3");
+        StudentDatabase database = new StudentDatabase(lines);
+
+        assertEquals("Marin", database.forJMBAG("0000000001").getFirstName());
+        assertEquals("Petra", database.forJMBAG("0000000002").getFirstName());
+        assertEquals(null, database.forJMBAG("1"));
+        assertEquals(null, database.forJMBAG("000000000x"));
+        assertEquals(null, database.forJMBAG("0000000003"));
+        assertEquals(null, database.forJMBAG(null));
+    }
+
+    @Test
+    public void testStringJmbagIndex() {
+        List<String> lines = new ArrayList<>();
+        lines.add("0000000001\tAkšamović\tMarin\t2");
+        lines.add("1\tBakamović\tPetra\t3");
+        lines.add("A000000003\tBosnić\tAndrea\t4");
+        StudentDatabase database = new StudentDatabase(lines);
+
+        assertEquals("Marin", database.forJMBAG("0000000001").getFirstName());
+        assertEquals("Petra", database.forJMBAG("1").getFirstName());
+        assertEquals("Andrea", database.forJMBAG("A000000003").getFirstName());
+
+        database = new StudentDatabase(lines.subList(0, 1), false);
+        assertEquals("Marin", database.forJMBAG("0000000001").getFirstName());
+        assertEquals(null, database.forJMBAG("1"));
+    }
+
+    @Test
+    public void testOpenWithSnapshot() throws IOException {
+        Path dir = Files.createTempDirectory("database");
+        Path file = dir.resolve("database.txt");
+        Path snapshotFile = dir.resolve("database.txt.snap");
+        try {
+            Files.write(file, Arrays.asList(
+                    "0000000001\tAkšamović\tMarin\t2",
+                    "0000000002\tBakamović\tPetra\t3"), StandardCharsets.UTF_8);
+
+            StudentDatabase database = StudentDatabase.open(file);
+            assertEquals(true, Files.exists(snapshotFile));
+            assertEquals("Petra", database.forJMBAG("0000000002").getFirstName());
+
+            // The second open reads the snapshot written by the first one
+            database = StudentDatabase.open(file);
+            assertEquals("Marin", database.forJMBAG("0000000001").getFirstName());
+            assertEquals(null, database.forJMBAG("0000000003"));
+            assertEquals(1, database.filter(new QueryFilter("lastName LIKE \"B*\"")).size());
+
+            // A snapshot with a damaged JMBAG index is ignored
+            byte[] bytes = Files.readAllBytes(snapshotFile);
+            Arrays.fill(bytes, bytes.length - 24, bytes.length, (byte) 0x7F);
+            Files.write(snapshotFile, bytes);
+            database = StudentDatabase.open(file);
+            assertEquals("Petra", database.forJMBAG("0000000002").getFirstName());
+            assertEquals(null, database.forJMBAG("0000000003"));
+
+            // A changed database file makes the snapshot stale
+            Files.write(file, Arrays.asList(
+                    "0000000003\tBosnić\tAndrea\t4",
+                    "0000000001\tAkšamović\tMarin\t2",
+                    "A000000002\tBakamović\tPetra\t3"), StandardCharsets.UTF_8);
+            database = StudentDatabase.open(file);
+            assertEquals("Andrea", database.forJMBAG("0000000003").getFirstName());
+            assertEquals("Petra", database.forJMBAG("A000000002").getFirstName());
+
+            // A snapshot with string JMBAGs
+            database = StudentDatabase.open(file);
+            assertEquals(3, database.size());
+            assertEquals("Marin", database.forJMBAG("0000000001").getFirstName());
+            assertEquals(Integer.valueOf(3), database.forJMBAG("A000000002").getFinalGrade());
+
+            // A damaged snapshot is ignored
+            bytes = Files.readAllBytes(snapshotFile);
+            Files.write(snapshotFile, Arrays.copyOf(bytes, bytes.length - 5));
+            database = StudentDatabase.open(file);
+            assertEquals("Andrea", database.forJMBAG("0000000003").getFirstName());
+        } finally {
+            Files.deleteIfExists(snapshotFile);
+            Files.delete(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testRepeatedNamesFilteredByCode() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 30; i++) {
+            String lastName = i % 3 == 0 ? "Bosnić" : "Akšamović";
+            String firstName = i % 2 == 0 ? "Petra" : "Marin";
+            lines.add(String.format("%010d\t%s\t%s\t%d", i, lastName, firstName, i % 5 + 1));
+        }
+        StudentDatabase database = new StudentDatabase(lines);
+
+        assertEquals(10, database.filter(new QueryFilter("lastName=\"Bosnić\"")).size());
+        assertEquals(20, database.filter(new QueryFilter("lastName!=\"Bosnić\"")).size());
+        assertEquals(5, database.filter(new QueryFilter("lastName=\"Bosnić\" AND firstName=\"Petra\"")).size());
+        assertEquals(0, database.filter(new QueryFilter("firstName=\"Ivan\"")).size());
+        assertEquals(15, database.filter(new QueryFilter("firstName LIKE \"P*a\"")).size());
+    }
+
+    @Test
+    public void testIndexedQueryMatchesScan() throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get("database.txt"), StandardCharsets.UTF_8);
+        StudentDatabase database = new StudentDatabase(lines);
+        database.insert(new StudentRecord("0000000064", "Ljubić", "Ivan", 3));
+        database.delete("0000000010");
+
+        String[] queries = {
+                "lastName > \"B\" AND lastName < \"D\"",
+                "lastName >= \"Bosnić\" AND lastName <= \"Čima\"",
+                "lastName = \"Markić\"",
+                "lastName > \"Š\"",
+                "lastName < \"Ć\" AND firstName > \"J\"",
+                "lastName LIKE \"L*\"",
+                "lastName LIKE \"Ma*ić\"",
+                "lastName LIKE \"Šimunov\"",
+                "lastName LIKE \"Š*\" AND lastName > \"Šoić\"",
+                "lastName > \"Z\" AND lastName < \"A\"",
+                "lastName LIKE \"*ić\""
+        };
+        for (String query : queries) {
+            QueryFilter filter = new QueryFilter(query);
+            assertEquals(query, database.filter(filter), database.query(filter));
+        }
+    }
+
+    @Test
+    public void testHashIndexedQueryMatchesScan() throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get("database.txt"), StandardCharsets.UTF_8);
+        StudentDatabase database = new StudentDatabase(lines);
+        database.createIndex("firstName");
+        database.createIndex("finalGrade");
+        database.update(new StudentRecord("0000000001", "Akšamović", "Ivan", 5));
+        database.insert(new StudentRecord("0000000064", "Ljubić", "Marin", 3));
+        database.delete("0000000004");
+
+        String[] queries = {
+                "firstName = \"Marin\"",
+                "firstName = \"Ivan\" AND finalGrade = \"5\"",
+                "finalGrade = \"2\" AND lastName > \"K\"",
+                "finalGrade = \"3\" AND lastName = \"Ljubić\"",
+                "finalGrade = \"7\"",
+                "firstName != \"Marin\""
+        };
+        for (String query : queries) {
+            QueryFilter filter = new QueryFilter(query);
+            assertEquals(query, database.filter(filter), database.query(filter));
+        }
+    }
+
+    @Test
+    public void testQueryPlan() throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get("database.txt"), StandardCharsets.UTF_8);
+        StudentDatabase database = new StudentDatabase(lines);
+        database.createIndex("firstName");
+
+        QueryPlan plan = database.explain(new QueryFilter("firstName = \"Marin\" AND jmbag = \"0000000004\""));
+        assertEquals(AccessPath.JMBAG_INDEX, plan.getAccessPath());
+        assertEquals(1, plan.getEstimatedRows());
+        assertEquals("firstName = \"Marin\"", plan.getResidualExpressions().get(0).toString());
+        assertEquals(Arrays.asList(database.forJMBAG("0000000004")),
+                database.query(new QueryFilter("firstName = \"Marin\" AND jmbag = \"0000000004\"")));
+
+        plan = database.explain(new QueryFilter("lastName >= \"B\" AND lastName < \"C\" AND firstName = \"Marin\""));
+        assertEquals(AccessPath.HASH_INDEX, plan.getAccessPath());
+        assertEquals(3, plan.getEstimatedRows());
+        assertEquals(2, plan.getResidualExpressions().size());
+
+        plan = database.explain(new QueryFilter("lastName LIKE \"Bo*\" AND finalGrade > \"3\""));
+        assertEquals(AccessPath.NAME_PREFIX, plan.getAccessPath());
+        assertEquals(2, plan.getEstimatedRows());
+        assertEquals("finalGrade > \"3\"", plan.getResidualExpressions().get(0).toString());
+
+        // An index that finds most records is not cheaper than a scan
+        plan = database.explain(new QueryFilter("lastName > \"B\" AND firstName != \"Marin\""));
+        assertEquals(AccessPath.FULL_SCAN, plan.getAccessPath());
+        assertEquals(database.size(), plan.getEstimatedRows());
+        assertEquals(2, plan.getResidualExpressions().size());
+
+        // The sorted index is kept up to date by changes
+        database.insert(new StudentRecord("0000000064", "Ljubić", "Marin", 3));
+        database.delete("0000000003");
+        plan = database.explain(new QueryFilter("lastName = \"Ljubić\""));
+        assertEquals(AccessPath.NAME_RANGE, plan.getAccessPath());
+        assertEquals(1, plan.getEstimatedRows());
+        assertEquals(1, database.explain(new QueryFilter("lastName LIKE \"Bo*\"")).getEstimatedRows());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidPatternRejectedWithoutRows() {
+        StudentDatabase database = new StudentDatabase(Arrays.asList("0000000001\tAkšamović\tMarin\t2"));
+        // must throw, although the JMBAG index finds no rows
+        database.query(new QueryFilter("jmbag = \"0000000002\" AND lastName LIKE \"A*o*\""));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testCreateIndexOfInvalidField() {
+        // must throw
+        new StudentDatabase(Arrays.asList("0000000001\tAkšamović\tMarin\t2")).createIndex("jmbag");
+    }
+
+    @Test
+    public void testRepeatedQueryIsCached() {
+        String input = "query lastName=\"B*\"\n"
+                     + "query lastName=\"B*\"\n"
+                     + "query lastName=\"B*\"";
+        String expected = getActual("query lastName=\"B*\"");
+        String actual = getActual(input);
+
+        assertEquals(expected, actual);
+        assertEquals(1, StudentDB.getOutputCache().getMissCount());
+        assertEquals(2, StudentDB.getOutputCache().getHitCount());
+
+        // Failed commands are not cached
+        getActual("query lastName=\n" + "query lastName=");
+        assertEquals(2, StudentDB.getOutputCache().getMissCount());
+        assertEquals(0, StudentDB.getOutputCache().size());
+    }
+
+    @Test
+    public void testInsertUpdateDelete() throws IOException {
+        StudentDatabase database = new StudentDatabase(Arrays.asList(
+                "0000000001\tAkšamović\tMarin\t2",
+                "0000000002\tBakamović\tPetra\t3"));
+
+        assertEquals(true, database.insert(new StudentRecord("0000000003", "Bosnić", "Andrea", 4)));
+        assertEquals(false, database.insert(new StudentRecord("0000000001", "Bosnić", "Andrea", 4)));
+        assertEquals(3, database.size());
+        assertEquals("Andrea", database.forJMBAG("0000000003").getFirstName());
+
+        assertEquals(true, database.update(new StudentRecord("0000000001", "Akšamović", "Marin", 5)));
+        assertEquals(false, database.update(new StudentRecord("0000000004", "Bosnić", "Andrea", 4)));
+        assertEquals(Integer.valueOf(5), database.forJMBAG("0000000001").getFinalGrade());
+
+        assertEquals(true, database.delete("0000000002"));
+        assertEquals(false, database.delete("0000000002"));
+        assertEquals(2, database.size());
+        assertEquals(null, database.forJMBAG("0000000002"));
+        assertEquals(1, database.filter(new QueryFilter("lastName LIKE \"B*\"")).size());
+
+        // A JMBAG that is not numeric changes the JMBAG index
+        assertEquals(true, database.insert(new StudentRecord("A000000002", "Bakamović", "Petra", 3)));
+        assertEquals("Petra", database.forJMBAG("A000000002").getFirstName());
+        assertEquals("Marin", database.forJMBAG("0000000001").getFirstName());
+        assertEquals(null, database.forJMBAG("0000000002"));
+        assertEquals(4, database.getModificationCount());
+    }
+
+    @Test
+    public void testChangesReplayedAfterReopen() throws IOException {
+        Path dir = Files.createTempDirectory("database");
+        Path file = dir.resolve("database.txt");
+        Path snapshotFile = dir.resolve("database.txt.snap");
+        Path logFile = dir.resolve("database.txt.wal");
+        try {
+            Files.write(file, Arrays.asList(
+                    "0000000001\tAkšamović\tMarin\t2",
+                    "0000000002\tBakamović\tPetra\t3"), StandardCharsets.UTF_8);
+
+            try (StudentDatabase database = StudentDatabase.open(file)) {
+                database.insert(new StudentRecord("0000000003", "Bosnić", "Andrea", 4));
+                database.update(new StudentRecord("0000000001", "Akšamović", "Marin", 5));
+                database.delete("0000000002");
+            }
+            assertEquals(true, Files.exists(logFile));
+
+            // The changes are replayed on top of the snapshot of the unchanged file
+            try (StudentDatabase database = StudentDatabase.open(file)) {
+                assertEquals(2, database.size());
+                assertEquals(Integer.valueOf(5), database.forJMBAG("0000000001").getFinalGrade());
+                assertEquals(null, database.forJMBAG("0000000002"));
+                assertEquals("Andrea", database.forJMBAG("0000000003").getFirstName());
+                assertEquals(true, database.insert(new StudentRecord("0000000002", "Bakamović", "Petra", 1)));
+            }
+
+            try (StudentDatabase database = StudentDatabase.open(file)) {
+                assertEquals(3, database.size());
+                assertEquals(Integer.valueOf(1), database.forJMBAG("0000000002").getFinalGrade());
+            }
+        } finally {
+            Files.deleteIfExists(logFile);
+            Files.deleteIfExists(snapshotFile);
+            Files.delete(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        Path dir = Files.createTempDirectory("database");
+        Path file = dir.resolve("database.txt");
+        Path snapshotFile = dir.resolve("database.txt.snap");
+        Path logFile = dir.resolve("database.txt.wal");
+        try {
+            Files.write(file, Arrays.asList(
+                    "0000000001\tAkšamović\tMarin\t2",
+                    "0000000002\tBakamović\tPetra\t3"), StandardCharsets.UTF_8);
+
+            try (StudentDatabase database = StudentDatabase.open(file)) {
+                assertEquals(false, database.compact());
+                database.insert(new StudentRecord("0000000003", "Bosnić", "Andrea", 4));
+                database.update(new StudentRecord("0000000001", "Akšamović", "Marin", 5));
+                database.delete("0000000002");
+
+                assertEquals(true, database.compact());
+                assertEquals(false, database.compact());
+                assertEquals(Arrays.asList(
+                        "0000000001\tAkšamović\tMarin\t5",
+                        "0000000003\tBosnić\tAndrea\t4"), Files.readAllLines(file, StandardCharsets.UTF_8));
+                assertEquals(8, Files.size(logFile));
+
+                // Records stay readable and changeable after the compaction
+                assertEquals("Andrea", database.forJMBAG("0000000003").getFirstName());
+                database.delete("0000000003");
+            }
+
+            try (StudentDatabase database = StudentDatabase.open(file)) {
+                assertEquals(1, database.size());
+                assertEquals(Integer.valueOf(5), database.forJMBAG("0000000001").getFinalGrade());
+                assertEquals(null, database.forJMBAG("0000000003"));
+            }
+        } finally {
+            Files.deleteIfExists(logFile);
+            Files.deleteIfExists(snapshotFile);
+            Files.delete(file);
+            Files.delete(dir);
+        }
+    }
+
 
     /**
      * Returns a trimmed output of the main program {@linkplain StudentDB} for
@@ -0,0 +1,80 @@
+package hr.fer.zemris.java.tecaj.hw5.db.filters;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.tecaj.hw5.db.ConditionalExpression;
+import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.StudentTable;
+
+@SuppressWarnings("javadoc")
+public class QueryFilterTests {
+
+    @Test
+    public void testOrderedByOperatorCost() {
+        QueryFilter filter = new QueryFilter(
+                "lastName LIKE \"B*\" AND finalGrade > \"1\" AND jmbag = \"0000000003\" AND firstName != \"Ivo\"");
+
+        assertEquals("[jmbag = \"0000000003\", finalGrade > \"1\", firstName != \"Ivo\", lastName LIKE \"B*\"]",
+                filter.getEvaluationOrder().toString());
+        assertEquals("lastName LIKE \"B*\"", filter.getExpressions().get(0).toString());
+    }
+
+    @Test
+    public void testReorderedByObservedPassRate() {
+        QueryFilter filter = new QueryFilter("finalGrade > \"1\" AND finalGrade < \"3\"");
+        StudentRecord record = new StudentRecord("0000000003", "Bosnić", "Andrea", 4);
+
+        for (int i = 0; i < 1024; i++) {
+            assertEquals(false, filter.accepts(record));
+        }
+        assertEquals("[finalGrade < \"3\", finalGrade > \"1\"]", filter.getEvaluationOrder().toString());
+        assertEquals(true, filter.accepts(new StudentRecord("0000000001", "Akšamović", "Marin", 2)));
+    }
+
+    @Test
+    public void testCompiledMatchesOperators() throws IOException {
+        StudentTable table = new StudentTable();
+        for (String line : Files.readAllLines(Paths.get("database.txt"), StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t");
+            table.add(parts[0], parts[1], parts[2], Integer.parseInt(parts[3]));
+        }
+
+        String[] queries = {
+                "jmbag = \"0000000004\"",
+                "jmbag >= \"0000000030\" AND jmbag < \"0000000040\"",
+                "jmbag != \"000000004\"",
+                "lastName > \"K\" AND lastName <= \"Lj\"",
+                "lastName LIKE \"B*ć\" AND firstName != \"Marin\"",
+                "firstName LIKE \"Ivan\"",
+                "finalGrade >= \"4\"",
+                "finalGrade = \"05\""
+        };
+        for (String query : queries) {
+            QueryFilter filter = new QueryFilter(query);
+            for (int row = 0; row < table.size(); row++) {
+                StudentRecord record = table.getRecord(row);
+                boolean expected = true;
+                for (ConditionalExpression expression : filter.getExpressions()) {
+                    expected &= expression.getComparisonOperator().satisfied(
+                            expression.getFieldGetter().get(record), expression.getStringLiteral());
+                }
+                assertEquals(query, expected, filter.accepts(table, row));
+                assertEquals(query, expected, filter.accepts(record));
+            }
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPatternWithTwoAsterisks() {
+        // must throw
+        new QueryFilter("jmbag = \"0000000003\" AND lastName LIKE \"*a*\"");
+    }
+
+}
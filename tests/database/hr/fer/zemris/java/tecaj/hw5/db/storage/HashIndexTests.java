@@ -0,0 +1,60 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.GetterFinalGrade;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.GetterFirstName;
+
+@SuppressWarnings("javadoc")
+public class HashIndexTests {
+
+    private static StudentTable newTable() {
+        StudentTable table = new StudentTable();
+        table.add("0000000001", "Akšamović", "Marin", 2);
+        table.add("0000000002", "Bakamović", "Petra", 3);
+        table.add("0000000003", "Božić", "Marin", 5);
+        table.add("0000000004", "Brezović", "Ivo", 2);
+        return table;
+    }
+
+    @Test
+    public void testGet() {
+        HashIndex index = new HashIndex(newTable(), new GetterFirstName());
+
+        assertEquals(3, index.valueCount());
+        assertArrayEquals(new int[] {0, 2}, index.get("Marin"));
+        assertArrayEquals(new int[] {}, index.get("Andrea"));
+        assertEquals(1, index.count("Ivo"));
+    }
+
+    @Test
+    public void testFieldWithoutCodes() {
+        HashIndex index = new HashIndex(newTable(), new GetterFinalGrade());
+
+        assertArrayEquals(new int[] {0, 3}, index.get("2"));
+        assertArrayEquals(new int[] {}, index.get("02"));
+    }
+
+    @Test
+    public void testKeptUpToDate() {
+        StudentTable table = newTable();
+        HashIndex index = new HashIndex(table, new GetterFirstName());
+
+        table.add("0000000005", "Cvrlje", "Marin", 4);
+        index.add(4);
+        index.remove(0);
+        table.update(0, "Akšamović", "Ivo", 2);
+        index.add(0);
+        index.remove(1);
+        table.delete(1);
+
+        assertArrayEquals(new int[] {2, 4}, index.get("Marin"));
+        assertArrayEquals(new int[] {0, 3}, index.get("Ivo"));
+        assertArrayEquals(new int[] {}, index.get("Petra"));
+        assertEquals(2, index.valueCount());
+    }
+
+}
@@ -0,0 +1,90 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.tecaj.hw5.db.MalformedLineError;
+
+@SuppressWarnings("javadoc")
+public class ParallelStudentTableLoaderTests {
+
+    @Test
+    public void testChunksInFileOrder() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= 2000; i++) {
+            String terminator = i % 3 == 0 ? "\r\n" : "\n";
+            sb.append(String.format("%010d\tBožić%d\tŠime\t%d%s", i, i % 7, i % 5 + 1, terminator));
+        }
+        StudentTable table = load(sb.toString(), 1024);
+
+        assertEquals(2000, table.size());
+        assertEquals(true, table.hasNumericJmbags());
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(i+1, table.getNumericJmbag(i));
+            assertEquals("Božić" + (i+1) % 7, table.getLastName(i));
+            assertEquals("Šime", table.getFirstName(i));
+            assertEquals((i+1) % 5 + 1, table.getFinalGrade(i));
+        }
+        assertEquals(8, table.getNames().size());
+    }
+
+    @Test
+    public void testStringJmbagInLaterChunk() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= 500; i++) {
+            sb.append(String.format("%010d\tBosnić\tAndrea\t4\n", i));
+        }
+        sb.append("A000000501\tBosnić\tAndrea\t4");
+        StudentTable table = load(sb.toString(), 256);
+
+        assertEquals(501, table.size());
+        assertEquals(false, table.hasNumericJmbags());
+        assertEquals("0000000042", table.getJmbag(41));
+        assertEquals("A000000501", table.getJmbag(500));
+    }
+
+    @Test
+    public void testGlobalLineNumberOfMalformedLine() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= 2000; i++) {
+            if (i == 1500 || i == 1800) {
+                sb.append("0000001500\tBosnić\n");
+            } else {
+                sb.append(String.format("%010d\tBosnić\tAndrea\t4\r\n", i));
+            }
+        }
+        try {
+            load(sb.toString(), 1024);
+        } catch (MalformedLineError e) {
+            assertEquals("Malformed line 1500: 0000001500\tBosnić", e.getMessage());
+            return;
+        }
+        throw new AssertionError("MalformedLineError expected.");
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        assertEquals(0, load("", 1024).size());
+    }
+
+    private static StudentTable load(String content, int chunkSize) throws IOException {
+        Path file = Files.createTempFile("database", ".txt");
+        try {
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return ParallelStudentTableLoader.load(channel, chunkSize);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.GetterJmbag;
+import hr.fer.zemris.java.tecaj.hw5.db.fieldgetters.GetterLastName;
+
+@SuppressWarnings("javadoc")
+public class SortedNameIndexTests {
+
+    private static StudentTable newTable() {
+        StudentTable table = new StudentTable();
+        table.add("0000000001", "Ljubić", "Marin", 2);
+        table.add("0000000002", "Lučev", "Petra", 3);
+        table.add("0000000003", "Čima", "Andrea", 4);
+        table.add("0000000004", "Cvrlje", "Ivan", 5);
+        table.add("0000000005", "Lučev", "Ivo", 1);
+        table.add("0000000006", "Dean", "Nenad", 2);
+        return table;
+    }
+
+    @Test
+    public void testRangeInCollationOrder() {
+        SortedNameIndex index = new SortedNameIndex(newTable(), new GetterLastName());
+
+        assertEquals(5, index.nameCount());
+        assertArrayEquals(new int[] {2, 3}, index.range("C", true, "D", false));
+        assertArrayEquals(new int[] {2}, index.range("Č", true, "D", false));
+        assertArrayEquals(new int[] {1, 4}, index.range("Lučev", true, "Lučev", true));
+        assertArrayEquals(new int[] {}, index.range("Lučev", false, "Lučev", true));
+        // Croatian collation orders lj after all other names starting with l
+        assertArrayEquals(new int[] {0}, index.range("Lz", false, null, true));
+        assertEquals(3, index.rangeCount(null, true, "Lučev", false));
+    }
+
+    @Test
+    public void testPrefix() {
+        SortedNameIndex index = new SortedNameIndex(newTable(), new GetterLastName());
+
+        assertArrayEquals(new int[] {0, 1, 4}, index.prefix("L"));
+        assertArrayEquals(new int[] {0}, index.prefix("Lj"));
+        assertArrayEquals(new int[] {3}, index.prefix("C"));
+        assertArrayEquals(new int[] {}, index.prefix("c"));
+        assertEquals(3, index.prefixCount("L"));
+    }
+
+    @Test
+    public void testDeletedRowsSkipped() {
+        StudentTable table = newTable();
+        table.delete(1);
+        SortedNameIndex index = new SortedNameIndex(table, new GetterLastName());
+
+        assertEquals(5, index.size());
+        assertArrayEquals(new int[] {4}, index.prefix("Lu"));
+    }
+
+    @Test
+    public void testKeptUpToDate() {
+        StudentTable table = newTable();
+        SortedNameIndex index = new SortedNameIndex(table, new GetterLastName());
+
+        table.add("0000000007", "Ljubičić", "Ana", 3);
+        index.add(6);
+        table.add("0000000008", "Bosnić", "Andrea", 4);
+        index.add(7);
+        index.remove(3);
+        table.update(3, "Lučev", "Ivan", 5);
+        index.add(3);
+        index.remove(5);
+        table.delete(5);
+
+        assertEquals(5, index.nameCount());
+        assertEquals(7, index.size());
+        assertArrayEquals(new int[] {0, 6}, index.prefix("Lj"));
+        assertArrayEquals(new int[] {1, 3, 4}, index.range("Lučev", true, "Lučev", true));
+        assertArrayEquals(new int[] {2, 7}, index.range("B", true, "D", false));
+        assertEquals(0, index.prefixCount("D"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testFieldWithoutCodes() {
+        // must throw
+        new SortedNameIndex(newTable(), new GetterJmbag());
+    }
+
+}
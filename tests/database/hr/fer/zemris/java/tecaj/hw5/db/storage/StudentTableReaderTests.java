@@ -0,0 +1,75 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.tecaj.hw5.db.MalformedLineError;
+
+@SuppressWarnings("javadoc")
+public class StudentTableReaderTests {
+
+    @Test
+    public void testLineTerminators() throws IOException {
+        String input = "0000000001\tAkšamović\tMarin\t2\n"
+                     + "0000000002\tBakamović\tPetra\t3\r\n"
+                     + "0000000003\tBosnić\tAndrea\t4\r"
+                     + "0000000004\tBožić\tMarin\t5\textra";
+        StudentTable table = read(input);
+
+        assertEquals(4, table.size());
+        assertEquals("Petra", table.getFirstName(1));
+        assertEquals("Bosnić", table.getLastName(2));
+        assertEquals(5, table.getFinalGrade(3));
+        assertEquals(true, table.hasNumericJmbags());
+    }
+
+    @Test
+    public void testLinesAcrossBufferBoundary() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= 1000; i++) {
+            sb.append(String.format("%010d\tPrezime%d\tIme\t%d\r\n", i, i, i % 5 + 1));
+        }
+        StudentTable table = read(sb.toString());
+
+        assertEquals(1000, table.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i+1, table.getNumericJmbag(i));
+            assertEquals("Prezime" + (i+1), table.getLastName(i));
+        }
+    }
+
+    @Test
+    public void testMalformedLineNumber() throws IOException {
+        String input = "0000000001\tAkšamović\tMarin\t2\r\n"
+                     + "0000000002\tBakamović\tPetra\t3\r\n"
+                     + "0000000003\tBosnić\tAndrea\t\n";
+        try {
+            read(input);
+        } catch (MalformedLineError e) {
+            assertEquals("Malformed line 3: 0000000003\tBosnić\tAndrea\t", e.getMessage());
+            return;
+        }
+        throw new AssertionError("MalformedLineError expected.");
+    }
+
+    @Test(expected=MalformedLineError.class)
+    public void testEmptyLine() throws IOException {
+        // must throw
+        read("0000000001\tAkšamović\tMarin\t2\n\n");
+    }
+
+    @Test(expected=MalformedLineError.class)
+    public void testInvalidGrade() throws IOException {
+        // must throw
+        read("0000000001\tAkšamović\tMarin\tA\n");
+    }
+
+    private static StudentTable read(String input) throws IOException {
+        return new StudentTableReader(new StringReader(input)).read();
+    }
+
+}
@@ -0,0 +1,82 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
+
+@SuppressWarnings("javadoc")
+public class StudentTableTests {
+
+    @Test
+    public void testNumericColumns() {
+        StudentTable table = new StudentTable(1);
+        for (int i = 1; i <= 100; i++) {
+            table.add(String.format("%010d", i), "Bosnić", i % 2 == 0 ? "Andrea" : "Ivan", i % 5 + 1);
+        }
+        table.trimToSize();
+
+        assertEquals(100, table.size());
+        assertEquals(true, table.hasNumericJmbags());
+        assertEquals(10, table.getJmbagLength());
+        assertEquals(42, table.getNumericJmbag(41));
+        assertEquals("0000000042", table.getJmbag(41));
+        assertEquals(3, table.getNames().size());
+
+        StudentRecord record = table.getRecord(41);
+        assertEquals("0000000042", record.getJmbag());
+        assertEquals("Bosnić", record.getLastName());
+        assertEquals("Andrea", record.getFirstName());
+        assertEquals(Integer.valueOf(3), record.getFinalGrade());
+    }
+
+    @Test
+    public void testStringColumnAfterNonNumericJmbag() {
+        StudentTable table = new StudentTable();
+        table.add("0000000001", "Akšamović", "Marin", 2);
+        table.add("A000000002", "Bakamović", "Petra", 3);
+        table.add("3", "Bosnić", "Andrea", 4);
+
+        assertEquals(false, table.hasNumericJmbags());
+        assertEquals(0, table.getJmbagLength());
+        assertEquals("0000000001", table.getJmbag(0));
+        assertEquals("A000000002", table.getJmbag(1));
+        assertEquals("3", table.getJmbag(2));
+    }
+
+    @Test
+    public void testUpdateAndDelete() {
+        StudentTable table = new StudentTable();
+        table.add("0000000001", "Akšamović", "Marin", 2);
+        table.add("0000000002", "Bakamović", "Petra", 3);
+
+        table.update(0, "Bosnić", "Andrea", 5);
+        assertEquals("0000000001", table.getJmbag(0));
+        assertEquals("Bosnić", table.getLastName(0));
+        assertEquals(5, table.getFinalGrade(0));
+
+        assertEquals(true, table.delete(1));
+        assertEquals(false, table.delete(1));
+        assertEquals(true, table.isDeleted(1));
+        assertEquals(false, table.isDeleted(0));
+        assertEquals(2, table.size());
+        assertEquals(1, table.getDeletedCount());
+        assertEquals("Petra", table.getFirstName(1));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testGradeOutOfRange() {
+        // must throw
+        new StudentTable().add("0000000001", "Akšamović", "Marin", 200);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testInvalidRow() {
+        StudentTable table = new StudentTable();
+        table.add("0000000001", "Akšamović", "Marin", 2);
+        // must throw
+        table.getLastName(1);
+    }
+
+}
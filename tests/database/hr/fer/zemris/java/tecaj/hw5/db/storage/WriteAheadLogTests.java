@@ -0,0 +1,208 @@
+package hr.fer.zemris.java.tecaj.hw5.db.storage;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.tecaj.hw5.db.StudentRecord;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.WriteAheadLog.LogEntry;
+import hr.fer.zemris.java.tecaj.hw5.db.storage.WriteAheadLog.Operation;
+
+@SuppressWarnings("javadoc")
+public class WriteAheadLogTests {
+
+    @Test
+    public void testReplayAppendedEntries() throws IOException {
+        Path dir = Files.createTempDirectory("wal");
+        Path file = dir.resolve("database.txt");
+        WriteAheadLog log = new WriteAheadLog(file);
+        try {
+            assertEquals(0, log.replay(entry -> {}));
+            assertEquals(false, Files.exists(log.getPath()));
+
+            log.append(new LogEntry(Operation.INSERT, new StudentRecord("0000000001", "Akšamović", "Marin", 2)));
+            log.append(new LogEntry(Operation.UPDATE, new StudentRecord("0000000001", "Akšamović", "Marin", 5)));
+            log.sync(log.append(new LogEntry("0000000001")));
+            log.close();
+
+            List<LogEntry> entries = new ArrayList<>();
+            log = new WriteAheadLog(file);
+            assertEquals(3, log.replay(entries::add));
+            assertEquals(Operation.INSERT, entries.get(0).getOperation());
+            assertEquals("Akšamović", entries.get(0).getRecord().getLastName());
+            assertEquals(Integer.valueOf(5), entries.get(1).getRecord().getFinalGrade());
+            assertEquals(Operation.DELETE, entries.get(2).getOperation());
+            assertEquals("0000000001", entries.get(2).getJmbag());
+            assertEquals(null, entries.get(2).getRecord());
+        } finally {
+            log.close();
+            Files.deleteIfExists(log.getPath());
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testTornEntryTruncated() throws IOException {
+        Path dir = Files.createTempDirectory("wal");
+        Path file = dir.resolve("database.txt");
+        WriteAheadLog log = new WriteAheadLog(file);
+        try {
+            log.replay(entry -> {});
+            log.sync(log.append(new LogEntry(Operation.INSERT, new StudentRecord("1", "Bosnić", "Andrea", 4))));
+            long size = Files.size(log.getPath());
+            log.sync(log.append(new LogEntry(Operation.INSERT, new StudentRecord("2", "Bosnić", "Andrea", 4))));
+            log.close();
+
+            // Simulates a crash in the middle of writing the second entry
+            byte[] bytes = Files.readAllBytes(log.getPath());
+            Files.write(log.getPath(), Arrays.copyOf(bytes, bytes.length - 3));
+
+            List<LogEntry> entries = new ArrayList<>();
+            log = new WriteAheadLog(file);
+            assertEquals(1, log.replay(entries::add));
+            assertEquals("1", entries.get(0).getJmbag());
+            assertEquals(size, Files.size(log.getPath()));
+
+            // New entries follow the last complete entry
+            log.sync(log.append(new LogEntry("1")));
+            log.close();
+            entries.clear();
+            log = new WriteAheadLog(file);
+            assertEquals(2, log.replay(entries::add));
+            assertEquals(Operation.DELETE, entries.get(1).getOperation());
+        } finally {
+            log.close();
+            Files.deleteIfExists(log.getPath());
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testConcurrentGroupCommit() throws Exception {
+        Path dir = Files.createTempDirectory("wal");
+        Path file = dir.resolve("database.txt");
+        WriteAheadLog log = new WriteAheadLog(file);
+        try {
+            log.replay(entry -> {});
+            Thread[] threads = new Thread[8];
+            IOException[] failures = new IOException[threads.length];
+            for (int t = 0; t < threads.length; t++) {
+                int id = t;
+                WriteAheadLog shared = log;
+                threads[t] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 50; i++) {
+                            String jmbag = String.format("%02d%03d", id, i);
+                            shared.sync(shared.append(new LogEntry(Operation.INSERT,
+                                    new StudentRecord(jmbag, "Bosnić", "Andrea", i % 5 + 1))));
+                        }
+                    } catch (IOException e) {
+                        failures[id] = e;
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (IOException failure : failures) {
+                assertEquals(null, failure);
+            }
+            log.close();
+
+            List<LogEntry> entries = new ArrayList<>();
+            log = new WriteAheadLog(file);
+            assertEquals(400, log.replay(entries::add));
+
+            // Entries of each thread are replayed in the order of appending
+            int[] next = new int[threads.length];
+            for (LogEntry entry : entries) {
+                int id = Integer.parseInt(entry.getJmbag().substring(0, 2));
+                assertEquals(next[id]++, Integer.parseInt(entry.getJmbag().substring(2)));
+            }
+        } finally {
+            log.close();
+            Files.deleteIfExists(log.getPath());
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testTruncate() throws IOException {
+        Path dir = Files.createTempDirectory("wal");
+        Path file = dir.resolve("database.txt");
+        WriteAheadLog log = new WriteAheadLog(file);
+        try {
+            log.replay(entry -> {});
+            for (int i = 1; i <= 3; i++) {
+                log.append(new LogEntry(Operation.INSERT, new StudentRecord("" + i, "Bosnić", "Andrea", 4)));
+            }
+            log.truncate(2);
+            log.sync(log.append(new LogEntry("3")));
+            log.truncate(2);
+            log.close();
+
+            List<LogEntry> entries = new ArrayList<>();
+            log = new WriteAheadLog(file);
+            assertEquals(2, log.replay(entries::add));
+            assertEquals("3", entries.get(0).getJmbag());
+            assertEquals(Operation.DELETE, entries.get(1).getOperation());
+
+            // Replayed entries are numbered from one
+            assertEquals(2, log.getAppendedSequence());
+            log.truncate(2);
+            assertEquals(8, Files.size(log.getPath()));
+        } finally {
+            log.close();
+            Files.deleteIfExists(log.getPath());
+            Files.delete(dir);
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testTruncateOfUnappendedEntry() throws IOException {
+        Path dir = Files.createTempDirectory("wal");
+        WriteAheadLog log = new WriteAheadLog(dir.resolve("database.txt"));
+        try {
+            log.replay(entry -> {});
+            log.append(new LogEntry("1"));
+            // must throw
+            log.truncate(5);
+        } finally {
+            log.close();
+            Files.deleteIfExists(log.getPath());
+            Files.delete(dir);
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testSyncOfUnappendedEntry() throws IOException {
+        Path dir = Files.createTempDirectory("wal");
+        WriteAheadLog log = new WriteAheadLog(dir.resolve("database.txt"));
+        try {
+            log.replay(entry -> {});
+            log.append(new LogEntry("1"));
+            // must throw
+            log.sync(2);
+        } finally {
+            log.close();
+            Files.deleteIfExists(log.getPath());
+            Files.delete(dir);
+        }
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testAppendBeforeReplay() {
+        // must throw
+        new WriteAheadLog(Paths.get("database.txt")).append(new LogEntry("1"));
+    }
+
+}
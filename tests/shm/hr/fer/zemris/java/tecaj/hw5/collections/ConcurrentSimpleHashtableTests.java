@@ -0,0 +1,203 @@
+package hr.fer.zemris.java.tecaj.hw5.collections;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class ConcurrentSimpleHashtableTests {
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeValueToConstructor() {
+        // must throw
+        new ConcurrentSimpleHashtable<>(-1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testZeroConcurrencyLevel() {
+        // must throw
+        new ConcurrentSimpleHashtable<>(16, 0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPutNull() {
+        // must throw
+        new ConcurrentSimpleHashtable<>().put(null, 5);
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        ConcurrentSimpleHashtable<String, Integer> table = getTable();
+        assertEquals(18, table.size());
+        assertEquals((Integer) 1, table.get("Benković"));
+        assertEquals(null, table.get("Magzan"));
+
+        table.put("Benković", 3);
+        assertEquals((Integer) 3, table.get("Benković"));
+        assertEquals(false, table.putIfAbsent("Benković", 4));
+        assertEquals(true, table.putIfAbsent("Magzan", 4));
+        assertEquals((Integer) 3, table.get("Benković"));
+
+        table.remove("Bobić");
+        table.remove("Magzan");
+        table.remove("Magzan");
+        assertEquals(17, table.size());
+        assertEquals(false, table.containsKey("Bobić"));
+        assertEquals(true, table.containsValue(5));
+        assertEquals(false, table.containsValue(6));
+    }
+
+    @Test
+    public void testResize() {
+        ConcurrentSimpleHashtable<Integer, Integer> table = new ConcurrentSimpleHashtable<>(1, 1);
+        for (int i = 0; i < 10_000; i++) {
+            table.put(i, i);
+        }
+        for (int i = 0; i < 10_000; i += 2) {
+            table.remove(i);
+        }
+
+        assertEquals(5000, table.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i % 2 == 0 ? null : (Integer) i, table.get(i));
+        }
+    }
+
+    @Test
+    public void testClear() {
+        ConcurrentSimpleHashtable<String, Integer> table = getTable();
+        table.clear();
+
+        assertEquals(true, table.isEmpty());
+        assertEquals(false, table.containsKey("Benković"));
+        assertEquals("[]", table.toString());
+    }
+
+    @Test
+    public void testForEachSetValueAndRemove() {
+        ConcurrentSimpleHashtable<String, Integer> table = getTable();
+
+        int count = 0;
+        Iterator<SimpleHashtable.TableEntry<String, Integer>> iter = table.iterator();
+        while (iter.hasNext()) {
+            SimpleHashtable.TableEntry<String, Integer> entry = iter.next();
+            entry.setValue(entry.getValue() * 10);
+            if (entry.getValue().equals(50)) {
+                iter.remove();
+            }
+            count++;
+        }
+
+        assertEquals(18, count);
+        assertEquals(15, table.size());
+        assertEquals((Integer) 10, table.get("Benković"));
+        assertEquals(false, table.containsKey("Ćurin"));
+    }
+
+    @Test
+    public void testForEachConcurrentModification() {
+        ConcurrentSimpleHashtable<String, Integer> table = getTable();
+
+        // must not throw
+        for (SimpleHashtable.TableEntry<String, Integer> entry : table) {
+            if (entry.getKey().endsWith("*")) {
+                // an entry added during the iteration may or may not be seen
+                continue;
+            }
+            table.remove(entry.getKey());
+            table.put(entry.getKey() + "*", entry.getValue());
+        }
+        assertEquals(true, table.containsKey("Benković*"));
+        assertEquals(false, table.containsKey("Benković"));
+        assertEquals(18, table.size());
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriters() throws InterruptedException {
+        final int writers = 4;
+        final int keysPerWriter = 20_000;
+        ConcurrentSimpleHashtable<Integer, Integer> table = new ConcurrentSimpleHashtable<>(1, 4);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger errors = new AtomicInteger();
+
+        Thread[] threads = new Thread[writers * 2];
+        for (int w = 0; w < writers; w++) {
+            final int offset = w * keysPerWriter;
+            threads[w] = new Thread(() -> {
+                for (int i = offset; i < offset + keysPerWriter; i++) {
+                    table.put(i, i);
+                }
+                for (int i = offset; i < offset + keysPerWriter; i += 2) {
+                    table.remove(i);
+                }
+            });
+            threads[writers + w] = new Thread(() -> {
+                while (!done.get()) {
+                    for (int i = offset; i < offset + keysPerWriter; i++) {
+                        Integer value = table.get(i);
+                        if (value != null && value != i) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    for (SimpleHashtable.TableEntry<Integer, Integer> entry : table) {
+                        if (!entry.getKey().equals(entry.getValue())) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (int w = 0; w < writers; w++) {
+            threads[w].join();
+        }
+        done.set(true);
+        for (int w = writers; w < threads.length; w++) {
+            threads[w].join();
+        }
+
+        assertEquals(0, errors.get());
+        assertEquals(writers * keysPerWriter / 2, table.size());
+        for (int i = 0; i < writers * keysPerWriter; i++) {
+            assertEquals(i % 2 == 0 ? null : (Integer) i, table.get(i));
+        }
+    }
+
+    /**
+     * Returns a ConcurrentSimpleHashtable filled with some data.
+     * <p>
+     * Size of the returned table is 18.
+     */
+    private static ConcurrentSimpleHashtable<String, Integer> getTable() {
+        ConcurrentSimpleHashtable<String, Integer> table = new ConcurrentSimpleHashtable<>();
+
+        table.put("Benković",    1);
+        table.put("Bobić",        2);
+        table.put("Bruck",        3);
+        table.put("Cicijelj",    4);
+        table.put("Ćurin",        5);
+        table.put("Đurdek",        1);
+        table.put("Jakovljev",    2);
+        table.put("Jeleč",        3);
+        table.put("Kratofil",    4);
+        table.put("Mamić",        5);
+        table.put("Martinjak",    1);
+        table.put("Miniri",        2);
+        table.put("Mrvelj",        3);
+        table.put("Novački",    4);
+        table.put("Orešković",    5);
+        table.put("Šimunović",    1);
+        table.put("Žabić",        2);
+        table.put("Žuljević",    3);
+
+        return table;
+    }
+
+}
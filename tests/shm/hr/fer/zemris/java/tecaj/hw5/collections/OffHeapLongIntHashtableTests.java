@@ -0,0 +1,118 @@
+package hr.fer.zemris.java.tecaj.hw5.collections;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class OffHeapLongIntHashtableTests {
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeValueToConstructor() {
+        // must throw
+        new OffHeapLongIntHashtable(-1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPutNegativeValue() {
+        // must throw
+        new OffHeapLongIntHashtable().put(1, -1);
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        OffHeapLongIntHashtable table = new OffHeapLongIntHashtable(1);
+        for (int i = 0; i < 1000; i++) {
+            table.put(i * 1_000_000_007L, i);
+        }
+        table.put(0, 5);
+
+        assertEquals(1000, table.size());
+        assertEquals(5, table.get(0));
+        assertEquals(999, table.get(999 * 1_000_000_007L));
+        assertEquals(-1, table.get(1));
+        assertEquals(false, table.containsKey(1));
+
+        for (int i = 0; i < 1000; i += 2) {
+            table.remove(i * 1_000_000_007L);
+        }
+
+        assertEquals(500, table.size());
+        for (int i = 1; i < 1000; i++) {
+            assertEquals(i % 2 == 0 ? -1 : i, table.get(i * 1_000_000_007L));
+        }
+
+        table.clear();
+        assertEquals(true, table.isEmpty());
+        assertEquals("[]", table.toString());
+    }
+
+    @Test
+    public void testWriteAndMap() throws IOException {
+        OffHeapLongIntHashtable table = new OffHeapLongIntHashtable();
+        for (int i = 0; i < 100; i++) {
+            table.put(i * 64L, i);
+        }
+
+        Path file = Files.createTempFile("table", ".bin");
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+                table.writeTo(channel);
+            }
+
+            OffHeapLongIntHashtable mapped;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                mapped = OffHeapLongIntHashtable.map(channel, 3);
+            }
+
+            assertEquals(100, mapped.size());
+            assertEquals(table.toString(), mapped.toString());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, mapped.get(i * 64L));
+            }
+            assertEquals(-1, mapped.get(1));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected=ReadOnlyBufferException.class)
+    public void testPutToMapped() throws IOException {
+        Path file = Files.createTempFile("table", ".bin");
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                new OffHeapLongIntHashtable().writeTo(channel);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // must throw
+                OffHeapLongIntHashtable.map(channel, 0).put(1, 1);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected=IOException.class)
+    public void testMapInvalidFile() throws IOException {
+        Path file = Files.createTempFile("table", ".bin");
+        try {
+            Files.write(file, new byte[64]);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // must throw
+                OffHeapLongIntHashtable.map(channel, 0);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+package hr.fer.zemris.java.tecaj.hw5.collections;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class OpenAddressingHashtableTests {
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeValueToConstructor() {
+        // must throw
+        new OpenAddressingHashtable<>(-1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPutNull() {
+        // must throw
+        new OpenAddressingHashtable<>().put(null, 5);
+    }
+
+    @Test
+    public void testPutSameKey() {
+        OpenAddressingHashtable<String, Integer> table = getTable();
+        assertEquals((Integer) 1, table.get("Benković"));
+
+        table.put("Benković", 3);
+        assertEquals((Integer) 3, table.get("Benković"));
+        assertEquals(18, table.size());
+    }
+
+    @Test
+    public void testGetNonExistent() {
+        assertEquals(null, getTable().get("Magzan"));
+        assertEquals(null, getTable().get(null));
+    }
+
+    @Test
+    public void testRemove() {
+        OpenAddressingHashtable<String, Integer> table = getTable();
+        table.remove("Bobić");
+        table.remove("Žuljević");
+        table.remove("Magzan");
+
+        assertEquals(16, table.size());
+        assertEquals(false, table.containsKey("Bobić"));
+        assertEquals(false, table.containsKey("Žuljević"));
+        assertEquals((Integer) 1, table.get("Benković"));
+    }
+
+    @Test
+    public void testRemoveFromClusters() {
+        /* A tiny table with many keys forms long clusters. */
+        OpenAddressingHashtable<Integer, Integer> table = new OpenAddressingHashtable<>(1);
+        for (int i = 0; i < 1000; i++) {
+            table.put(i * 64, i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            table.remove(i * 64);
+        }
+
+        assertEquals(500, table.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 0 ? null : (Integer) i, table.get(i * 64));
+        }
+    }
+
+    @Test
+    public void testContainsValue() {
+        OpenAddressingHashtable<String, Integer> table = getTable();
+        assertEquals(true, table.containsValue(5));
+        assertEquals(false, table.containsValue(6));
+        assertEquals(false, table.containsValue(null));
+
+        table.put("Magzan", null);
+        assertEquals(true, table.containsValue(null));
+    }
+
+    @Test
+    public void testClear() {
+        OpenAddressingHashtable<String, Integer> table = getTable();
+        table.clear();
+
+        assertEquals(true, table.isEmpty());
+        assertEquals(false, table.containsKey("Benković"));
+        assertEquals("[]", table.toString());
+    }
+
+    @Test
+    public void testPutAll() {
+        OpenAddressingHashtable<String, Integer> table1 = getTable();
+        OpenAddressingHashtable<String, Integer> table2 = new OpenAddressingHashtable<>(table1);
+
+        OpenAddressingHashtable<String, Integer> table3 = new OpenAddressingHashtable<>();
+        table3.putAll(table2);
+
+        assertEquals(table1.toString(), table2.toString());
+        assertEquals(table1.size(), table3.size());
+    }
+
+    @Test
+    public void testForEachSetValue() {
+        OpenAddressingHashtable<String, Integer> table = getTable();
+
+        int count = 0;
+        for (SimpleHashtable.TableEntry<String, Integer> entry : table) {
+            entry.setValue(entry.getValue() * 10);
+            count++;
+        }
+
+        assertEquals(table.size(), count);
+        assertEquals((Integer) 10, table.get("Benković"));
+        assertEquals((Integer) 30, table.get("Žuljević"));
+    }
+
+    @Test
+    public void testForEachRemoveAll() {
+        OpenAddressingHashtable<Integer, Integer> table = new OpenAddressingHashtable<>(1);
+        for (int i = 0; i < 1000; i++) {
+            table.put(i * 64, i);
+        }
+
+        int count = 0;
+        Iterator<SimpleHashtable.TableEntry<Integer, Integer>> iter = table.iterator();
+        while (iter.hasNext()) {
+            iter.next();
+            iter.remove();
+            count++;
+        }
+
+        assertEquals(1000, count);
+        assertEquals(0, table.size());
+    }
+
+    @Test(expected=ConcurrentModificationException.class)
+    public void testForEachConcurrentRemove() {
+        OpenAddressingHashtable<String, Integer> table = getTable();
+
+        for (SimpleHashtable.TableEntry<String, Integer> entry : table) {
+            if (entry.getValue().equals(5)) {
+                // must throw
+                table.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns an OpenAddressingHashtable filled with some data.
+     * <p>
+     * Size of the returned table is 18.
+     */
+    private static OpenAddressingHashtable<String, Integer> getTable() {
+        OpenAddressingHashtable<String, Integer> table = new OpenAddressingHashtable<>();
+
+        table.put("Benković",    1);
+        table.put("Bobić",        2);
+        table.put("Bruck",        3);
+        table.put("Cicijelj",    4);
+        table.put("Ćurin",        5);
+        table.put("Đurdek",        1);
+        table.put("Jakovljev",    2);
+        table.put("Jeleč",        3);
+        table.put("Kratofil",    4);
+        table.put("Mamić",        5);
+        table.put("Martinjak",    1);
+        table.put("Miniri",        2);
+        table.put("Mrvelj",        3);
+        table.put("Novački",    4);
+        table.put("Orešković",    5);
+        table.put("Šimunović",    1);
+        table.put("Žabić",        2);
+        table.put("Žuljević",    3);
+
+        return table;
+    }
+
+}
@@ -0,0 +1,106 @@
+package hr.fer.zemris.java.tecaj.hw5.collections;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class SimpleCacheTests {
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testZeroCapacity() {
+        // must throw
+        new SimpleCache<>(0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNullKey() {
+        // must throw
+        new SimpleCache<String, Integer>(4).put(null, 1);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        SimpleCache<String, Integer> cache = new SimpleCache<>(3);
+        cache.put("Ivana", 2);
+        cache.put("Ante", 2);
+        cache.put("Jasna", 2);
+
+        // Ivana becomes the most recently used
+        assertEquals(Integer.valueOf(2), cache.get("Ivana"));
+        cache.put("Kristina", 5);
+
+        assertEquals(3, cache.size());
+        assertEquals(false, cache.containsKey("Ante"));
+        assertEquals("[Jasna=2, Ivana=2, Kristina=5]", cache.toString());
+        assertEquals(1, cache.getEvictionCount());
+
+        // Updating a mapping does not evict
+        cache.put("Jasna", 4);
+        assertEquals("[Ivana=2, Kristina=5, Jasna=4]", cache.toString());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testCounters() {
+        SimpleCache<String, Integer> cache = new SimpleCache<>(2);
+        cache.put("Ivana", 2);
+        cache.get("Ivana");
+        cache.get("Ivana");
+        cache.get("Ante");
+        cache.get(null);
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getRejectionCount());
+    }
+
+    @Test
+    public void testRemoveAndClear() {
+        SimpleCache<String, Integer> cache = new SimpleCache<>(2);
+        cache.put("Ivana", 2);
+        cache.put("Ante", 2);
+        cache.remove("Ivana");
+        cache.remove("Ivana");
+        assertEquals("[Ante=2]", cache.toString());
+
+        cache.put("Jasna", 2);
+        cache.put("Kristina", 5);
+        assertEquals(1, cache.getEvictionCount());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals("[]", cache.toString());
+        assertEquals(null, cache.get("Kristina"));
+    }
+
+    @Test
+    public void testAdmissionKeepsFrequentKeys() {
+        SimpleCache<Integer, Integer> cache = new SimpleCache<>(4, true);
+        for (int i = 0; i < 4; i++) {
+            cache.get(i);
+            cache.put(i, i);
+        }
+
+        // Keys that are requested only once do not push out frequent keys
+        for (int i = 0; i < 100; i++) {
+            for (int key : new int[] {i % 4, 1000 + i}) {
+                if (cache.get(key) == null) {
+                    cache.put(key, key);
+                }
+            }
+        }
+        for (int i = 0; i < 4; i++) {
+            assertEquals(true, cache.containsKey(i));
+        }
+        assertEquals(100, cache.getRejectionCount());
+        assertEquals(0, cache.getEvictionCount());
+
+        // A key that becomes frequent is admitted
+        for (int j = 0; j < 20; j++) {
+            cache.get(500);
+        }
+        assertEquals(true, cache.put(500, 500));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+}
@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
@@ -210,10 +211,10 @@ public class SimpleHashtableTests {
      */
     @Test
     public void testToStringHardcore() {
-        String expected = "[Novački=4, Đurdek=1, Benković=1, Ćurin=5, "
-                + "Jakovljev=2, Kratofil=4, Bruck=3, Mrvelj=3, "
-                + "Orešković=5, Miniri=2, Bobić=2, Mamić=5, Jeleč=3, "
-                + "Martinjak=1, Cicijelj=4, Žuljević=3, Žabić=2, Šimunović=1]";
+        String expected = "[Novački=4, Orešković=5, Martinjak=1, Cicijelj=4, "
+                + "Bobić=2, Šimunović=1, Ćurin=5, Žuljević=3, "
+                + "Miniri=2, Kratofil=4, Mrvelj=3, Đurdek=1, Benković=1, "
+                + "Bruck=3, Jakovljev=2, Žabić=2, Jeleč=3, Mamić=5]";
         String actual = getTable().toString();
 
         assertEquals(expected, actual);
@@ -317,7 +318,7 @@ public class SimpleHashtableTests {
     @SuppressWarnings("unused")
     @Test
     public void testForEachOnMoreCases() {
-        // First three should form a table like this: [čćđšž=3, abc12345=2, abab=1, null]
+        // First three should form a table like this: [null, null, čćđšž=3, abab=1 -> abc12345=2]
         SimpleHashtable<String, Integer> table = new SimpleHashtable<>(4);
         table.put("abab", 1);
         for (SimpleHashtable.TableEntry<String, Integer> entry : table);
@@ -345,7 +346,7 @@ public class SimpleHashtableTests {
 //        System.out.println(table);
 
         table.put("SimpleHashtable", 3);
-        table.put("abab", 4);
+        table.put("abba", 4);
         for (SimpleHashtable.TableEntry<String, Integer> entry : table) {
             listOfEntries2.add(entry.getKey());
         }
@@ -357,6 +358,368 @@ public class SimpleHashtableTests {
 
 
 
+    /* ------------------------------ Incremental resizing tests ------------------------------ */
+
+    @Test
+    public void testIncrementalResize() {
+        SimpleHashtable<Integer, Integer> table = new SimpleHashtable<>(2, true);
+        for (int i = 0; i < 10000; i++) {
+            table.put(i, i);
+            // every key must be reachable while the table is being resized
+            assertEquals((Integer) (i/2), table.get(i/2));
+        }
+
+        assertEquals(10000, table.size());
+        for (int i = 0; i < 10000; i++) {
+            assertEquals((Integer) i, table.get(i));
+        }
+    }
+
+    @Test
+    public void testIncrementalResizeRemoveAndIterate() {
+        SimpleHashtable<Integer, Integer> table = new SimpleHashtable<>(2, true);
+        for (int i = 0; i < 1000; i++) {
+            table.put(i, i);
+            if (i % 3 == 0) {
+                table.remove(i);
+            }
+        }
+
+        int count = 0;
+        Iterator<SimpleHashtable.TableEntry<Integer, Integer>> iter = table.iterator();
+        while (iter.hasNext()) {
+            SimpleHashtable.TableEntry<Integer, Integer> entry = iter.next();
+            assertNotEquals(0, entry.getKey() % 3);
+            if (entry.getKey() % 2 == 0) {
+                iter.remove();
+            }
+            count++;
+        }
+
+        assertEquals(666, count);
+        assertEquals(333, table.size());
+        assertEquals(table.size(), new SimpleHashtable<>(table).size());
+    }
+
+
+
+    /* ------------------------------ Colliding keys tests ------------------------------ */
+
+    @Test
+    public void testCollidingComparableKeys() {
+        String[] keys = collidingStrings(10);
+        SimpleHashtable<String, Integer> table = new SimpleHashtable<>();
+        for (int i = 0; i < keys.length; i++) {
+            table.put(keys[i], i);
+        }
+
+        assertEquals(keys.length, table.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals((Integer) i, table.get(keys[i]));
+        }
+
+        for (int i = 0; i < keys.length; i += 2) {
+            table.remove(keys[i]);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i % 2 == 0 ? null : (Integer) i, table.get(keys[i]));
+        }
+
+        /* Shrink the slot back to a list. */
+        for (int i = 1; i < keys.length - 2; i += 2) {
+            table.remove(keys[i]);
+        }
+        assertEquals(1, table.size());
+        assertEquals((Integer) (keys.length - 1), table.get(keys[keys.length - 1]));
+    }
+
+    @Test
+    public void testCollidingNonComparableKeys() {
+        SimpleHashtable<Colliding, Integer> table = new SimpleHashtable<>(2, true);
+        for (int i = 0; i < 500; i++) {
+            table.put(new Colliding(i), i);
+        }
+        for (int i = 0; i < 500; i += 3) {
+            table.remove(new Colliding(i));
+        }
+
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i % 3 == 0 ? null : (Integer) i, table.get(new Colliding(i)));
+        }
+
+        int count = 0;
+        Iterator<SimpleHashtable.TableEntry<Colliding, Integer>> iter = table.iterator();
+        while (iter.hasNext()) {
+            iter.next();
+            iter.remove();
+            count++;
+        }
+        assertEquals(333, count);
+        assertEquals(true, table.isEmpty());
+    }
+
+    @Test
+    public void testBulkBuildFromCollection() {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add(Integer.toString(i));
+        }
+        values.add("7");
+
+        SimpleHashtable<Integer, String> table =
+                new SimpleHashtable<>(values, Integer::valueOf, false);
+        assertEquals(1000, table.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.toString(i), table.get(i));
+        }
+
+        table = new SimpleHashtable<>(values.subList(0, 1000), Integer::valueOf, true);
+        assertEquals(1000, table.size());
+        assertEquals("999", table.get(999));
+    }
+
+    @Test
+    public void testBulkBuildFromArrays() {
+        String[] keys = collidingStrings(8);
+        Integer[] values = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = i;
+        }
+
+        SimpleHashtable<String, Integer> table = new SimpleHashtable<>(keys, values, true);
+        assertEquals(keys.length, table.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals((Integer) i, table.get(keys[i]));
+        }
+        for (int i = 0; i < keys.length; i += 2) {
+            table.remove(keys[i]);
+        }
+        assertEquals(keys.length / 2, table.size());
+        assertEquals(null, table.get(keys[0]));
+        assertEquals((Integer) 1, table.get(keys[1]));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testBulkBuildDifferentLengths() {
+        // must throw
+        new SimpleHashtable<>(new String[2], new Integer[1], true);
+    }
+
+    @Test
+    public void testPutAllIntoNonEmpty() {
+        SimpleHashtable<String, Integer> table1 = getTable();
+        SimpleHashtable<String, Integer> table2 = new SimpleHashtable<>(2, true);
+        table2.put("Benković", 7);
+        table2.put("Magzan", 6);
+
+        table2.putAll(table1);
+        assertEquals(19, table2.size());
+        assertEquals((Integer) 1, table2.get("Benković"));
+        assertEquals((Integer) 6, table2.get("Magzan"));
+        assertEquals((Integer) 3, table2.get("Žuljević"));
+    }
+
+    @Test
+    public void testStream() {
+        SimpleHashtable<String, Integer> table = getTable();
+        assertEquals(18, table.stream().count());
+        assertEquals(51, table.stream().mapToInt(SimpleHashtable.TableEntry::getValue).sum());
+        assertEquals(table.toString(), table.stream()
+                .map(Object::toString)
+                .collect(Collectors.joining(", ", "[", "]")));
+    }
+
+    @Test
+    public void testParallelStream() {
+        SimpleHashtable<Integer, Integer> table = new SimpleHashtable<>(2, true);
+        for (int i = 0; i < 200_000; i++) {
+            table.put(i, i);
+        }
+        // Some slots are still in the old table
+        table.put(-1, -1);
+
+        long expected = 200_000L * 199_999 / 2 - 1;
+        assertEquals(expected, table.parallelStream().mapToLong(SimpleHashtable.TableEntry::getValue).sum());
+        assertEquals(200_001, table.parallelStream().map(SimpleHashtable.TableEntry::getKey).distinct().count());
+        assertEquals(true, table.containsValue(123_456));
+        assertEquals(true, table.containsValue(-1));
+        assertEquals(false, table.containsValue(200_000));
+    }
+
+    @Test(expected=ConcurrentModificationException.class)
+    public void testStreamConcurrentRemove() {
+        SimpleHashtable<String, Integer> table = getTable();
+        // must throw
+        table.stream().forEach(entry -> table.remove(entry.getKey()));
+    }
+
+    @Test
+    public void testForEachKeyAndValue() {
+        SimpleHashtable<String, Integer> table = getTable();
+
+        StringBuilder sb = new StringBuilder();
+        table.forEach((key, value) -> sb.append(key).append('=').append(value).append(", "));
+        sb.setLength(sb.length() - 2);
+        assertEquals(table.toString(), "[" + sb + "]");
+
+        List<String> keys = new ArrayList<>();
+        table.forEachKey(keys::add);
+        List<String> iteratedKeys = new ArrayList<>();
+        for (String key : table.keys()) {
+            iteratedKeys.add(key);
+        }
+        assertEquals(iteratedKeys, keys);
+
+        int[] sum = new int[2];
+        table.forEachValue(value -> sum[0] += value);
+        for (Integer value : table.values()) {
+            sum[1] += value;
+        }
+        assertEquals(51, sum[0]);
+        assertEquals(51, sum[1]);
+    }
+
+    @Test
+    public void testValuesViewRemove() {
+        SimpleHashtable<String, Integer> table = getTable();
+
+        Iterator<Integer> iter = table.values().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().equals(5)) {
+                iter.remove();
+            }
+        }
+
+        assertEquals(15, table.size());
+        assertEquals(false, table.containsValue(5));
+    }
+
+    @Test(expected=ConcurrentModificationException.class)
+    public void testForEachBiConsumerConcurrentRemove() {
+        SimpleHashtable<String, Integer> table = getTable();
+        // must throw
+        table.forEach((key, value) -> table.remove(key));
+    }
+
+    @Test
+    public void testShrinkAfterRemovals() {
+        String[] colliding = collidingStrings(6);
+        SimpleHashtable<Object, Integer> table = new SimpleHashtable<>();
+        for (int i = 0; i < 10_000; i++) {
+            table.put(i, i);
+        }
+        for (int i = 0; i < colliding.length; i++) {
+            table.put(colliding[i], i);
+        }
+        assertEquals(16384, table.capacity());
+
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 100 != 0) {
+                table.remove(i);
+            }
+        }
+        for (int i = 0; i < colliding.length; i += 2) {
+            table.remove(colliding[i]);
+        }
+
+        assertEquals(100 + colliding.length / 2, table.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i % 100 == 0 ? (Integer) i : null, table.get(i));
+        }
+        for (int i = 0; i < colliding.length; i++) {
+            assertEquals(i % 2 == 0 ? null : (Integer) i, table.get(colliding[i]));
+        }
+        assertEquals(table.size(), table.stream().count());
+        assertEquals(512, table.capacity());
+
+        table.clear();
+        assertEquals(16, table.capacity());
+    }
+
+    @Test
+    public void testTrimToSize() {
+        SimpleHashtable<Integer, Integer> table = new SimpleHashtable<>(2, true);
+        for (int i = 0; i < 10_000; i++) {
+            table.put(i, i);
+        }
+        for (int i = 10; i < 10_000; i++) {
+            table.remove(i);
+        }
+        assertEquals(32, table.capacity());
+
+        table.trimToSize();
+        assertEquals(16, table.capacity());
+        assertEquals(10, table.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i < 10 ? (Integer) i : null, table.get(i));
+        }
+        table.put(10, 10);
+        assertEquals((Integer) 10, table.get(10));
+
+        table.clear();
+        assertEquals(2, table.capacity());
+    }
+
+    @Test(expected=ConcurrentModificationException.class)
+    public void testClearInvalidatesIterator() {
+        SimpleHashtable<String, Integer> table = getTable();
+
+        Iterator<SimpleHashtable.TableEntry<String, Integer>> iter = table.iterator();
+        iter.next();
+        table.clear();
+        // must throw
+        iter.hasNext();
+    }
+
+    @Test
+    public void testClearAndReuse() {
+        SimpleHashtable<String, Integer> table = getTable();
+        table.clear();
+        assertEquals("[]", table.toString());
+
+        table.put("Magzan", 6);
+        assertEquals("[Magzan=6]", table.toString());
+    }
+
+    /**
+     * Returns 2^n distinct strings that all have the same hash code.
+     */
+    private static String[] collidingStrings(int n) {
+        String[] strings = {""};
+        for (int i = 0; i < n; i++) {
+            String[] next = new String[strings.length * 2];
+            for (int j = 0; j < strings.length; j++) {
+                next[2*j] = strings[j] + "Aa";
+                next[2*j + 1] = strings[j] + "BB";
+            }
+            strings = next;
+        }
+        return strings;
+    }
+
+    /**
+     * A key that is not comparable and whose hash code is always the same.
+     */
+    private static class Colliding {
+        private final int id;
+
+        public Colliding(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Colliding && ((Colliding) obj).id == id;
+        }
+    }
+
+
+
     /**
      * Returns a SimpleHashtable filled with some data.
      * <p>